@@ -0,0 +1,46 @@
+package net.hardnorth.github.merge.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.hardnorth.github.merge.service.JWT;
+import net.hardnorth.github.merge.service.impl.CachedJwtService;
+import net.hardnorth.github.merge.service.impl.JwtService;
+import net.hardnorth.github.merge.utils.IoUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtBenchmark {
+    private static final String APPLICATION_ID = "72458";
+
+    private JWT jwt;
+    private JWT cachedJwt;
+
+    @Setup
+    public void setup() throws IOException {
+        byte[] key = IoUtils.readInputStreamToBytes(JwtBenchmark.class.getClassLoader()
+                .getResourceAsStream("encryption/merge-validate-test-key.pem"));
+        if (key == null) {
+            throw new IllegalStateException("Unable to find test RSA key");
+        }
+        JwtService signer = new JwtService(APPLICATION_ID, key);
+        jwt = signer;
+        cachedJwt = new CachedJwtService(signer, 2, TimeUnit.MINUTES, new SimpleMeterRegistry());
+    }
+
+    @Benchmark
+    public String sign() {
+        return jwt.get();
+    }
+
+    @Benchmark
+    public String cached() {
+        return cachedJwt.get();
+    }
+}
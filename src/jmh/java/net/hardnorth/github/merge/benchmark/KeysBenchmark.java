@@ -0,0 +1,40 @@
+package net.hardnorth.github.merge.benchmark;
+
+import net.hardnorth.github.merge.model.KeyType;
+import net.hardnorth.github.merge.model.Token;
+import net.hardnorth.github.merge.utils.Keys;
+import org.apache.commons.lang3.tuple.Triple;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigInteger;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeysBenchmark {
+    private byte[] keyBytes;
+    private Token token;
+    private String encodedToken;
+
+    @Setup
+    public void setup() {
+        keyBytes = BigInteger.valueOf(17508024L).toByteArray();
+        token = new Token(UUID.nameUUIDFromBytes(keyBytes));
+        encodedToken = Keys.encodeAuthToken(KeyType.LONG, keyBytes, token);
+    }
+
+    @Benchmark
+    public String encodeAuthToken() {
+        return Keys.encodeAuthToken(KeyType.LONG, keyBytes, token);
+    }
+
+    @Benchmark
+    public Triple<KeyType, byte[], Token> decodeAuthToken() {
+        return Keys.decodeAuthToken(encodedToken);
+    }
+}
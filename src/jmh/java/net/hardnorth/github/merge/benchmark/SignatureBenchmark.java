@@ -0,0 +1,49 @@
+package net.hardnorth.github.merge.benchmark;
+
+import net.hardnorth.github.merge.utils.HmacSignature;
+import net.hardnorth.github.merge.utils.WebServiceCommon;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SignatureBenchmark {
+    private static final byte[] SECRET = "webhook-secret".getBytes(StandardCharsets.UTF_8);
+
+    // 25 KB, 1 MB and 5 MB webhook bodies
+    @Param({"25600", "1048576", "5242880"})
+    public int bodySize;
+
+    private byte[] body;
+    private byte[] signature;
+    private HmacSignature pooled;
+
+    @Setup
+    public void setup() throws Exception {
+        body = new byte[bodySize];
+        new Random(bodySize).nextBytes(body);
+        Mac mac = Mac.getInstance(WebServiceCommon.HMAC_ALGORITHM);
+        mac.init(new SecretKeySpec(SECRET, WebServiceCommon.HMAC_ALGORITHM));
+        signature = mac.doFinal(body);
+        pooled = new HmacSignature(WebServiceCommon.HMAC_ALGORITHM, SECRET);
+    }
+
+    @Benchmark
+    public boolean validateSha256Signature() {
+        return WebServiceCommon.validateSha256Signature(signature, SECRET, body);
+    }
+
+    @Benchmark
+    public boolean validatePooled() {
+        return pooled.validate(signature, body);
+    }
+}
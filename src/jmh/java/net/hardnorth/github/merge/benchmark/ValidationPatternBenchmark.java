@@ -0,0 +1,80 @@
+package net.hardnorth.github.merge.benchmark;
+
+import net.hardnorth.github.merge.utils.ValidationPattern;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidationPatternBenchmark {
+    private static final String MERGE_FILE = String.join("\n",
+            "# Allow documentation and build changes",
+            "README.md",
+            "CHANGELOG.md",
+            "*.txt",
+            "docs/**",
+            "**/*.md",
+            "gradle.properties",
+            "pom.xml",
+            "**/pom.xml",
+            "src/main/resources/**",
+            "src/test/**",
+            "!src/test/resources/secret/**",
+            "src/main/java/**/model/*.java",
+            "src/main/java/**/*{Test,Dto}.java",
+            "**/[Mm]akefile",
+            "./scripts/*.sh",
+            "!scripts/deploy*.sh",
+            "\\#notes.txt");
+
+    private static final String[] DIRECTORIES = {"", "docs/", "docs/api/", "src/main/java/net/hardnorth/model/",
+            "src/main/java/net/hardnorth/service/impl/", "src/main/resources/", "src/test/java/net/hardnorth/",
+            "src/test/resources/secret/", "scripts/", ".github/workflows/", "module/"};
+    private static final String[] EXTENSIONS = {".java", ".md", ".txt", ".xml", ".sh", ".yml", ".json"};
+
+    @Param({"10", "100", "1000", "10000"})
+    public int fileCount;
+
+    private ValidationPattern pattern;
+    private List<String> files;
+
+    @Setup
+    public void setup() {
+        pattern = ValidationPattern.parse(MERGE_FILE);
+        Random random = new Random(fileCount);
+        files = new ArrayList<>(fileCount);
+        for (int i = 0; i < fileCount; i++) {
+            files.add(DIRECTORIES[random.nextInt(DIRECTORIES.length)] + "File" + i
+                    + EXTENSIONS[random.nextInt(EXTENSIONS.length)]);
+        }
+    }
+
+    @Benchmark
+    public ValidationPattern parse() {
+        return ValidationPattern.parse(MERGE_FILE);
+    }
+
+    @Benchmark
+    public void matchFileNames(Blackhole blackhole) {
+        for (String file : files) {
+            blackhole.consume(pattern.matches(file));
+        }
+    }
+
+    @Benchmark
+    public void matchPaths(Blackhole blackhole) {
+        for (String file : files) {
+            blackhole.consume(pattern.test(new File(file).toPath()));
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package net.hardnorth.github.merge.benchmark;
+
+import net.hardnorth.github.merge.model.github.hook.EventPullRequest;
+import net.hardnorth.github.merge.model.github.hook.EventPush;
+import net.hardnorth.github.merge.utils.IoUtils;
+import net.hardnorth.github.merge.utils.WebServiceCommon;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WebhookParsingBenchmark {
+    private String pullRequest;
+    private String push;
+
+    private static String read(String resource) {
+        String result = IoUtils.readInputStreamToString(WebhookParsingBenchmark.class.getClassLoader()
+                .getResourceAsStream(resource), StandardCharsets.UTF_8);
+        if (result == null) {
+            throw new IllegalStateException("Unable to find resource: " + resource);
+        }
+        return result;
+    }
+
+    @Setup
+    public void setup() {
+        pullRequest = read("hook/pr_labeled.json");
+        push = read("hook/new_branch.json");
+    }
+
+    @Benchmark
+    public EventPullRequest pullRequest() {
+        return WebServiceCommon.deserializeJson(pullRequest, EventPullRequest.class);
+    }
+
+    @Benchmark
+    public EventPush push() {
+        return WebServiceCommon.deserializeJson(push, EventPush.class);
+    }
+}
@@ -6,11 +6,14 @@ import net.hardnorth.github.merge.model.github.hook.EventCheckRun;
 import net.hardnorth.github.merge.model.github.hook.EventInstallation;
 import net.hardnorth.github.merge.model.github.hook.EventPullRequest;
 import net.hardnorth.github.merge.model.github.hook.EventPush;
+import net.hardnorth.github.merge.service.DeliveryRegistry;
 import net.hardnorth.github.merge.service.GithubWebhook;
 import net.hardnorth.github.merge.service.SecretManager;
+import net.hardnorth.github.merge.utils.HmacSignature;
 import net.hardnorth.github.merge.utils.WebServiceCommon;
 import org.apache.commons.codec.DecoderException;
 import org.apache.commons.codec.binary.Hex;
+import org.apache.http.HttpStatus;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
 
@@ -22,15 +25,25 @@ import java.nio.charset.StandardCharsets;
 @Path("/")
 public class MergeValidateController {
     private static final Logger LOGGER = Logger.getLogger(MergeValidateController.class);
+    private static final String ACTION_FIELD = "action";
+    private static final String LABEL_FIELD = "label";
+    private static final String NAME_FIELD = "name";
 
-    private final byte[] webhookSecret;
+    private final HmacSignature webhookSignature;
     private final GithubWebhook webhook;
+    private final DeliveryRegistry deliveries;
+    private final int webhookStatus;
 
     @SuppressWarnings("CdiInjectionPointsInspection")
     public MergeValidateController(@ConfigProperty(name = PropertyNames.GITHUB_WEBHOOK_TOKEN_SECRET) String webhookSecretKey,
-                                   SecretManager secretManager, GithubWebhook webhookService) {
-        webhookSecret = secretManager.getRawSecret(webhookSecretKey);
+                                   @ConfigProperty(name = PropertyNames.GITHUB_WEBHOOK_ASYNC) boolean asyncWebhook,
+                                   SecretManager secretManager, GithubWebhook webhookService,
+                                   DeliveryRegistry deliveryRegistry) {
+        webhookSignature = new HmacSignature(WebServiceCommon.HMAC_ALGORITHM,
+                secretManager.getRawSecret(webhookSecretKey));
         webhook = webhookService;
+        deliveries = deliveryRegistry;
+        webhookStatus = asyncWebhook ? HttpStatus.SC_ACCEPTED : HttpStatus.SC_NO_CONTENT;
     }
 
     @GET
@@ -44,31 +57,56 @@ public class MergeValidateController {
     @Path("webhook")
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces
-    public void webhookAction(@HeaderParam(value = "x-github-event") final String event,
-                              @HeaderParam(value = "x-hub-signature-256") final String signature, final String body) {
+    public Response webhookAction(@HeaderParam(value = "x-github-event") final String event,
+                                  @HeaderParam(value = "x-github-delivery") final String delivery,
+                                  @HeaderParam(value = "x-hub-signature-256") final String signature,
+                                  final byte[] body) {
         byte[] rawSignature;
         try {
             rawSignature = Hex.decodeHex(signature.substring("sha256=".length()));
         } catch (DecoderException e) {
             throw new IllegalArgumentException("Invalid signature format: " + e.getMessage(), e);
         }
-        if (!WebServiceCommon.validateSha256Signature(rawSignature, webhookSecret, body.getBytes(StandardCharsets.UTF_8))) {
+        if (!webhookSignature.validate(rawSignature, body)) {
             throw new AuthenticationFailedException("Invalid signature");
         }
-        LOGGER.infof("Got a '%s' webhook request:\n%s", event, body);
+        LOGGER.infof("Got a '%s' webhook request '%s'", event, delivery);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debugf("Webhook request body:\n%s", new String(body, StandardCharsets.UTF_8));
+        }
+        if (delivery != null && !deliveries.register(delivery)) {
+            LOGGER.infof("Skipping repeated delivery '%s'", delivery);
+            return Response.ok().build();
+        }
+
+        try {
+            processEvent(event, delivery, body);
+        } catch (RuntimeException e) {
+            if (delivery != null) {
+                deliveries.release(delivery);
+            }
+            throw e;
+        }
+        return Response.status(webhookStatus).build();
+    }
 
+    private void processEvent(String event, String delivery, byte[] body) {
         switch (event) {
             case "installation":
-                webhook.processInstallation(WebServiceCommon.deserializeJson(body, EventInstallation.class));
+                webhook.processInstallation(delivery, WebServiceCommon.deserializeJson(body, EventInstallation.class));
                 break;
             case "push":
-                webhook.processPush(WebServiceCommon.deserializeJson(body, EventPush.class));
+                webhook.processPush(delivery, WebServiceCommon.deserializeJson(body, EventPush.class));
                 break;
             case "pull_request":
-                webhook.processPull(WebServiceCommon.deserializeJson(body, EventPullRequest.class));
+                // most pull request events are ignored, so they are filtered before binding the whole payload
+                if (webhook.acceptsPull(WebServiceCommon.readString(body, ACTION_FIELD),
+                        () -> WebServiceCommon.readString(body, LABEL_FIELD, NAME_FIELD))) {
+                    webhook.processPull(delivery, WebServiceCommon.deserializeJson(body, EventPullRequest.class));
+                }
                 break;
             case "check_run":
-                webhook.processCheckRun(WebServiceCommon.deserializeJson(body, EventCheckRun.class));
+                webhook.processCheckRun(delivery, WebServiceCommon.deserializeJson(body, EventCheckRun.class));
                 break;
             case "check_suite":
                 break;
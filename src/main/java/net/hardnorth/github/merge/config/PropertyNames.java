@@ -10,6 +10,25 @@ public class PropertyNames {
     public static final String PROJECT_ID = "net.hardnorth.application.project";
     public static final String CHARSET = "net.hardnorth.application.charset";
     public static final String ENCRYPTION_KEY_SECRET = "net.hardnorth.encryption.key.secret";
+    public static final String VALIDATION_CACHE_SIZE = "net.hardnorth.validation.cache.size";
+    public static final String VALIDATION_CACHE_RULES = "net.hardnorth.validation.cache.rules";
+    public static final String VALIDATION_THREADS = "net.hardnorth.validation.threads";
+    public static final String VALIDATION_TIMEOUT_UNIT = "net.hardnorth.validation.timeout.unit";
+    public static final String VALIDATION_TIMEOUT_VALUE = "net.hardnorth.validation.timeout.value";
+    public static final String THREADS_VIRTUAL = "net.hardnorth.threads.virtual";
+    public static final String THREADS_VIRTUAL_LIMIT = "net.hardnorth.threads.virtual.limit";
+    public static final String CIRCUIT_WINDOW = "net.hardnorth.circuit.window";
+    public static final String CIRCUIT_CALLS_MIN = "net.hardnorth.circuit.calls.min";
+    public static final String CIRCUIT_FAILURE_RATE = "net.hardnorth.circuit.failure.rate";
+    public static final String CIRCUIT_SLOW_RATE = "net.hardnorth.circuit.slow.rate";
+    public static final String CIRCUIT_SLOW_UNIT = "net.hardnorth.circuit.slow.unit";
+    public static final String CIRCUIT_SLOW_VALUE = "net.hardnorth.circuit.slow.value";
+    public static final String CIRCUIT_OPEN_UNIT = "net.hardnorth.circuit.open.unit";
+    public static final String CIRCUIT_OPEN_VALUE = "net.hardnorth.circuit.open.value";
+    public static final String CIRCUIT_HALF_OPEN_CALLS = "net.hardnorth.circuit.half.open.calls";
+    public static final String BULKHEAD_WAIT_UNIT = "net.hardnorth.bulkhead.wait.unit";
+    public static final String BULKHEAD_WAIT_VALUE = "net.hardnorth.bulkhead.wait.value";
+    public static final String DATASTORE_BULKHEAD_SIZE = "net.hardnorth.datastore.bulkhead.size";
 
     // Github
     public static final String GITHUB_LOG = "net.hardnorth.github.http.log";
@@ -17,7 +36,43 @@ public class PropertyNames {
     public static final String GITHUB_APP_ID = "net.hardnorth.github.app.id";
     public static final String GITHUB_RSA_KEY_SECRET = "net.hardnorth.github.rsa.key.secret";
     public static final String GITHUB_WEBHOOK_TOKEN_SECRET = "net.hardnorth.github.webhook.token.secret";
+    public static final String GITHUB_WEBHOOK_ASYNC = "net.hardnorth.github.webhook.async";
+    public static final String GITHUB_WEBHOOK_WORKERS = "net.hardnorth.github.webhook.workers";
+    public static final String GITHUB_WEBHOOK_QUEUE_SIZE = "net.hardnorth.github.webhook.queue.size";
+    public static final String GITHUB_WEBHOOK_NON_BLOCKING = "net.hardnorth.github.webhook.non.blocking";
+    public static final String GITHUB_WEBHOOK_DELIVERY_TTL_UNIT = "net.hardnorth.github.webhook.delivery.ttl.unit";
+    public static final String GITHUB_WEBHOOK_DELIVERY_TTL_VALUE = "net.hardnorth.github.webhook.delivery.ttl.value";
+    public static final String GITHUB_WEBHOOK_DELIVERY_CACHE_SIZE = "net.hardnorth.github.webhook.delivery.cache.size";
+    public static final String GITHUB_WEBHOOK_DELIVERY_DATASTORE = "net.hardnorth.github.webhook.delivery.datastore";
     public static final String GITHUB_TIMEOUT_UNIT = "net.hardnorth.github.timeout.unit";
     public static final String GITHUB_TIMEOUT_VALUE = "net.hardnorth.github.timeout.value";
+    public static final String GITHUB_TIMEOUT_CONNECT_VALUE = "net.hardnorth.github.timeout.connect.value";
+    public static final String GITHUB_TIMEOUT_READ_VALUE = "net.hardnorth.github.timeout.read.value";
+    public static final String GITHUB_TIMEOUT_WRITE_VALUE = "net.hardnorth.github.timeout.write.value";
+    public static final String GITHUB_TIMEOUT_CALL_VALUE = "net.hardnorth.github.timeout.call.value";
+    public static final String GITHUB_POOL_IDLE = "net.hardnorth.github.pool.idle";
+    public static final String GITHUB_POOL_KEEP_ALIVE_UNIT = "net.hardnorth.github.pool.keep.alive.unit";
+    public static final String GITHUB_POOL_KEEP_ALIVE_VALUE = "net.hardnorth.github.pool.keep.alive.value";
+    public static final String GITHUB_POOL_WARM = "net.hardnorth.github.pool.warm";
+    public static final String GITHUB_DISPATCHER_REQUESTS = "net.hardnorth.github.dispatcher.requests";
+    public static final String GITHUB_DISPATCHER_HOST_REQUESTS = "net.hardnorth.github.dispatcher.host.requests";
+    public static final String GITHUB_HTTP2 = "net.hardnorth.github.http2";
     public static final String GITHUB_FILE_SIZE_LIMIT = "net.hardnorth.github.file.size.limit";
+    public static final String GITHUB_FILE_RAW = "net.hardnorth.github.file.raw";
+    public static final String GITHUB_TOKEN_REFRESH_UNIT = "net.hardnorth.github.token.refresh.unit";
+    public static final String GITHUB_TOKEN_REFRESH_VALUE = "net.hardnorth.github.token.refresh.value";
+    public static final String GITHUB_BULKHEAD_SIZE = "net.hardnorth.github.bulkhead.size";
+    public static final String GITHUB_RETRY_ATTEMPTS = "net.hardnorth.github.retry.attempts";
+    public static final String GITHUB_RETRY_DELAY_BASE = "net.hardnorth.github.retry.delay.base";
+    public static final String GITHUB_RETRY_DELAY_MAX = "net.hardnorth.github.retry.delay.max";
+    public static final String GITHUB_RETRY_DEADLINE_UNIT = "net.hardnorth.github.retry.deadline.unit";
+    public static final String GITHUB_RETRY_DEADLINE_VALUE = "net.hardnorth.github.retry.deadline.value";
+    public static final String GITHUB_RATE_LIMIT_RESERVE = "net.hardnorth.github.rate.limit.reserve";
+    public static final String GITHUB_RATE_LIMIT_WAIT_UNIT = "net.hardnorth.github.rate.limit.wait.unit";
+    public static final String GITHUB_RATE_LIMIT_WAIT_VALUE = "net.hardnorth.github.rate.limit.wait.value";
+    public static final String GITHUB_CACHE_SIZE = "net.hardnorth.github.cache.size";
+    public static final String GITHUB_CACHE_ENTRY_SIZE = "net.hardnorth.github.cache.entry.size";
+    public static final String GITHUB_JWT_CACHE = "net.hardnorth.github.jwt.cache";
+    public static final String GITHUB_JWT_REFRESH_UNIT = "net.hardnorth.github.jwt.refresh.unit";
+    public static final String GITHUB_JWT_REFRESH_VALUE = "net.hardnorth.github.jwt.refresh.value";
 }
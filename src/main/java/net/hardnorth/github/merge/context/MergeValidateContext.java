@@ -1,35 +1,130 @@
 package net.hardnorth.github.merge.context;
 
 import com.google.cloud.datastore.Datastore;
+import com.google.cloud.datastore.DatastoreException;
 import com.google.cloud.datastore.DatastoreOptions;
+import com.google.cloud.datastore.QueryResults;
+import com.google.cloud.datastore.Transaction;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.runtime.StartupEvent;
 import net.hardnorth.github.merge.config.PropertyNames;
 import net.hardnorth.github.merge.model.Charset;
 import net.hardnorth.github.merge.service.*;
 import net.hardnorth.github.merge.service.impl.*;
+import net.hardnorth.github.merge.utils.*;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import okhttp3.logging.HttpLoggingInterceptor;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
 import retrofit2.Retrofit;
 import retrofit2.converter.gson.GsonConverterFactory;
 import retrofit2.converter.scalars.ScalarsConverterFactory;
 
 import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
 import javax.enterprise.inject.Produces;
 import java.io.IOException;
 import java.security.GeneralSecurityException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 @SuppressWarnings("CdiInjectionPointsInspection")
 public class MergeValidateContext {
+    private static final Logger LOGGER = Logger.getLogger(MergeValidateContext.class);
+
+    private static final String GITHUB_DEPENDENCY = "github";
+    private static final String DATASTORE_DEPENDENCY = "datastore";
+    // transactions and query results make remote calls too, the listed methods do not
+    private static final Map<Class<?>, Set<String>> DATASTORE_GUARDED_TYPES = Map.of(
+            Datastore.class, Set.of("newKeyFactory", "getOptions"),
+            Transaction.class, Set.of("isActive", "getDatastore", "getTransactionId", "update", "delete",
+                    "addWithDeferredIdAllocation", "putWithDeferredIdAllocation"),
+            QueryResults.class, Set.of("getResultClass", "getCursorAfter", "getSkippedResults", "getMoreResults"));
+    // contention and invalid requests are answers of a healthy Datastore, so they do not open the circuit
+    private static final Set<String> DATASTORE_FAILURE_REASONS = Set.of("UNAVAILABLE", "DEADLINE_EXCEEDED");
+
+    @Produces
+    @ApplicationScoped
+    public CircuitBreaker.Settings circuitBreakerSettings(@ConfigProperty(name = PropertyNames.CIRCUIT_WINDOW) int window,
+                                                          @ConfigProperty(name = PropertyNames.CIRCUIT_CALLS_MIN) int minCalls,
+                                                          @ConfigProperty(name = PropertyNames.CIRCUIT_FAILURE_RATE) double failureRate,
+                                                          @ConfigProperty(name = PropertyNames.CIRCUIT_SLOW_RATE) double slowRate,
+                                                          @ConfigProperty(name = PropertyNames.CIRCUIT_SLOW_UNIT) TimeUnit slowUnit,
+                                                          @ConfigProperty(name = PropertyNames.CIRCUIT_SLOW_VALUE) long slowValue,
+                                                          @ConfigProperty(name = PropertyNames.CIRCUIT_OPEN_UNIT) TimeUnit openUnit,
+                                                          @ConfigProperty(name = PropertyNames.CIRCUIT_OPEN_VALUE) long openValue,
+                                                          @ConfigProperty(name = PropertyNames.CIRCUIT_HALF_OPEN_CALLS) int halfOpenCalls) {
+        return new CircuitBreaker.Settings(window, minCalls, failureRate, slowRate, slowUnit.toMillis(slowValue),
+                openUnit.toMillis(openValue), halfOpenCalls);
+    }
 
     @Produces
     @ApplicationScoped
     public OkHttpClient httpClient(@ConfigProperty(name = PropertyNames.GITHUB_TIMEOUT_UNIT) TimeUnit timeoutUnit,
-                                   @ConfigProperty(name = PropertyNames.GITHUB_TIMEOUT_VALUE) long timeoutValue,
-                                   @ConfigProperty(name = PropertyNames.GITHUB_LOG) boolean log) {
-        OkHttpClient.Builder builder = new OkHttpClient.Builder().connectTimeout(timeoutValue, timeoutUnit)
-                .readTimeout(timeoutValue, timeoutUnit)
-                .writeTimeout(timeoutValue, timeoutUnit);
+                                   @ConfigProperty(name = PropertyNames.GITHUB_TIMEOUT_CONNECT_VALUE) long connectTimeout,
+                                   @ConfigProperty(name = PropertyNames.GITHUB_TIMEOUT_READ_VALUE) long readTimeout,
+                                   @ConfigProperty(name = PropertyNames.GITHUB_TIMEOUT_WRITE_VALUE) long writeTimeout,
+                                   @ConfigProperty(name = PropertyNames.GITHUB_TIMEOUT_CALL_VALUE) long callTimeout,
+                                   @ConfigProperty(name = PropertyNames.GITHUB_POOL_IDLE) int poolIdle,
+                                   @ConfigProperty(name = PropertyNames.GITHUB_POOL_KEEP_ALIVE_UNIT) TimeUnit keepAliveUnit,
+                                   @ConfigProperty(name = PropertyNames.GITHUB_POOL_KEEP_ALIVE_VALUE) long keepAliveValue,
+                                   @ConfigProperty(name = PropertyNames.GITHUB_DISPATCHER_REQUESTS) int maxRequests,
+                                   @ConfigProperty(name = PropertyNames.GITHUB_DISPATCHER_HOST_REQUESTS) int maxHostRequests,
+                                   @ConfigProperty(name = PropertyNames.GITHUB_HTTP2) boolean http2,
+                                   @ConfigProperty(name = PropertyNames.THREADS_VIRTUAL) boolean virtualThreads,
+                                   @ConfigProperty(name = PropertyNames.THREADS_VIRTUAL_LIMIT) int virtualLimit,
+                                   @ConfigProperty(name = PropertyNames.GITHUB_LOG) boolean log,
+                                   @ConfigProperty(name = PropertyNames.GITHUB_CACHE_SIZE) long cacheSize,
+                                   @ConfigProperty(name = PropertyNames.GITHUB_CACHE_ENTRY_SIZE) long cacheEntrySize,
+                                   @ConfigProperty(name = PropertyNames.GITHUB_RETRY_ATTEMPTS) int retryAttempts,
+                                   @ConfigProperty(name = PropertyNames.GITHUB_RETRY_DELAY_BASE) long retryBaseDelay,
+                                   @ConfigProperty(name = PropertyNames.GITHUB_RETRY_DELAY_MAX) long retryMaxDelay,
+                                   @ConfigProperty(name = PropertyNames.GITHUB_RETRY_DEADLINE_UNIT) TimeUnit retryDeadlineUnit,
+                                   @ConfigProperty(name = PropertyNames.GITHUB_RETRY_DEADLINE_VALUE) long retryDeadlineValue,
+                                   @ConfigProperty(name = PropertyNames.GITHUB_RATE_LIMIT_RESERVE) double rateLimitReserve,
+                                   @ConfigProperty(name = PropertyNames.GITHUB_RATE_LIMIT_WAIT_UNIT) TimeUnit rateLimitWaitUnit,
+                                   @ConfigProperty(name = PropertyNames.GITHUB_RATE_LIMIT_WAIT_VALUE) long rateLimitWaitValue,
+                                   @ConfigProperty(name = PropertyNames.GITHUB_BULKHEAD_SIZE) int bulkheadSize,
+                                   @ConfigProperty(name = PropertyNames.BULKHEAD_WAIT_UNIT) TimeUnit bulkheadWaitUnit,
+                                   @ConfigProperty(name = PropertyNames.BULKHEAD_WAIT_VALUE) long bulkheadWaitValue,
+                                   CircuitBreaker.Settings circuitSettings, MeterRegistry meterRegistry) {
+        // asynchronous calls and their callbacks run on dispatcher threads
+        Dispatcher dispatcher = virtualThreads ?
+                new Dispatcher(Executors.newCachedThreadPool(VirtualThreads.factory("github-dispatcher-", true))) :
+                new Dispatcher();
+        // with virtual threads every webhook worker may call Github, so call limits must not be lower than the workers
+        dispatcher.setMaxRequests(virtualThreads ? virtualLimit : maxRequests);
+        dispatcher.setMaxRequestsPerHost(virtualThreads ? virtualLimit : maxHostRequests);
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(poolIdle, keepAliveValue, keepAliveUnit))
+                .dispatcher(dispatcher)
+                // HTTP/2 is negotiated with ALPN and falls back to HTTP/1.1 if the server does not support it
+                .protocols(http2 ? List.of(Protocol.HTTP_2, Protocol.HTTP_1_1) : List.of(Protocol.HTTP_1_1))
+                .connectTimeout(connectTimeout, timeoutUnit)
+                .readTimeout(readTimeout, timeoutUnit)
+                .writeTimeout(writeTimeout, timeoutUnit)
+                .callTimeout(callTimeout, timeoutUnit)
+                // every attempt passes the rate limit throttle
+                .addInterceptor(new RetryInterceptor(retryAttempts, retryBaseDelay, retryMaxDelay, retryDeadlineValue,
+                        retryDeadlineUnit, meterRegistry))
+                .addInterceptor(new RateLimitThrottle(rateLimitReserve, rateLimitWaitValue, rateLimitWaitUnit,
+                        meterRegistry));
+
+        if (cacheSize > 0) {
+            builder.addInterceptor(new ConditionalRequestCache(cacheSize, cacheEntrySize));
+        }
+
+        // every attempt is a separate call for the circuit breaker, backoff and throttle delays are not timed and do
+        // not hold a bulkhead permit
+        builder.addInterceptor(new CircuitBreakerInterceptor(
+                new CircuitBreaker(GITHUB_DEPENDENCY, circuitSettings, meterRegistry),
+                new Bulkhead(GITHUB_DEPENDENCY, virtualThreads ? virtualLimit : bulkheadSize, bulkheadWaitValue, bulkheadWaitUnit, meterRegistry)));
 
         if (log) {
             HttpLoggingInterceptor interceptor = new HttpLoggingInterceptor();
@@ -40,13 +135,23 @@ public class MergeValidateContext {
         return builder.build();
     }
 
+    public void warmUpHttpClient(@Observes StartupEvent event,
+                                 @ConfigProperty(name = PropertyNames.GITHUB_POOL_WARM) boolean warm,
+                                 @ConfigProperty(name = PropertyNames.GITHUB_API_URL) String githubUrl,
+                                 OkHttpClient client) {
+        if (warm) {
+            WebClientCommon.warmUp(client, githubUrl);
+        }
+    }
+
     @Produces
     @ApplicationScoped
     public GithubApiClient githubApiClient(@ConfigProperty(name = PropertyNames.GITHUB_API_URL) String githubUrl,
                                            OkHttpClient client) {
         Retrofit retrofit = new Retrofit.Builder()
                 .baseUrl(githubUrl)
-                .client(client)
+                // asynchronous calls wait for retries and rate limits without holding dispatcher slots
+                .callFactory(new DelayingCallFactory(client))
                 .addConverterFactory(ScalarsConverterFactory.create())
                 .addConverterFactory(GsonConverterFactory.create())
                 .build();
@@ -70,31 +175,80 @@ public class MergeValidateContext {
     @ApplicationScoped
     public JWT applicationKey(SecretManager secretManager,
                               @ConfigProperty(name = PropertyNames.GITHUB_APP_ID) String applicationId,
-                              @ConfigProperty(name = PropertyNames.GITHUB_RSA_KEY_SECRET) String keyName)
+                              @ConfigProperty(name = PropertyNames.GITHUB_RSA_KEY_SECRET) String keyName,
+                              @ConfigProperty(name = PropertyNames.GITHUB_JWT_CACHE) boolean cache,
+                              @ConfigProperty(name = PropertyNames.GITHUB_JWT_REFRESH_UNIT) TimeUnit refreshUnit,
+                              @ConfigProperty(name = PropertyNames.GITHUB_JWT_REFRESH_VALUE) long refreshValue,
+                              MeterRegistry meterRegistry)
             throws IOException {
         byte[] rsaKeyBytes = secretManager.getRawSecret(keyName);
-        return new JwtService(applicationId, rsaKeyBytes);
+        JwtService jwtService = new JwtService(applicationId, rsaKeyBytes);
+        if (cache) {
+            return new CachedJwtService(jwtService, refreshValue, refreshUnit, meterRegistry);
+        }
+        return jwtService;
     }
 
     @Produces
     @ApplicationScoped
     public Github githubService(GithubApiClient apiClient, Charset currentCharset,
 
-                                @ConfigProperty(name = PropertyNames.GITHUB_FILE_SIZE_LIMIT) long sizeLimit) {
-        return new GithubService(apiClient, sizeLimit, currentCharset);
+                                @ConfigProperty(name = PropertyNames.GITHUB_FILE_SIZE_LIMIT) long sizeLimit,
+                                @ConfigProperty(name = PropertyNames.GITHUB_FILE_RAW) boolean rawFile,
+                                @ConfigProperty(name = PropertyNames.GITHUB_CACHE_SIZE) long cacheSize,
+                                @ConfigProperty(name = PropertyNames.GITHUB_CACHE_ENTRY_SIZE) long cacheEntrySize) {
+        if (rawFile && Math.min(cacheSize, cacheEntrySize) < sizeLimit) {
+            LOGGER.warnf("Github responses cache does not fit merge configuration files of %d bytes, raw file lookup "
+                    + "downloads them on every validation", sizeLimit);
+        }
+        return new GithubService(apiClient, sizeLimit, currentCharset, rawFile);
     }
 
     @Produces
     @ApplicationScoped
-    public Datastore datastoreService(@ConfigProperty(name = PropertyNames.APPLICATION_NAME) String applicationName) {
-        return DatastoreOptions.newBuilder().setNamespace(applicationName).build().getService();
+    public GithubAsync githubAsyncService(GithubApiClient apiClient, Charset currentCharset,
+                                          @ConfigProperty(name = PropertyNames.GITHUB_FILE_SIZE_LIMIT) long sizeLimit,
+                                          @ConfigProperty(name = PropertyNames.GITHUB_FILE_RAW) boolean rawFile) {
+        return new GithubService(apiClient, sizeLimit, currentCharset, rawFile);
     }
 
     @Produces
     @ApplicationScoped
-    public MergeValidate mergeValidateService(Github client, Charset charset,
-                                              @ConfigProperty(name = PropertyNames.APPLICATION_NAME) String applicationName) {
-        return new MergeValidateService(client, "." + applicationName, charset);
+    public Datastore datastoreService(@ConfigProperty(name = PropertyNames.APPLICATION_NAME) String applicationName,
+                                      @ConfigProperty(name = PropertyNames.DATASTORE_BULKHEAD_SIZE) int bulkheadSize,
+                                      @ConfigProperty(name = PropertyNames.BULKHEAD_WAIT_UNIT) TimeUnit bulkheadWaitUnit,
+                                      @ConfigProperty(name = PropertyNames.BULKHEAD_WAIT_VALUE) long bulkheadWaitValue,
+                                      CircuitBreaker.Settings circuitSettings, MeterRegistry meterRegistry) {
+        Datastore datastore = DatastoreOptions.newBuilder().setNamespace(applicationName).build().getService();
+        return GuardedProxy.create(Datastore.class, datastore,
+                new CircuitBreaker(DATASTORE_DEPENDENCY, circuitSettings, meterRegistry),
+                new Bulkhead(DATASTORE_DEPENDENCY, bulkheadSize, bulkheadWaitValue, bulkheadWaitUnit, meterRegistry),
+                DATASTORE_GUARDED_TYPES, MergeValidateContext::isDatastoreFailure);
+    }
+
+    private static boolean isDatastoreFailure(Throwable error) {
+        if (!(error instanceof DatastoreException)) {
+            return false;
+        }
+        DatastoreException datastoreError = (DatastoreException) error;
+        return datastoreError.getCause() instanceof IOException
+                || DATASTORE_FAILURE_REASONS.contains(datastoreError.getReason());
+    }
+
+    @Produces
+    @ApplicationScoped
+    public MergeValidate mergeValidateService(Github client, GithubAsync asyncClient, Charset charset,
+                                              @ConfigProperty(name = PropertyNames.APPLICATION_NAME) String applicationName,
+                                              @ConfigProperty(name = PropertyNames.VALIDATION_CACHE_SIZE) int cacheSize,
+                                              @ConfigProperty(name = PropertyNames.VALIDATION_CACHE_RULES) long cacheRules,
+                                              @ConfigProperty(name = PropertyNames.VALIDATION_THREADS) int threads,
+                                              @ConfigProperty(name = PropertyNames.VALIDATION_TIMEOUT_UNIT) TimeUnit timeoutUnit,
+                                              @ConfigProperty(name = PropertyNames.VALIDATION_TIMEOUT_VALUE) long timeoutValue,
+                                              @ConfigProperty(name = PropertyNames.THREADS_VIRTUAL) boolean virtualThreads,
+                                              @ConfigProperty(name = PropertyNames.THREADS_VIRTUAL_LIMIT) int virtualLimit) {
+        return new MergeValidateService(client, asyncClient, "." + applicationName, charset,
+                new ValidationPatternCache(cacheSize, cacheRules), virtualThreads && threads > 0 ? virtualLimit : threads,
+                timeoutValue, timeoutUnit, VirtualThreads.factory("merge-validate-", virtualThreads));
     }
 
     @Produces
@@ -105,10 +259,36 @@ public class MergeValidateContext {
         return new TinkEncryptionService(secretManager, keyName);
     }
 
+    @Produces
+    @ApplicationScoped
+    public DeliveryRegistry deliveryRegistry(@ConfigProperty(name = PropertyNames.GITHUB_WEBHOOK_DELIVERY_TTL_UNIT) TimeUnit ttlUnit,
+                                             @ConfigProperty(name = PropertyNames.GITHUB_WEBHOOK_DELIVERY_TTL_VALUE) long ttlValue,
+                                             @ConfigProperty(name = PropertyNames.GITHUB_WEBHOOK_DELIVERY_CACHE_SIZE) int cacheSize,
+                                             @ConfigProperty(name = PropertyNames.GITHUB_WEBHOOK_DELIVERY_DATASTORE) boolean shared,
+                                             Datastore datastore) {
+        return new DeliveryRegistryService(ttlValue, ttlUnit, cacheSize, shared ? datastore : null);
+    }
+
     @Produces
     @ApplicationScoped
     public GithubWebhook githubWebhookService(@ConfigProperty(name = PropertyNames.APPLICATION_NAME) String appName,
-                                              Github github, MergeValidate mergeValidate, JWT jwt, Datastore datastore) {
-        return new GithubWebhookService(appName, github, mergeValidate, jwt, datastore);
+                                              Github github, GithubAsync githubAsync, MergeValidate mergeValidate,
+                                              JWT jwt, Datastore datastore, DeliveryRegistry deliveryRegistry,
+                                              @ConfigProperty(name = PropertyNames.GITHUB_TOKEN_REFRESH_UNIT) TimeUnit tokenRefreshUnit,
+                                              @ConfigProperty(name = PropertyNames.GITHUB_TOKEN_REFRESH_VALUE) long tokenRefreshValue,
+                                              @ConfigProperty(name = PropertyNames.GITHUB_WEBHOOK_ASYNC) boolean async,
+                                              @ConfigProperty(name = PropertyNames.GITHUB_WEBHOOK_WORKERS) int workers,
+                                              @ConfigProperty(name = PropertyNames.GITHUB_WEBHOOK_QUEUE_SIZE) int queueSize,
+                                              @ConfigProperty(name = PropertyNames.GITHUB_WEBHOOK_NON_BLOCKING) boolean nonBlocking,
+                                              @ConfigProperty(name = PropertyNames.THREADS_VIRTUAL) boolean virtualThreads,
+                                              @ConfigProperty(name = PropertyNames.THREADS_VIRTUAL_LIMIT) int virtualLimit,
+                                              MeterRegistry meterRegistry) {
+        GithubWebhook webhook = new GithubWebhookService(appName, github, githubAsync, mergeValidate, jwt, datastore,
+                tokenRefreshValue, tokenRefreshUnit);
+        if (async) {
+            return new AsyncGithubWebhookService(webhook, virtualThreads ? virtualLimit : workers, queueSize,
+                    meterRegistry, nonBlocking, VirtualThreads.factory("webhook-worker-", virtualThreads), deliveryRegistry);
+        }
+        return webhook;
     }
 }
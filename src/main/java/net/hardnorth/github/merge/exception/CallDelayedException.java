@@ -0,0 +1,26 @@
+package net.hardnorth.github.merge.exception;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thrown by an HTTP client interceptor instead of waiting inside an asynchronous call, so the call does not hold a
+ * dispatcher slot while it waits. The call should be enqueued again after the delay.
+ */
+public class CallDelayedException extends CallRejectedException {
+    private static final long serialVersionUID = 1L;
+
+    private final long delay;
+
+    /**
+     * @param message     error message
+     * @param delayMillis how many milliseconds the call should wait before the next attempt
+     */
+    public CallDelayedException(String message, long delayMillis) {
+        super(message, TimeUnit.MILLISECONDS.toSeconds(delayMillis + 999));
+        delay = delayMillis;
+    }
+
+    public long getDelay() {
+        return delay;
+    }
+}
@@ -0,0 +1,26 @@
+package net.hardnorth.github.merge.exception;
+
+import java.io.IOException;
+
+/**
+ * Thrown by an HTTP client interceptor instead of a call which is not allowed to reach a downstream service right now.
+ * It is an {@link IOException} to pass through OkHttp call chain.
+ */
+public class CallRejectedException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfter;
+
+    /**
+     * @param message           error message
+     * @param retryAfterSeconds how many seconds until the call may be allowed
+     */
+    public CallRejectedException(String message, long retryAfterSeconds) {
+        super(message);
+        retryAfter = retryAfterSeconds;
+    }
+
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+}
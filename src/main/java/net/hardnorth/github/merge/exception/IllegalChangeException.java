@@ -0,0 +1,51 @@
+package net.hardnorth.github.merge.exception;
+
+import net.hardnorth.github.merge.model.FileChange;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Locale;
+
+/**
+ * Validation verdict for a merge which is rejected because of a file change.
+ */
+public class IllegalChangeException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    private static final String MESSAGE = "Unable to merge branches: illegal changes";
+
+    private final transient FileChange change;
+    private final String rule;
+
+    /**
+     * @param illegalChange the first rejected change
+     * @param matchedRule   the merge configuration rule which rejected the change or <code>null</code> if no rule
+     *                      matched it or the change type is not allowed at all
+     */
+    public IllegalChangeException(@Nonnull FileChange illegalChange, @Nullable String matchedRule) {
+        super(MESSAGE + ": " + explain(illegalChange, matchedRule));
+        change = illegalChange;
+        rule = matchedRule;
+    }
+
+    private static String explain(FileChange change, String rule) {
+        String file = "'" + change.getName() + "'";
+        if (FileChange.Type.CHANGED != change.getType()) {
+            return file + " is " + change.getType().name().toLowerCase(Locale.ROOT);
+        }
+        if (rule == null) {
+            return file + " does not match any rule";
+        }
+        return file + " is excluded by rule '" + rule + "'";
+    }
+
+    @Nonnull
+    public FileChange getChange() {
+        return change;
+    }
+
+    @Nullable
+    public String getRule() {
+        return rule;
+    }
+}
@@ -0,0 +1,16 @@
+package net.hardnorth.github.merge.exception;
+
+/**
+ * Thrown instead of a call which would have to wait for the rate limit reset too long.
+ */
+public class RateLimitException extends CallRejectedException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param message           error message
+     * @param retryAfterSeconds how many seconds until the rate limit allows the call
+     */
+    public RateLimitException(String message, long retryAfterSeconds) {
+        super(message, retryAfterSeconds);
+    }
+}
@@ -0,0 +1,20 @@
+package net.hardnorth.github.merge.exception;
+
+public class ServiceUnavailableException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfter;
+
+    /**
+     * @param message           error message
+     * @param retryAfterSeconds how many seconds a client should wait before the next request
+     */
+    public ServiceUnavailableException(String message, long retryAfterSeconds) {
+        super(message);
+        retryAfter = retryAfterSeconds;
+    }
+
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,36 @@
+package net.hardnorth.github.merge.exception;
+
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.jboss.logging.Logger;
+
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+import java.util.Collections;
+
+import static net.hardnorth.github.merge.utils.WebExceptionUtils.getExceptionResponse;
+
+@Provider
+public class ServiceUnavailableExceptionHandler implements ExceptionMapper<ServiceUnavailableException> {
+    private static final Logger LOGGER = Logger.getLogger(ServiceUnavailableExceptionHandler.class);
+
+    @Context
+    private ResourceInfo resourceInfo;
+
+    @Context
+    private UriInfo uriInfo;
+
+    @Override
+    public Response toResponse(ServiceUnavailableException exception) {
+        String error = "Service is overloaded";
+        int status = HttpStatus.SC_SERVICE_UNAVAILABLE;
+        LOGGER.warn(error + ": " + exception.getLocalizedMessage());
+        return getExceptionResponse(uriInfo, status,
+                Collections.singletonMap(HttpHeaders.RETRY_AFTER, String.valueOf(exception.getRetryAfter())),
+                error, exception);
+    }
+}
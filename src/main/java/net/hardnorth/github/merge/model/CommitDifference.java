@@ -1,19 +1,30 @@
 package net.hardnorth.github.merge.model;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class CommitDifference {
 
     private final int aheadBy;
     private final int behindBy;
-    private final List<FileChange> commits;
+    private final Iterable<FileChange> changes;
 
     @SuppressWarnings("CdiInjectionPointsInspection")
     public CommitDifference(int aheadByCount, int behindByCount, List<FileChange> commitDifference) {
+        this(aheadByCount, behindByCount, (Iterable<FileChange>) Collections.unmodifiableList(commitDifference));
+    }
+
+    /**
+     * @param aheadByCount     number of commits the head is ahead of the base
+     * @param behindByCount    number of commits the head is behind the base
+     * @param commitDifference changed files, may be loaded lazily during iteration
+     */
+    @SuppressWarnings("CdiInjectionPointsInspection")
+    public CommitDifference(int aheadByCount, int behindByCount, Iterable<FileChange> commitDifference) {
         aheadBy = aheadByCount;
         behindBy = behindByCount;
-        commits = new ArrayList<>(commitDifference);
+        changes = commitDifference;
     }
 
     public int getAheadBy() {
@@ -24,12 +35,27 @@ public class CommitDifference {
         return behindBy;
     }
 
+    /**
+     * @return changed files, a lazy implementation may load them during iteration
+     */
+    public Iterable<FileChange> getChanges() {
+        return changes;
+    }
+
+    /**
+     * @return a read-only view of changed files, lazily loaded ones are loaded all at once
+     */
     public List<FileChange> getCommits() {
-        return new ArrayList<>(commits);
+        if (changes instanceof List) {
+            return (List<FileChange>) changes;
+        }
+        List<FileChange> result = new ArrayList<>();
+        changes.forEach(result::add);
+        return result;
     }
 
     @Override
     public String toString() {
-        return "[Ahead: " + aheadBy + "; Behind: " + behindBy + "; Changes: " + commits + "]";
+        return "[Ahead: " + aheadBy + "; Behind: " + behindBy + "; Changes: " + changes + "]";
     }
 }
@@ -15,6 +15,11 @@ public class FileChange {
             status = githubStatus;
         }
 
+        @Nonnull
+        public String getStatus() {
+            return status;
+        }
+
         @Nullable
         public static Type getByStatus(final String githubStatus) {
             return Arrays.stream(values()).filter(v -> v.status.equals(githubStatus)).findAny().orElse(null);
@@ -0,0 +1,52 @@
+package net.hardnorth.github.merge.model;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+public class FileInfo {
+    private final String path;
+    private final String sha;
+    private final long size;
+    private final byte[] content;
+
+    @SuppressWarnings("CdiInjectionPointsInspection")
+    public FileInfo(@Nonnull final String filePath, @Nullable final String blobSha, final long fileSize) {
+        this(filePath, blobSha, fileSize, null);
+    }
+
+    @SuppressWarnings("CdiInjectionPointsInspection")
+    public FileInfo(@Nonnull final String filePath, @Nullable final String blobSha, final long fileSize,
+                    @Nullable final byte[] fileContent) {
+        path = filePath;
+        sha = blobSha;
+        size = fileSize;
+        content = fileContent;
+    }
+
+    @Nonnull
+    public String getPath() {
+        return path;
+    }
+
+    @Nullable
+    public String getSha() {
+        return sha;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return file content if it was downloaded together with the file info, <code>null</code> otherwise
+     */
+    @Nullable
+    public byte[] getContent() {
+        return content;
+    }
+
+    @Override
+    public String toString() {
+        return "[File: " + path + "; SHA: " + sha + "; Size: " + size + "]";
+    }
+}
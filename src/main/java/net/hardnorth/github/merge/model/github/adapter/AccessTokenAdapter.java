@@ -0,0 +1,40 @@
+package net.hardnorth.github.merge.model.github.adapter;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import net.hardnorth.github.merge.model.github.repo.AccessToken;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+
+public class AccessTokenAdapter extends ObjectAdapter<AccessToken> {
+    private static final String TOKEN = "token";
+    private static final String EXPIRES_AT = "expires_at";
+
+    @Nonnull
+    @Override
+    protected AccessToken newInstance() {
+        return new AccessToken();
+    }
+
+    @Override
+    protected boolean readField(@Nonnull JsonReader in, @Nonnull String name, @Nonnull AccessToken result)
+            throws IOException {
+        switch (name) {
+            case TOKEN:
+                result.setToken(in.nextString());
+                return true;
+            case EXPIRES_AT:
+                result.setExpiresAt(in.nextString());
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    protected void writeFields(@Nonnull JsonWriter out, @Nonnull AccessToken value) throws IOException {
+        out.name(TOKEN).value(value.getToken());
+        out.name(EXPIRES_AT).value(value.getExpiresAt());
+    }
+}
@@ -0,0 +1,43 @@
+package net.hardnorth.github.merge.model.github.adapter;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import net.hardnorth.github.merge.model.github.hook.Branch;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+
+/**
+ * Reads a pull request head or base, the repository and user objects inside are skipped.
+ */
+public class BranchAdapter extends ObjectAdapter<Branch> {
+    private static final String REF = "ref";
+    private static final String SHA = "sha";
+
+    @Nonnull
+    @Override
+    protected Branch newInstance() {
+        return new Branch();
+    }
+
+    @Override
+    protected boolean readField(@Nonnull JsonReader in, @Nonnull String name, @Nonnull Branch result)
+            throws IOException {
+        switch (name) {
+            case REF:
+                result.setRef(in.nextString());
+                return true;
+            case SHA:
+                result.setSha(in.nextString());
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    protected void writeFields(@Nonnull JsonWriter out, @Nonnull Branch value) throws IOException {
+        out.name(REF).value(value.getRef());
+        out.name(SHA).value(value.getSha());
+    }
+}
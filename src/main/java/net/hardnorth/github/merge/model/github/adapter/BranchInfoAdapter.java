@@ -0,0 +1,51 @@
+package net.hardnorth.github.merge.model.github.adapter;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import net.hardnorth.github.merge.model.github.repo.BranchInfo;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+
+public class BranchInfoAdapter extends ObjectAdapter<BranchInfo> {
+    private static final String NAME = "name";
+    private static final String COMMIT = "commit";
+    private static final String SHA = "sha";
+
+    @Nonnull
+    @Override
+    protected BranchInfo newInstance() {
+        return new BranchInfo();
+    }
+
+    @Override
+    protected boolean readField(@Nonnull JsonReader in, @Nonnull String name, @Nonnull BranchInfo result)
+            throws IOException {
+        switch (name) {
+            case NAME:
+                result.setName(in.nextString());
+                return true;
+            case COMMIT:
+                // only the commit SHA is needed, the commit itself with its tree and parents is skipped
+                in.beginObject();
+                while (in.hasNext()) {
+                    if (SHA.equals(in.nextName()) && in.peek() == JsonToken.STRING) {
+                        result.setCommitSha(in.nextString());
+                    } else {
+                        in.skipValue();
+                    }
+                }
+                in.endObject();
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    protected void writeFields(@Nonnull JsonWriter out, @Nonnull BranchInfo value) throws IOException {
+        out.name(NAME).value(value.getName());
+        out.name(COMMIT).beginObject().name(SHA).value(value.getCommitSha()).endObject();
+    }
+}
@@ -0,0 +1,128 @@
+package net.hardnorth.github.merge.model.github.adapter;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import net.hardnorth.github.merge.model.github.repo.BranchProtection;
+import net.hardnorth.github.merge.model.github.repo.RequiredPullRequestReviews;
+import net.hardnorth.github.merge.model.github.repo.RequiredStatusChecks;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads required status checks and pull request review settings of a branch protection, other protection settings are
+ * skipped.
+ */
+public class BranchProtectionAdapter extends ObjectAdapter<BranchProtection> {
+    private static final String REQUIRED_STATUS_CHECKS = "required_status_checks";
+    private static final String REQUIRED_PULL_REQUEST_REVIEWS = "required_pull_request_reviews";
+    private static final String STRICT = "strict";
+    private static final String CONTEXTS = "contexts";
+    private static final String DISMISS_STALE_REVIEWS = "dismiss_stale_reviews";
+    private static final String REQUIRE_CODE_OWNER_REVIEWS = "require_code_owner_reviews";
+
+    private static final ObjectAdapter<RequiredStatusChecks> STATUS_CHECKS_ADAPTER =
+            new ObjectAdapter<RequiredStatusChecks>() {
+                @Nonnull
+                @Override
+                protected RequiredStatusChecks newInstance() {
+                    return new RequiredStatusChecks();
+                }
+
+                @Override
+                protected boolean readField(@Nonnull JsonReader in, @Nonnull String name,
+                                            @Nonnull RequiredStatusChecks result) throws IOException {
+                    switch (name) {
+                        case STRICT:
+                            result.setStrict(in.nextBoolean());
+                            return true;
+                        case CONTEXTS:
+                            List<String> contexts = new ArrayList<>();
+                            in.beginArray();
+                            while (in.hasNext()) {
+                                contexts.add(in.nextString());
+                            }
+                            in.endArray();
+                            result.setContexts(contexts);
+                            return true;
+                        default:
+                            return false;
+                    }
+                }
+
+                @Override
+                protected void writeFields(@Nonnull JsonWriter out, @Nonnull RequiredStatusChecks value)
+                        throws IOException {
+                    out.name(STRICT).value(value.getStrict());
+                    if (value.getContexts() == null) {
+                        out.name(CONTEXTS).nullValue();
+                        return;
+                    }
+                    out.name(CONTEXTS).beginArray();
+                    for (String context : value.getContexts()) {
+                        out.value(context);
+                    }
+                    out.endArray();
+                }
+            };
+
+    private static final ObjectAdapter<RequiredPullRequestReviews> REVIEWS_ADAPTER =
+            new ObjectAdapter<RequiredPullRequestReviews>() {
+                @Nonnull
+                @Override
+                protected RequiredPullRequestReviews newInstance() {
+                    return new RequiredPullRequestReviews();
+                }
+
+                @Override
+                protected boolean readField(@Nonnull JsonReader in, @Nonnull String name,
+                                            @Nonnull RequiredPullRequestReviews result) throws IOException {
+                    switch (name) {
+                        case DISMISS_STALE_REVIEWS:
+                            result.setDismissStaleReviews(in.nextBoolean());
+                            return true;
+                        case REQUIRE_CODE_OWNER_REVIEWS:
+                            result.setRequireCodeOwnerReviews(in.nextBoolean());
+                            return true;
+                        default:
+                            return false;
+                    }
+                }
+
+                @Override
+                protected void writeFields(@Nonnull JsonWriter out, @Nonnull RequiredPullRequestReviews value)
+                        throws IOException {
+                    out.name(DISMISS_STALE_REVIEWS).value(value.getDismissStaleReviews());
+                    out.name(REQUIRE_CODE_OWNER_REVIEWS).value(value.getRequireCodeOwnerReviews());
+                }
+            };
+
+    @Nonnull
+    @Override
+    protected BranchProtection newInstance() {
+        return new BranchProtection();
+    }
+
+    @Override
+    protected boolean readField(@Nonnull JsonReader in, @Nonnull String name, @Nonnull BranchProtection result)
+            throws IOException {
+        switch (name) {
+            case REQUIRED_STATUS_CHECKS:
+                result.setRequiredStatusChecks(STATUS_CHECKS_ADAPTER.read(in));
+                return true;
+            case REQUIRED_PULL_REQUEST_REVIEWS:
+                result.setRequiredPullRequestReviews(REVIEWS_ADAPTER.read(in));
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    protected void writeFields(@Nonnull JsonWriter out, @Nonnull BranchProtection value) throws IOException {
+        writeValue(out, REQUIRED_STATUS_CHECKS, STATUS_CHECKS_ADAPTER, value.getRequiredStatusChecks());
+        writeValue(out, REQUIRED_PULL_REQUEST_REVIEWS, REVIEWS_ADAPTER, value.getRequiredPullRequestReviews());
+    }
+}
@@ -0,0 +1,96 @@
+package net.hardnorth.github.merge.model.github.adapter;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import net.hardnorth.github.merge.model.FileChange;
+import net.hardnorth.github.merge.model.github.repo.Comparison;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a commit comparison into counters and a list of {@link FileChange}. Commit list and file patches, which are
+ * the bulk of the response, are skipped.
+ */
+public class ComparisonAdapter extends ObjectAdapter<Comparison> {
+    private static final String AHEAD_BY = "ahead_by";
+    private static final String BEHIND_BY = "behind_by";
+    private static final String FILES = "files";
+    private static final String FILENAME = "filename";
+    private static final String STATUS = "status";
+
+    @Nonnull
+    @Override
+    protected Comparison newInstance() {
+        return new Comparison();
+    }
+
+    @Nonnull
+    private static FileChange readFile(@Nonnull JsonReader in) throws IOException {
+        String status = null;
+        String fileName = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (STATUS.equals(name) && in.peek() == JsonToken.STRING) {
+                status = in.nextString();
+            } else if (FILENAME.equals(name) && in.peek() == JsonToken.STRING) {
+                fileName = in.nextString();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        FileChange.Type type = FileChange.Type.getByStatus(status);
+        if (type == null || fileName == null) {
+            throw new JsonSyntaxException("Invalid file change: " + fileName + " " + status);
+        }
+        return new FileChange(type, fileName);
+    }
+
+    @Override
+    protected boolean readField(@Nonnull JsonReader in, @Nonnull String name, @Nonnull Comparison result)
+            throws IOException {
+        switch (name) {
+            case AHEAD_BY:
+                result.setAheadBy(in.nextInt());
+                return true;
+            case BEHIND_BY:
+                result.setBehindBy(in.nextInt());
+                return true;
+            case FILES:
+                List<FileChange> files = new ArrayList<>();
+                in.beginArray();
+                while (in.hasNext()) {
+                    files.add(readFile(in));
+                }
+                in.endArray();
+                result.setFiles(files);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    protected void writeFields(@Nonnull JsonWriter out, @Nonnull Comparison value) throws IOException {
+        out.name(AHEAD_BY).value(value.getAheadBy());
+        out.name(BEHIND_BY).value(value.getBehindBy());
+        if (value.getFiles() == null) {
+            out.name(FILES).nullValue();
+            return;
+        }
+        out.name(FILES).beginArray();
+        for (FileChange file : value.getFiles()) {
+            out.beginObject();
+            out.name(FILENAME).value(file.getName());
+            out.name(STATUS).value(file.getType().getStatus());
+            out.endObject();
+        }
+        out.endArray();
+    }
+}
@@ -0,0 +1,50 @@
+package net.hardnorth.github.merge.model.github.adapter;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import net.hardnorth.github.merge.model.github.repo.ContentEntry;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+
+public class ContentEntryAdapter extends ObjectAdapter<ContentEntry> {
+    private static final String TYPE = "type";
+    private static final String NAME = "name";
+    private static final String SIZE = "size";
+    private static final String SHA = "sha";
+
+    @Nonnull
+    @Override
+    protected ContentEntry newInstance() {
+        return new ContentEntry();
+    }
+
+    @Override
+    protected boolean readField(@Nonnull JsonReader in, @Nonnull String name, @Nonnull ContentEntry result)
+            throws IOException {
+        switch (name) {
+            case TYPE:
+                result.setType(in.nextString());
+                return true;
+            case NAME:
+                result.setName(in.nextString());
+                return true;
+            case SIZE:
+                result.setSize(in.nextLong());
+                return true;
+            case SHA:
+                result.setSha(in.nextString());
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    protected void writeFields(@Nonnull JsonWriter out, @Nonnull ContentEntry value) throws IOException {
+        out.name(TYPE).value(value.getType());
+        out.name(NAME).value(value.getName());
+        out.name(SIZE).value(value.getSize());
+        out.name(SHA).value(value.getSha());
+    }
+}
@@ -0,0 +1,71 @@
+package net.hardnorth.github.merge.model.github.adapter;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+
+/**
+ * Base streaming adapter for Github API objects. Reads only known fields straight into a DTO and skips the rest of
+ * the object without building a JSON tree, <code>null</code> values are skipped too.
+ *
+ * @param <T> DTO type
+ */
+public abstract class ObjectAdapter<T> extends TypeAdapter<T> {
+
+    @Nonnull
+    protected abstract T newInstance();
+
+    /**
+     * Reads a value of a known field into the result.
+     *
+     * @param in     a reader positioned at the field value
+     * @param name   field name
+     * @param result an object to read into
+     * @return <code>false</code> if the field is unknown and the value was not consumed
+     * @throws IOException on read failure
+     */
+    protected abstract boolean readField(@Nonnull JsonReader in, @Nonnull String name, @Nonnull T result)
+            throws IOException;
+
+    protected abstract void writeFields(@Nonnull JsonWriter out, @Nonnull T value) throws IOException;
+
+    @Override
+    public T read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        T result = newInstance();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL || !readField(in, name, result)) {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return result;
+    }
+
+    @Override
+    public void write(JsonWriter out, T value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        writeFields(out, value);
+        out.endObject();
+    }
+
+    protected static <V> void writeValue(@Nonnull JsonWriter out, @Nonnull String name, @Nonnull TypeAdapter<V> adapter,
+                                         @Nullable V value) throws IOException {
+        out.name(name);
+        adapter.write(out, value);
+    }
+}
@@ -0,0 +1,57 @@
+package net.hardnorth.github.merge.model.github.adapter;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import net.hardnorth.github.merge.model.github.repo.PullRequest;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+
+public class PullRequestAdapter extends ObjectAdapter<PullRequest> {
+    private static final BranchAdapter BRANCH_ADAPTER = new BranchAdapter();
+
+    private static final String NUMBER = "number";
+    private static final String MERGEABLE = "mergeable";
+    private static final String MERGEABLE_STATE = "mergeable_state";
+    private static final String HEAD = "head";
+    private static final String BASE = "base";
+
+    @Nonnull
+    @Override
+    protected PullRequest newInstance() {
+        return new PullRequest();
+    }
+
+    @Override
+    protected boolean readField(@Nonnull JsonReader in, @Nonnull String name, @Nonnull PullRequest result)
+            throws IOException {
+        switch (name) {
+            case NUMBER:
+                result.setNumber(in.nextInt());
+                return true;
+            case MERGEABLE:
+                result.setMergeable(in.nextBoolean());
+                return true;
+            case MERGEABLE_STATE:
+                result.setMergeableState(in.nextString());
+                return true;
+            case HEAD:
+                result.setHead(BRANCH_ADAPTER.read(in));
+                return true;
+            case BASE:
+                result.setBase(BRANCH_ADAPTER.read(in));
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    protected void writeFields(@Nonnull JsonWriter out, @Nonnull PullRequest value) throws IOException {
+        out.name(NUMBER).value(value.getNumber());
+        out.name(MERGEABLE).value(value.getMergeable());
+        out.name(MERGEABLE_STATE).value(value.getMergeableState());
+        writeValue(out, HEAD, BRANCH_ADAPTER, value.getHead());
+        writeValue(out, BASE, BRANCH_ADAPTER, value.getBase());
+    }
+}
@@ -1,5 +1,9 @@
 package net.hardnorth.github.merge.model.github.hook;
 
+import com.google.gson.annotations.JsonAdapter;
+import net.hardnorth.github.merge.model.github.adapter.BranchAdapter;
+
+@JsonAdapter(BranchAdapter.class)
 public class Branch {
     private String ref;
 
@@ -0,0 +1,27 @@
+package net.hardnorth.github.merge.model.github.repo;
+
+import com.google.gson.annotations.JsonAdapter;
+import net.hardnorth.github.merge.model.github.adapter.AccessTokenAdapter;
+
+@JsonAdapter(AccessTokenAdapter.class)
+public class AccessToken {
+    private String token;
+
+    private String expiresAt;
+
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
+
+    public String getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(String expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
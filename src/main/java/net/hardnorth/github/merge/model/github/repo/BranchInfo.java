@@ -0,0 +1,27 @@
+package net.hardnorth.github.merge.model.github.repo;
+
+import com.google.gson.annotations.JsonAdapter;
+import net.hardnorth.github.merge.model.github.adapter.BranchInfoAdapter;
+
+@JsonAdapter(BranchInfoAdapter.class)
+public class BranchInfo {
+    private String name;
+
+    private String commitSha;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getCommitSha() {
+        return commitSha;
+    }
+
+    public void setCommitSha(String commitSha) {
+        this.commitSha = commitSha;
+    }
+}
@@ -1,7 +1,10 @@
 package net.hardnorth.github.merge.model.github.repo;
 
+import com.google.gson.annotations.JsonAdapter;
 import com.google.gson.annotations.SerializedName;
+import net.hardnorth.github.merge.model.github.adapter.BranchProtectionAdapter;
 
+@JsonAdapter(BranchProtectionAdapter.class)
 public class BranchProtection {
 
     @SerializedName("required_status_checks")
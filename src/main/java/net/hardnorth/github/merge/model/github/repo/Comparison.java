@@ -0,0 +1,40 @@
+package net.hardnorth.github.merge.model.github.repo;
+
+import com.google.gson.annotations.JsonAdapter;
+import net.hardnorth.github.merge.model.FileChange;
+import net.hardnorth.github.merge.model.github.adapter.ComparisonAdapter;
+
+import java.util.List;
+
+@JsonAdapter(ComparisonAdapter.class)
+public class Comparison {
+    private Integer aheadBy;
+
+    private Integer behindBy;
+
+    private List<FileChange> files;
+
+    public Integer getAheadBy() {
+        return aheadBy;
+    }
+
+    public void setAheadBy(Integer aheadBy) {
+        this.aheadBy = aheadBy;
+    }
+
+    public Integer getBehindBy() {
+        return behindBy;
+    }
+
+    public void setBehindBy(Integer behindBy) {
+        this.behindBy = behindBy;
+    }
+
+    public List<FileChange> getFiles() {
+        return files;
+    }
+
+    public void setFiles(List<FileChange> files) {
+        this.files = files;
+    }
+}
@@ -0,0 +1,47 @@
+package net.hardnorth.github.merge.model.github.repo;
+
+import com.google.gson.annotations.JsonAdapter;
+import net.hardnorth.github.merge.model.github.adapter.ContentEntryAdapter;
+
+@JsonAdapter(ContentEntryAdapter.class)
+public class ContentEntry {
+    private String type;
+
+    private String name;
+
+    private Long size;
+
+    private String sha;
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Long getSize() {
+        return size;
+    }
+
+    public void setSize(Long size) {
+        this.size = size;
+    }
+
+    public String getSha() {
+        return sha;
+    }
+
+    public void setSha(String sha) {
+        this.sha = sha;
+    }
+}
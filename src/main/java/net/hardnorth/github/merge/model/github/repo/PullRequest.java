@@ -1,7 +1,11 @@
 package net.hardnorth.github.merge.model.github.repo;
 
+import com.google.gson.annotations.JsonAdapter;
 import com.google.gson.annotations.SerializedName;
+import net.hardnorth.github.merge.model.github.adapter.PullRequestAdapter;
+import net.hardnorth.github.merge.model.github.hook.Branch;
 
+@JsonAdapter(PullRequestAdapter.class)
 public class PullRequest {
     private Integer number;
 
@@ -10,6 +14,10 @@ public class PullRequest {
     @SerializedName("mergeable_state")
     private String mergeableState;
 
+    private Branch head;
+
+    private Branch base;
+
     public Integer getNumber() {
         return number;
     }
@@ -33,4 +41,20 @@ public class PullRequest {
     public void setMergeableState(String mergeableState) {
         this.mergeableState = mergeableState;
     }
+
+    public Branch getHead() {
+        return head;
+    }
+
+    public void setHead(Branch head) {
+        this.head = head;
+    }
+
+    public Branch getBase() {
+        return base;
+    }
+
+    public void setBase(Branch base) {
+        this.base = base;
+    }
 }
@@ -0,0 +1,21 @@
+package net.hardnorth.github.merge.service;
+
+import javax.annotation.Nonnull;
+
+public interface DeliveryRegistry {
+
+    /**
+     * Remembers a webhook delivery.
+     *
+     * @param deliveryId <code>X-GitHub-Delivery</code> header value
+     * @return <code>true</code> if the delivery was not seen before, <code>false</code> if it is a repeat
+     */
+    boolean register(@Nonnull String deliveryId);
+
+    /**
+     * Forgets a delivery, so it can be processed again, e.g. if its processing failed.
+     *
+     * @param deliveryId <code>X-GitHub-Delivery</code> header value
+     */
+    void release(@Nonnull String deliveryId);
+}
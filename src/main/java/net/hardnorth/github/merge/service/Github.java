@@ -1,6 +1,7 @@
 package net.hardnorth.github.merge.service;
 
 import net.hardnorth.github.merge.model.CommitDifference;
+import net.hardnorth.github.merge.model.FileInfo;
 import net.hardnorth.github.merge.model.github.repo.BranchProtection;
 import net.hardnorth.github.merge.model.github.repo.PullRequest;
 import org.apache.commons.lang3.tuple.Pair;
@@ -15,14 +16,39 @@ public interface Github {
     @Nonnull
     Pair<String, Date> authenticateInstallation(@Nullable String authHeader, long installationId);
 
+    @Nonnull
+    FileInfo getFileInfo(@Nullable String authHeader, @Nullable String user, @Nullable String repo,
+                         @Nullable String branch, @Nonnull String filePath);
+
     @Nonnull
     byte[] getFileContent(@Nullable String authHeader, @Nullable String user, @Nullable String repo,
-                          @Nullable String branch, @Nonnull String filePath);
+                          @Nullable String branch, @Nonnull FileInfo file);
+
+    @Nonnull
+    default byte[] getFileContent(@Nullable String authHeader, @Nullable String user, @Nullable String repo,
+                                  @Nullable String branch, @Nonnull String filePath) {
+        return getFileContent(authHeader, user, repo, branch, getFileInfo(authHeader, user, repo, branch, filePath));
+    }
 
     @Nonnull
     String getLatestCommit(@Nullable String authHeader, @Nullable String user, @Nullable String repo,
                            @Nullable String branch);
 
+    /**
+     * Compares two commits directly, without resolving branch heads. Fails if Github may have omitted some of the
+     * changed files, since it lists at most 300 files of a comparison.
+     *
+     * @param authHeader authorization header value
+     * @param user       repository owner
+     * @param repo       repository name
+     * @param base       base commit SHA or reference
+     * @param head       head commit SHA or reference
+     * @return changes in <code>head</code> relative to <code>base</code>
+     */
+    @Nonnull
+    CommitDifference compareCommits(@Nullable String authHeader, @Nullable String user, @Nullable String repo,
+                                    @Nullable String base, @Nullable String head);
+
     @Nonnull
     CommitDifference listChanges(@Nullable String authHeader, @Nullable String user, @Nullable String repo,
                                  @Nullable String source, @Nullable String dest);
@@ -34,12 +60,36 @@ public interface Github {
                           @Nullable String source, @Nullable String dest, @Nullable String title,
                           @Nullable String body);
 
+    /**
+     * Posts a pull request review.
+     *
+     * @param authHeader authorization header value
+     * @param owner      repository owner
+     * @param repo       repository name
+     * @param pullNumber pull request number
+     * @param commitId   SHA of the commit the review is about, <code>null</code> means the current pull request head
+     * @param event      review action, e.g. <code>APPROVE</code>
+     * @param body       review comment
+     */
     void createReview(@Nullable String authHeader, @Nullable String owner, @Nullable String repo,
-                      int pullNumber, @Nullable String event, @Nullable String body);
+                      int pullNumber, @Nullable String commitId, @Nullable String event, @Nullable String body);
 
+    /**
+     * Merges a pull request.
+     *
+     * @param authHeader    authorization header value
+     * @param owner         repository owner
+     * @param repo          repository name
+     * @param pullNumber    pull request number
+     * @param sha           SHA the pull request head must match, otherwise Github refuses to merge,
+     *                      <code>null</code> to merge any head
+     * @param commitTitle   merge commit title
+     * @param commitMessage merge commit message
+     * @param mergeMethod   merge method
+     */
     void mergePullRequest(@Nullable String authHeader, @Nullable String owner, @Nullable String repo,
-                          int pullNumber, @Nullable String commitTitle, @Nullable String commitMessage,
-                          @Nullable String mergeMethod);
+                          int pullNumber, @Nullable String sha, @Nullable String commitTitle,
+                          @Nullable String commitMessage, @Nullable String mergeMethod);
 
     BranchProtection getBranchProtection(@Nullable String authHeader, @Nullable String owner, @Nullable String repo,
                                          @Nullable String branch);
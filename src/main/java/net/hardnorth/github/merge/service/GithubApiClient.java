@@ -1,78 +1,88 @@
 package net.hardnorth.github.merge.service;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import net.hardnorth.github.merge.model.github.repo.*;
+import okhttp3.ResponseBody;
 import org.apache.http.HttpHeaders;
 import retrofit2.Call;
 import retrofit2.http.*;
 
+import java.util.List;
+
 public interface GithubApiClient {
 
     @POST("app/installations/{installation_id}/access_tokens")
     @Headers(HttpHeaders.ACCEPT + ": application/vnd.github.v3+json")
-    Call<JsonObject> authenticateInstallation(@Header("Authorization") String auth,
-                                              @Path("installation_id") long installationId);
+    Call<AccessToken> authenticateInstallation(@Header("Authorization") String auth,
+                                               @Path("installation_id") long installationId);
 
     @GET("repos/{owner}/{repo}/contents/{path}")
     @Headers(HttpHeaders.ACCEPT + ": application/vnd.github.v3+json")
-    Call<JsonElement> getContent(@Header("Authorization") String auth, @Path("owner") String owner,
-                                 @Path("repo") String repo, @Path("path") String path, @Query("ref") String ref);
+    Call<List<ContentEntry>> getContent(@Header("Authorization") String auth, @Path("owner") String owner,
+                                        @Path("repo") String repo, @Path("path") String path,
+                                        @Query("ref") String ref);
+
+    @Streaming
+    @GET("repos/{owner}/{repo}/contents/{path}")
+    @Headers(HttpHeaders.ACCEPT + ": application/vnd.github.v3.raw")
+    Call<ResponseBody> getRawContent(@Header("Authorization") String auth, @Path("owner") String owner,
+                                     @Path("repo") String repo, @Path("path") String path, @Query("ref") String ref);
 
     @GET("repos/{owner}/{repo}/branches/{branch}")
     @Headers(HttpHeaders.ACCEPT + ": application/vnd.github.v3+json")
-    Call<JsonObject> getBranch(@Header("Authorization") String auth, @Path("owner") String owner,
+    Call<BranchInfo> getBranch(@Header("Authorization") String auth, @Path("owner") String owner,
                                @Path("repo") String repo, @Path("branch") String branch);
 
     @GET("repos/{owner}/{repo}/branches/{branch}/protection")
     @Headers(HttpHeaders.ACCEPT + ": application/vnd.github.v3+json")
-    Call<JsonObject> getBranchProtection(@Header("Authorization") String auth, @Path("owner") String owner,
-                                         @Path("repo") String repo, @Path("branch") String branch);
+    Call<BranchProtection> getBranchProtection(@Header("Authorization") String auth, @Path("owner") String owner,
+                                               @Path("repo") String repo, @Path("branch") String branch);
 
     @GET("repos/{user}/{repo}/compare/{base}...{head}")
     @Headers(HttpHeaders.ACCEPT + ": application/vnd.github.v3+json")
-    Call<JsonObject> compareCommits(@Header("Authorization") String auth, @Path("user") String user,
-                                    @Path("repo") String repo, @Path("base") String base, @Path("head") String head);
+    Call<Comparison> compareCommits(@Header("Authorization") String auth, @Path("user") String user,
+                                    @Path("repo") String repo, @Path("base") String base, @Path("head") String head,
+                                    @Query("per_page") Integer perPage, @Query("page") Integer page);
 
     @POST("repos/{owner}/{repo}/merges")
     @Headers(HttpHeaders.ACCEPT + ": application/vnd.github.v3+json")
-    Call<JsonObject> mergeBranches(@Header("Authorization") String auth, @Path("owner") String owner,
-                                   @Path("repo") String repo, @Body JsonObject body);
+    Call<Void> mergeBranches(@Header("Authorization") String auth, @Path("owner") String owner,
+                             @Path("repo") String repo, @Body JsonObject body);
 
     // Pull requests
 
     @GET("repos/{owner}/{repo}/pulls")
     @Headers(HttpHeaders.ACCEPT + ": application/vnd.github.v3+json")
-    Call<JsonArray> getPullRequests(@Header("Authorization") String auth, @Path("owner") String owner,
-                                    @Path("repo") String repo, @Query("state") String state,
-                                    @Query("head") String head, @Query("base") String base, @Query("sort") String sort,
-                                    @Query("direction") String direction, @Query("per_page") Integer perPage,
-                                    @Query("page") Integer page);
+    Call<List<PullRequest>> getPullRequests(@Header("Authorization") String auth, @Path("owner") String owner,
+                                            @Path("repo") String repo, @Query("state") String state,
+                                            @Query("head") String head, @Query("base") String base,
+                                            @Query("sort") String sort, @Query("direction") String direction,
+                                            @Query("per_page") Integer perPage, @Query("page") Integer page);
 
     @POST("repos/{owner}/{repo}/pulls")
     @Headers(HttpHeaders.ACCEPT + ": application/vnd.github.v3+json")
-    Call<JsonObject> createPullRequest(@Header("Authorization") String auth, @Path("owner") String owner,
-                                       @Path("repo") String repo, @Body JsonObject body);
+    Call<PullRequest> createPullRequest(@Header("Authorization") String auth, @Path("owner") String owner,
+                                        @Path("repo") String repo, @Body JsonObject body);
 
     @GET("repos/{owner}/{repo}/pulls/{pull_number}")
     @Headers(HttpHeaders.ACCEPT + ": application/vnd.github.v3+json")
-    Call<JsonObject> getPullRequest(@Header("Authorization") String auth, @Path("owner") String owner,
-                                    @Path("repo") String repo, @Path("pull_number") int pullNumber);
+    Call<PullRequest> getPullRequest(@Header("Authorization") String auth, @Path("owner") String owner,
+                                     @Path("repo") String repo, @Path("pull_number") int pullNumber);
 
     @GET("repos/{owner}/{repo}/pulls/{pull_number}/merge")
     @Headers(HttpHeaders.ACCEPT + ": application/vnd.github.v3+json")
-    Call<JsonObject> checkIfPullRequestMerged(@Header("Authorization") String auth, @Path("owner") String owner,
-                                              @Path("repo") String repo, @Path("pull_number") int pullNumber);
+    Call<Void> checkIfPullRequestMerged(@Header("Authorization") String auth, @Path("owner") String owner,
+                                        @Path("repo") String repo, @Path("pull_number") int pullNumber);
 
     @POST("repos/{owner}/{repo}/pulls/{pull_number}/reviews")
     @Headers(HttpHeaders.ACCEPT + ": application/vnd.github.v3+json")
-    Call<JsonObject> createReview(@Header("Authorization") String auth, @Path("owner") String owner,
-                                  @Path("repo") String repo, @Path("pull_number") int pullNumber,
-                                  @Body JsonObject body);
+    Call<Void> createReview(@Header("Authorization") String auth, @Path("owner") String owner,
+                            @Path("repo") String repo, @Path("pull_number") int pullNumber,
+                            @Body JsonObject body);
 
     @PUT("repos/{owner}/{repo}/pulls/{pull_number}/merge")
     @Headers(HttpHeaders.ACCEPT + ": application/vnd.github.v3+json")
-    Call<JsonObject> mergePullRequest(@Header("Authorization") String auth, @Path("owner") String owner,
-                                      @Path("repo") String repo, @Path("pull_number") int pullNumber,
-                                      @Body JsonObject body);
+    Call<Void> mergePullRequest(@Header("Authorization") String auth, @Path("owner") String owner,
+                                @Path("repo") String repo, @Path("pull_number") int pullNumber,
+                                @Body JsonObject body);
 }
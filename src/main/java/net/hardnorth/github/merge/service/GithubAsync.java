@@ -0,0 +1,92 @@
+package net.hardnorth.github.merge.service;
+
+import net.hardnorth.github.merge.model.CommitDifference;
+import net.hardnorth.github.merge.model.FileInfo;
+import net.hardnorth.github.merge.model.github.repo.BranchProtection;
+import net.hardnorth.github.merge.model.github.repo.PullRequest;
+import org.apache.commons.lang3.tuple.Pair;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking variant of {@link Github}. Calls are enqueued to the HTTP client dispatcher and futures are completed on
+ * its threads with the same results and exceptions {@link Github} methods return and throw.
+ */
+public interface GithubAsync {
+
+    @Nonnull
+    CompletableFuture<Pair<String, Date>> authenticateInstallationAsync(@Nullable String authHeader,
+                                                                       long installationId);
+
+    @Nonnull
+    CompletableFuture<FileInfo> getFileInfoAsync(@Nullable String authHeader, @Nullable String user,
+                                                 @Nullable String repo, @Nullable String branch,
+                                                 @Nonnull String filePath);
+
+    @Nonnull
+    CompletableFuture<byte[]> getFileContentAsync(@Nullable String authHeader, @Nullable String user,
+                                                  @Nullable String repo, @Nullable String branch,
+                                                  @Nonnull FileInfo file);
+
+    @Nonnull
+    CompletableFuture<String> getLatestCommitAsync(@Nullable String authHeader, @Nullable String user,
+                                                   @Nullable String repo, @Nullable String branch);
+
+    /**
+     * Compares two commits directly, the same way {@link Github#compareCommits} does.
+     *
+     * @param authHeader authorization header value
+     * @param user       repository owner
+     * @param repo       repository name
+     * @param base       base commit SHA or reference
+     * @param head       head commit SHA or reference
+     * @return changes in <code>head</code> relative to <code>base</code>
+     */
+    @Nonnull
+    CompletableFuture<CommitDifference> compareCommitsAsync(@Nullable String authHeader, @Nullable String user,
+                                                            @Nullable String repo, @Nullable String base,
+                                                            @Nullable String head);
+
+    @Nonnull
+    CompletableFuture<CommitDifference> listChangesAsync(@Nullable String authHeader, @Nullable String user,
+                                                         @Nullable String repo, @Nullable String source,
+                                                         @Nullable String dest);
+
+    @Nonnull
+    CompletableFuture<Void> mergeAsync(@Nullable String authHeader, @Nullable String owner, @Nullable String repo,
+                                       @Nullable String source, @Nullable String dest, @Nullable String message);
+
+    @Nonnull
+    CompletableFuture<Integer> createPullRequestAsync(@Nullable String authHeader, @Nullable String owner,
+                                                      @Nullable String repo, @Nullable String source,
+                                                      @Nullable String dest, @Nullable String title,
+                                                      @Nullable String body);
+
+    @Nonnull
+    CompletableFuture<Void> createReviewAsync(@Nullable String authHeader, @Nullable String owner,
+                                              @Nullable String repo, int pullNumber, @Nullable String commitId,
+                                              @Nullable String event, @Nullable String body);
+
+    @Nonnull
+    CompletableFuture<Void> mergePullRequestAsync(@Nullable String authHeader, @Nullable String owner,
+                                                  @Nullable String repo, int pullNumber, @Nullable String sha,
+                                                  @Nullable String commitTitle, @Nullable String commitMessage,
+                                                  @Nullable String mergeMethod);
+
+    @Nonnull
+    CompletableFuture<BranchProtection> getBranchProtectionAsync(@Nullable String authHeader, @Nullable String owner,
+                                                                 @Nullable String repo, @Nullable String branch);
+
+    @Nonnull
+    CompletableFuture<List<PullRequest>> getOpenedPullRequestsAsync(@Nullable String authHeader,
+                                                                    @Nullable String owner, @Nullable String repo,
+                                                                    @Nullable String branch);
+
+    @Nonnull
+    CompletableFuture<PullRequest> getPullRequestAsync(@Nullable String authHeader, @Nullable String owner,
+                                                       @Nullable String repo, int pullNumber);
+}
@@ -5,12 +5,82 @@ import net.hardnorth.github.merge.model.github.hook.EventInstallation;
 import net.hardnorth.github.merge.model.github.hook.EventPullRequest;
 import net.hardnorth.github.merge.model.github.hook.EventPush;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
 public interface GithubWebhook {
     void processInstallation(EventInstallation installationRequest);
 
+    /**
+     * Processes an event of a known webhook delivery. An implementation which processes events after the method
+     * returned forgets the delivery in {@link DeliveryRegistry} if processing fails, so Github redelivery is not
+     * skipped. The default implementation ignores the delivery, since failures are thrown to the caller.
+     *
+     * @param delivery            <code>X-GitHub-Delivery</code> header value
+     * @param installationRequest installation event
+     */
+    default void processInstallation(@Nullable String delivery, EventInstallation installationRequest) {
+        processInstallation(installationRequest);
+    }
+
     void processPush(EventPush pushRequest);
 
+    /**
+     * @param delivery    <code>X-GitHub-Delivery</code> header value
+     * @param pushRequest push event
+     * @see #processInstallation(String, EventInstallation)
+     */
+    default void processPush(@Nullable String delivery, EventPush pushRequest) {
+        processPush(pushRequest);
+    }
+
     void processPull(EventPullRequest pullRequest);
 
+    /**
+     * @param delivery    <code>X-GitHub-Delivery</code> header value
+     * @param pullRequest pull request event
+     * @see #processInstallation(String, EventInstallation)
+     */
+    default void processPull(@Nullable String delivery, EventPullRequest pullRequest) {
+        processPull(pullRequest);
+    }
+
+    /**
+     * Non-blocking variant of {@link #processPull(EventPullRequest)}. The default implementation processes the event in
+     * the calling thread and returns a completed future.
+     *
+     * @param pullRequest pull request event
+     * @return a future which fails with the exception <code>processPull</code> would throw
+     */
+    @Nonnull
+    default CompletableFuture<Void> processPullAsync(EventPullRequest pullRequest) {
+        try {
+            processPull(pullRequest);
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Tells whether a pull request event will be processed, so ignored events are not bound at all.
+     *
+     * @param action event action
+     * @param label  name of the label the event is about, called only if the decision depends on it
+     * @return <code>false</code> if {@link #processPull(EventPullRequest)} would ignore the event
+     */
+    boolean acceptsPull(@Nullable String action, @Nonnull Supplier<String> label);
+
     void processCheckRun(EventCheckRun checkRunRequest);
+
+    /**
+     * @param delivery        <code>X-GitHub-Delivery</code> header value
+     * @param checkRunRequest check run event
+     * @see #processInstallation(String, EventInstallation)
+     */
+    default void processCheckRun(@Nullable String delivery, EventCheckRun checkRunRequest) {
+        processCheckRun(checkRunRequest);
+    }
 }
@@ -1,7 +1,58 @@
 package net.hardnorth.github.merge.service;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.CompletableFuture;
+
 public interface MergeValidate {
 
-    void validate(String authHeader, String user, String repo, String from, String to);
+    default void validate(String authHeader, String user, String repo, String from, String to) {
+        validate(authHeader, user, repo, from, to, null, null);
+    }
+
+    /**
+     * Validates changes between two branches. If the source commit SHA is known, e.g. from a pull request, it is
+     * compared directly with the target commit or, if the target SHA is not given, with the current target branch
+     * head. Otherwise branch heads are requested first.
+     *
+     * @param authHeader authorization header value
+     * @param user       repository owner
+     * @param repo       repository name
+     * @param from       source branch
+     * @param to         target branch
+     * @param fromSha    source branch head commit SHA or <code>null</code>
+     * @param toSha      target commit SHA or <code>null</code> to compare with the current target branch head
+     */
+    void validate(String authHeader, String user, String repo, String from, String to, @Nullable String fromSha,
+                  @Nullable String toSha);
+
+    @Nonnull
+    default CompletableFuture<Void> validateAsync(String authHeader, String user, String repo, String from,
+                                                  String to) {
+        return validateAsync(authHeader, user, repo, from, to, null, null);
+    }
 
+    /**
+     * Non-blocking variant of {@link #validate(String, String, String, String, String, String, String)}. The default
+     * implementation validates in the calling thread and returns a completed future.
+     *
+     * @param authHeader authorization header value
+     * @param user       repository owner
+     * @param repo       repository name
+     * @param from       source branch
+     * @param to         target branch
+     * @param fromSha    source branch head commit SHA or <code>null</code>
+     * @param toSha      target commit SHA or <code>null</code> to compare with the current target branch head
+     * @return a future which fails with the exception <code>validate</code> would throw
+     */
+    @Nonnull
+    default CompletableFuture<Void> validateAsync(String authHeader, String user, String repo, String from, String to,
+                                                  @Nullable String fromSha, @Nullable String toSha) {
+        try {
+            validate(authHeader, user, repo, from, to, fromSha, toSha);
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
 }
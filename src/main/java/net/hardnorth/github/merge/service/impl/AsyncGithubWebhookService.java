@@ -0,0 +1,189 @@
+package net.hardnorth.github.merge.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import net.hardnorth.github.merge.exception.ServiceUnavailableException;
+import net.hardnorth.github.merge.model.github.hook.EventCheckRun;
+import net.hardnorth.github.merge.model.github.hook.EventInstallation;
+import net.hardnorth.github.merge.model.github.hook.EventPullRequest;
+import net.hardnorth.github.merge.model.github.hook.EventPush;
+import net.hardnorth.github.merge.service.DeliveryRegistry;
+import net.hardnorth.github.merge.service.GithubWebhook;
+import net.hardnorth.github.merge.utils.VirtualThreads;
+import org.jboss.logging.Logger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Accepts webhook events into a bounded queue and processes them on a fixed worker pool, so a webhook call returns
+ * right after the event is queued. If the queue is full the event is rejected with
+ * {@link ServiceUnavailableException}, what makes the controller respond with <code>503 Service Unavailable</code>.
+ * In non-blocking mode a worker only starts pull request processing with
+ * {@link GithubWebhook#processPullAsync(EventPullRequest)} and is free for the next event while Github calls are in
+ * flight. A delivery whose processing fails in background is forgotten in {@link DeliveryRegistry}, so Github
+ * redelivery of the event is processed again.
+ */
+public class AsyncGithubWebhookService implements GithubWebhook {
+    private static final Logger LOGGER = Logger.getLogger(AsyncGithubWebhookService.class);
+
+    public static final String QUEUE_SIZE_METRIC = "webhook.queue.size";
+    public static final String QUEUE_WAIT_METRIC = "webhook.queue.wait";
+    public static final String QUEUE_REJECTED_METRIC = "webhook.queue.rejected";
+
+    public static final long RETRY_AFTER = 30;
+
+    private final GithubWebhook webhook;
+    private final ThreadPoolExecutor executor;
+    private final Timer waitTime;
+    private final Counter rejected;
+    private final boolean nonBlocking;
+    private final DeliveryRegistry deliveries;
+
+    @SuppressWarnings("CdiInjectionPointsInspection")
+    public AsyncGithubWebhookService(@Nonnull GithubWebhook webhookService, int workerCount, int queueSize,
+                                     @Nonnull MeterRegistry meterRegistry) {
+        this(webhookService, workerCount, queueSize, meterRegistry, false);
+    }
+
+    @SuppressWarnings("CdiInjectionPointsInspection")
+    public AsyncGithubWebhookService(@Nonnull GithubWebhook webhookService, int workerCount, int queueSize,
+                                     @Nonnull MeterRegistry meterRegistry, boolean nonBlockingPulls) {
+        this(webhookService, workerCount, queueSize, meterRegistry, nonBlockingPulls,
+                VirtualThreads.factory("webhook-worker-", false));
+    }
+
+    /**
+     * @param webhookService   webhook service to process events with
+     * @param workerCount      number of worker threads
+     * @param queueSize        number of events which may wait for a worker
+     * @param meterRegistry    registry of queue metrics
+     * @param nonBlockingPulls start pull request processing with {@link GithubWebhook#processPullAsync} instead of
+     *                         holding a worker until it ends
+     * @param threadFactory    creates worker threads, e.g. virtual ones
+     */
+    @SuppressWarnings("CdiInjectionPointsInspection")
+    public AsyncGithubWebhookService(@Nonnull GithubWebhook webhookService, int workerCount, int queueSize,
+                                     @Nonnull MeterRegistry meterRegistry, boolean nonBlockingPulls,
+                                     @Nonnull ThreadFactory threadFactory) {
+        this(webhookService, workerCount, queueSize, meterRegistry, nonBlockingPulls, threadFactory, null);
+    }
+
+    /**
+     * @param webhookService   webhook service to process events with
+     * @param workerCount      number of worker threads
+     * @param queueSize        number of events which may wait for a worker
+     * @param meterRegistry    registry of queue metrics
+     * @param nonBlockingPulls start pull request processing with {@link GithubWebhook#processPullAsync} instead of
+     *                         holding a worker until it ends
+     * @param threadFactory    creates worker threads, e.g. virtual ones
+     * @param deliveryRegistry registry to forget deliveries which failed in background, <code>null</code> if
+     *                         deliveries are not tracked
+     */
+    @SuppressWarnings("CdiInjectionPointsInspection")
+    public AsyncGithubWebhookService(@Nonnull GithubWebhook webhookService, int workerCount, int queueSize,
+                                     @Nonnull MeterRegistry meterRegistry, boolean nonBlockingPulls,
+                                     @Nonnull ThreadFactory threadFactory, @Nullable DeliveryRegistry deliveryRegistry) {
+        webhook = webhookService;
+        nonBlocking = nonBlockingPulls;
+        deliveries = deliveryRegistry;
+        BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(queueSize);
+        executor = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS, queue, threadFactory);
+        meterRegistry.gauge(QUEUE_SIZE_METRIC, queue, BlockingQueue::size);
+        waitTime = meterRegistry.timer(QUEUE_WAIT_METRIC);
+        rejected = meterRegistry.counter(QUEUE_REJECTED_METRIC);
+    }
+
+    private void onFailure(String event, @Nullable String delivery, Throwable error) {
+        LOGGER.errorf(error, "Unable to process '%s' webhook event", event);
+        if (delivery != null && deliveries != null) {
+            deliveries.release(delivery);
+        }
+    }
+
+    private void submit(String event, @Nullable String delivery, Runnable task) {
+        long queuedAt = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                waitTime.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    onFailure(event, delivery, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new ServiceUnavailableException("Webhook queue is full, unable to accept '" + event + "' event",
+                    RETRY_AFTER);
+        }
+    }
+
+    @Override
+    public void processInstallation(EventInstallation installationRequest) {
+        processInstallation(null, installationRequest);
+    }
+
+    @Override
+    public void processInstallation(@Nullable String delivery, EventInstallation installationRequest) {
+        submit("installation", delivery, () -> webhook.processInstallation(installationRequest));
+    }
+
+    @Override
+    public void processPush(EventPush pushRequest) {
+        processPush(null, pushRequest);
+    }
+
+    @Override
+    public void processPush(@Nullable String delivery, EventPush pushRequest) {
+        submit("push", delivery, () -> webhook.processPush(pushRequest));
+    }
+
+    @Override
+    public void processPull(EventPullRequest pullRequest) {
+        processPull(null, pullRequest);
+    }
+
+    @Override
+    public void processPull(@Nullable String delivery, EventPullRequest pullRequest) {
+        if (!nonBlocking) {
+            submit("pull_request", delivery, () -> webhook.processPull(pullRequest));
+            return;
+        }
+        submit("pull_request", delivery, () -> webhook.processPullAsync(pullRequest).whenComplete((r, e) -> {
+            if (e != null) {
+                onFailure("pull_request", delivery, e);
+            }
+        }));
+    }
+
+    @Override
+    public boolean acceptsPull(@Nullable String action, @Nonnull Supplier<String> label) {
+        return webhook.acceptsPull(action, label);
+    }
+
+    @Override
+    public void processCheckRun(EventCheckRun checkRunRequest) {
+        processCheckRun(null, checkRunRequest);
+    }
+
+    @Override
+    public void processCheckRun(@Nullable String delivery, EventCheckRun checkRunRequest) {
+        submit("check_run", delivery, () -> webhook.processCheckRun(checkRunRequest));
+    }
+
+    /**
+     * @return number of events waiting for a worker
+     */
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+}
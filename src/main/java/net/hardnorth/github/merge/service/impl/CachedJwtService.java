@@ -0,0 +1,102 @@
+package net.hardnorth.github.merge.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.hardnorth.github.merge.service.JWT;
+import org.apache.commons.lang3.tuple.Pair;
+import org.jboss.logging.Logger;
+
+import javax.annotation.Nonnull;
+import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps a signed application token and serves it until it is about to expire. The token is re-signed once in
+ * background <code>refreshMargin</code> before its expiration, so reads never wait for RSA signing unless the cache is
+ * cold.
+ */
+public class CachedJwtService implements JWT {
+    private static final Logger LOGGER = Logger.getLogger(CachedJwtService.class);
+
+    public static final String CACHE_METRIC = "jwt.cache.requests";
+
+    // do not hand out tokens which may expire before Github receives them
+    private static final long EXPIRATION_SAFETY_MARGIN = TimeUnit.SECONDS.toMillis(30);
+
+    private final JwtService signer;
+    private final long refreshMargin;
+    private final ExecutorService executor;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private final Counter hits;
+    private final Counter misses;
+
+    private volatile Pair<String, Date> token;
+
+    @SuppressWarnings("CdiInjectionPointsInspection")
+    public CachedJwtService(@Nonnull JwtService jwtSigner, long refreshMarginTime, @Nonnull TimeUnit refreshMarginUnit,
+                            @Nonnull MeterRegistry meterRegistry) {
+        signer = jwtSigner;
+        refreshMargin = refreshMarginUnit.toMillis(refreshMarginTime);
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "jwt-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+        hits = meterRegistry.counter(CACHE_METRIC, "result", "hit");
+        misses = meterRegistry.counter(CACHE_METRIC, "result", "miss");
+    }
+
+    private void refresh() {
+        try {
+            token = signer.sign();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Unable to refresh application token", e);
+        } finally {
+            refreshing.set(false);
+        }
+    }
+
+    private void scheduleRefresh() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(this::refresh);
+        } catch (RejectedExecutionException e) {
+            refreshing.set(false);
+        }
+    }
+
+    @Nonnull
+    @Override
+    public String get() {
+        Pair<String, Date> current = token;
+        long now = System.currentTimeMillis();
+        if (current != null) {
+            long expiresAt = current.getValue().getTime();
+            if (expiresAt - EXPIRATION_SAFETY_MARGIN > now) {
+                hits.increment();
+                if (expiresAt - refreshMargin <= now) {
+                    scheduleRefresh();
+                }
+                return current.getKey();
+            }
+        }
+        misses.increment();
+        Pair<String, Date> signed = signer.sign();
+        token = signed;
+        return signed.getKey();
+    }
+
+    public double getHits() {
+        return hits.count();
+    }
+
+    public double getMisses() {
+        return misses.count();
+    }
+}
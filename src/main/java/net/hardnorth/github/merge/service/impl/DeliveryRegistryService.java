@@ -0,0 +1,120 @@
+package net.hardnorth.github.merge.service.impl;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.datastore.*;
+import net.hardnorth.github.merge.exception.ServiceUnavailableException;
+import net.hardnorth.github.merge.service.DeliveryRegistry;
+import org.jboss.logging.Logger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers webhook delivery IDs for a limited time. Every instance keeps recent IDs in memory, if a Datastore is
+ * given the IDs are also stored there in a transaction, so repeats are caught across instances. Datastore errors are
+ * logged and do not block deliveries.
+ */
+public class DeliveryRegistryService implements DeliveryRegistry {
+    private static final Logger LOGGER = Logger.getLogger(DeliveryRegistryService.class);
+
+    private static final String DELIVERIES_KIND = "deliveries";
+    private static final String EXPIRE_DATE = "expire_date";
+
+    private final long ttl;
+    private final int maxSize;
+    private final Datastore datastore;
+    private final KeyFactory deliveryKeyFactory;
+    // insertion order is expiration order, since all deliveries have the same TTL
+    private final LinkedHashMap<String, Long> deliveries = new LinkedHashMap<>();
+
+    /**
+     * @param ttlTime          how long a delivery ID is remembered
+     * @param ttlUnit          time unit of <code>ttlTime</code>
+     * @param maxDeliveries    maximum number of delivery IDs kept in memory
+     * @param datastoreService a datastore to share delivery IDs between instances or <code>null</code>
+     */
+    @SuppressWarnings("CdiInjectionPointsInspection")
+    public DeliveryRegistryService(long ttlTime, @Nonnull TimeUnit ttlUnit, int maxDeliveries,
+                                   @Nullable Datastore datastoreService) {
+        ttl = ttlUnit.toMillis(ttlTime);
+        maxSize = maxDeliveries;
+        datastore = datastoreService;
+        deliveryKeyFactory = datastore == null ? null : datastore.newKeyFactory().setKind(DELIVERIES_KIND);
+    }
+
+    private synchronized boolean registerLocal(String deliveryId, long now) {
+        Iterator<Map.Entry<String, Long>> iterator = deliveries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            if (entry.getValue() > now && deliveries.size() < maxSize) {
+                break;
+            }
+            iterator.remove();
+        }
+        Long expiresAt = deliveries.get(deliveryId);
+        if (expiresAt != null && expiresAt > now) {
+            return false;
+        }
+        deliveries.put(deliveryId, now + ttl);
+        return true;
+    }
+
+    private boolean registerShared(String deliveryId, long now) {
+        Key key = deliveryKeyFactory.newKey(deliveryId);
+        Transaction transaction;
+        try {
+            transaction = datastore.newTransaction();
+        } catch (DatastoreException | ServiceUnavailableException e) {
+            LOGGER.warnf(e, "Unable to register delivery '%s' in Datastore", deliveryId);
+            return true;
+        }
+        try {
+            Entity existing = transaction.get(key);
+            if (existing != null && existing.getTimestamp(EXPIRE_DATE).toDate().getTime() > now) {
+                return false;
+            }
+            transaction.put(Entity.newBuilder(key).set(EXPIRE_DATE, Timestamp.of(new Date(now + ttl))).build());
+            transaction.commit();
+        } catch (DatastoreException | ServiceUnavailableException e) {
+            LOGGER.warnf(e, "Unable to register delivery '%s' in Datastore", deliveryId);
+        } finally {
+            if (transaction.isActive()) {
+                try {
+                    transaction.rollback();
+                } catch (DatastoreException | ServiceUnavailableException e) {
+                    LOGGER.warnf(e, "Unable to roll back delivery '%s' registration in Datastore", deliveryId);
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean register(@Nonnull String deliveryId) {
+        long now = System.currentTimeMillis();
+        return registerLocal(deliveryId, now) && (datastore == null || registerShared(deliveryId, now));
+    }
+
+    @Override
+    public void release(@Nonnull String deliveryId) {
+        synchronized (this) {
+            deliveries.remove(deliveryId);
+        }
+        if (datastore != null) {
+            try {
+                datastore.delete(deliveryKeyFactory.newKey(deliveryId));
+            } catch (DatastoreException | ServiceUnavailableException e) {
+                LOGGER.warnf(e, "Unable to release delivery '%s' in Datastore", deliveryId);
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return deliveries.size();
+    }
+}
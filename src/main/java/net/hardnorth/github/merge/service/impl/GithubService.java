@@ -1,20 +1,22 @@
 package net.hardnorth.github.merge.service.impl;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonPrimitive;
-import com.google.gson.reflect.TypeToken;
 import net.hardnorth.github.merge.exception.ConnectionException;
 import net.hardnorth.github.merge.exception.HttpException;
+import net.hardnorth.github.merge.exception.RestServiceException;
 import net.hardnorth.github.merge.model.Charset;
 import net.hardnorth.github.merge.model.CommitDifference;
 import net.hardnorth.github.merge.model.FileChange;
-import net.hardnorth.github.merge.model.github.repo.BranchProtection;
-import net.hardnorth.github.merge.model.github.repo.PullRequest;
+import net.hardnorth.github.merge.model.FileInfo;
+import net.hardnorth.github.merge.model.github.repo.*;
 import net.hardnorth.github.merge.service.Github;
 import net.hardnorth.github.merge.service.GithubApiClient;
-import net.hardnorth.github.merge.utils.WebServiceCommon;
+import net.hardnorth.github.merge.service.GithubAsync;
+import net.hardnorth.github.merge.utils.IoUtils;
+import okhttp3.ResponseBody;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.http.HttpStatus;
 import org.jboss.logging.Logger;
@@ -22,45 +24,39 @@ import retrofit2.Response;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.util.Base64;
 import java.util.Date;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import static java.util.Optional.ofNullable;
 import static net.hardnorth.github.merge.utils.WebClientCommon.executeServiceCall;
+import static net.hardnorth.github.merge.utils.WebClientCommon.executeServiceCallAsync;
 
-public class GithubService implements Github {
+public class GithubService implements Github, GithubAsync {
     private static final Logger LOGGER = Logger.getLogger(GithubService.class);
 
     public static final String DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ssX";
     private static final String DIRECTORY_DELIMITER = "/";
-    private static final String TOKEN = "token";
-    private static final String EXPIRES_AT = "expires_at";
-    private static final String TYPE_FIELD = "type";
-    private static final String NAME_FIELD = "name";
-    private static final String CONTENT_FIELD = "content";
-    private static final String SIZE_FIELD = "size";
-    private static final String COMMIT_FIELD = "commit";
-    private static final String COMMIT_HASH_FIELD = "sha";
-    private static final String AHEAD_BY_FIELD = "ahead_by";
-    private static final String BEHIND_BY_FIELD = "behind_by";
-    private static final String FILES_FIELD = "files";
-    private static final String FILENAME_FIELD = "filename";
-    private static final String STATUS_FIELD = "status";
     private static final String BASE_FIELD = "base";
     private static final String HEAD_FIELD = "head";
     private static final String TITLE_FIELD = "title";
     private static final String BODY_FIELD = "body";
     private static final String EVENT_FIELD = "event";
+    private static final String COMMIT_ID_FIELD = "commit_id";
+    private static final String SHA_FIELD = "sha";
     private static final String COMMIT_TITLE_FIELD = "commit_title";
     private static final String COMMIT_MESSAGE_FIELD = "commit_message";
     private static final String MERGE_METHOD_FIELD = "merge_method";
-    private static final String NUMBER_FIELD = "number";
     private static final String CONTEXTS_FIELD = "contexts";
+    private static final int COMPARE_PAGE_SIZE = 100;
+    // Github lists at most this number of changed files for a comparison, the rest are silently omitted
+    private static final int COMPARE_FILE_LIMIT = 300;
+    private static final int READ_BUFFER = 8192;
 
 
     public static final RuntimeException INVALID_API_RESPONSE = new ConnectionException("Invalid response from Github API");
@@ -88,126 +84,261 @@ public class GithubService implements Github {
     private static final RuntimeException UNABLE_TO_COMPARE_COMMITS_INVALID_FILES_FORMAT
             = new HttpException("Unable to compare commits: invalid files format", HttpStatus.SC_FAILED_DEPENDENCY);
 
+    private static final RuntimeException UNABLE_TO_COMPARE_COMMITS_FILE_LIMIT
+            = new HttpException("Unable to compare commits: too many changed files, Github lists only " + COMPARE_FILE_LIMIT, HttpStatus.SC_REQUEST_TOO_LONG);
+
     private final GithubApiClient apiClient;
     private final long sizeLimit;
     private final java.nio.charset.Charset charset;
+    private final boolean rawFile;
 
     @SuppressWarnings("CdiInjectionPointsInspection")
     public GithubService(GithubApiClient githubApiClient, long fileSizeLimit, Charset configuredCharset) {
+        this(githubApiClient, fileSizeLimit, configuredCharset, false);
+    }
+
+    /**
+     * @param githubApiClient   Github API client
+     * @param fileSizeLimit     merge configuration file size limit in bytes
+     * @param configuredCharset charset to parse responses with
+     * @param rawFileLookup     download a file with a single raw content request in {@link #getFileInfo}, instead of
+     *                          listing its directory and downloading the content with a separate request. The file
+     *                          SHA is calculated from the content, so the request is made on every lookup and saves
+     *                          the transfer only if the HTTP client revalidates cached responses
+     */
+    @SuppressWarnings("CdiInjectionPointsInspection")
+    public GithubService(GithubApiClient githubApiClient, long fileSizeLimit, Charset configuredCharset,
+                         boolean rawFileLookup) {
         apiClient = githubApiClient;
         sizeLimit = fileSizeLimit;
         charset = configuredCharset.get();
+        rawFile = rawFileLookup;
     }
 
     @Nonnull
     @Override
     public Pair<String, Date> authenticateInstallation(@Nullable String authHeader, long installationId) {
-        Response<JsonObject> response =
-                executeServiceCall(apiClient.authenticateInstallation(authHeader, installationId), charset);
-        JsonObject tokenObject = response.body();
-        if (tokenObject == null) {
+        return toToken(executeServiceCall(apiClient.authenticateInstallation(authHeader, installationId), charset));
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Pair<String, Date>> authenticateInstallationAsync(@Nullable String authHeader,
+                                                                              long installationId) {
+        return executeServiceCallAsync(apiClient.authenticateInstallation(authHeader, installationId), charset)
+                .thenApply(GithubService::toToken);
+    }
+
+    @Nonnull
+    private static Pair<String, Date> toToken(@Nonnull Response<AccessToken> response) {
+        AccessToken token = response.body();
+        if (token == null) {
             LOGGER.warnf("Invalid installation authentication response: no body");
             throw INVALID_API_RESPONSE;
         }
-        if (!tokenObject.has(TOKEN) || !tokenObject.has(EXPIRES_AT)) {
+        if (token.getToken() == null || token.getExpiresAt() == null) {
             LOGGER.warnf("Invalid installation authentication response: has token - %b; has expiration - %b",
-                    tokenObject.has(TOKEN), tokenObject.has(EXPIRES_AT));
+                    token.getToken() != null, token.getExpiresAt() != null);
             throw INVALID_API_RESPONSE;
         }
         SimpleDateFormat sdf = new SimpleDateFormat(DATE_FORMAT);
         try {
-            return Pair.of(tokenObject.get(TOKEN).getAsString(), sdf.parse(tokenObject.get(EXPIRES_AT).getAsString()));
+            return Pair.of(token.getToken(), sdf.parse(token.getExpiresAt()));
         } catch (ParseException e) {
             throw UNABLE_TO_PARSE_EXPIRE_DATE;
         }
     }
 
     @Nonnull
-    private JsonObject getFileInfo(String authHeader, String user, String repo, String branch, String filePath) {
-        String directoryPath;
-        String fileName;
+    private static Pair<String, String> splitPath(@Nonnull String filePath) {
         if (filePath.contains(DIRECTORY_DELIMITER)) {
             int delimiterIndex = filePath.lastIndexOf(DIRECTORY_DELIMITER);
-            directoryPath = filePath.substring(0, delimiterIndex);
-            fileName = filePath.substring(delimiterIndex + 1);
-        } else {
-            directoryPath = "";
-            fileName = filePath;
+            return Pair.of(filePath.substring(0, delimiterIndex), filePath.substring(delimiterIndex + 1));
         }
+        return Pair.of("", filePath);
+    }
 
+    @Nonnull
+    private ContentEntry getDirectoryEntry(String authHeader, String user, String repo, String branch,
+                                           String filePath) {
+        Pair<String, String> path = splitPath(filePath);
+        return findEntry(executeServiceCall(apiClient.getContent(authHeader, user, repo, path.getKey(), branch),
+                charset).body(), path.getValue());
+    }
 
-        Response<JsonElement> mergeFileDirectoryInfoRs =
-                executeServiceCall(apiClient.getContent(authHeader, user, repo, directoryPath, branch), charset);
-        JsonElement mergeFileDirectoryInfo = mergeFileDirectoryInfoRs.body();
-
-        if (mergeFileDirectoryInfo == null || !mergeFileDirectoryInfo.isJsonArray()) {
+    @Nonnull
+    private static ContentEntry findEntry(@Nullable List<ContentEntry> directory, @Nonnull String fileName) {
+        if (directory == null) {
             throw UNABLE_TO_GET_CONFIGURATION_EXCEPTION_INVALID_RESPONSE;
         }
-
-        JsonArray directory = mergeFileDirectoryInfo.getAsJsonArray();
-        for (JsonElement e : directory) {
-            if (!e.isJsonObject()) {
+        for (ContentEntry entry : directory) {
+            if (entry == null || entry.getType() == null) {
                 throw UNABLE_TO_GET_CONFIGURATION_EXCEPTION_INVALID_RESPONSE;
             }
-            JsonObject element = e.getAsJsonObject();
-            if (!element.has(TYPE_FIELD) || !element.getAsJsonPrimitive(TYPE_FIELD).isString()) {
-                throw UNABLE_TO_GET_CONFIGURATION_EXCEPTION_INVALID_RESPONSE;
-            }
-            if (!"file".equals(element.getAsJsonPrimitive(TYPE_FIELD).getAsString())) {
+            if (!"file".equals(entry.getType())) {
                 continue;
             }
-            if (!element.has(NAME_FIELD) || !element.getAsJsonPrimitive(NAME_FIELD).isString()) {
+            if (entry.getName() == null) {
                 throw UNABLE_TO_GET_CONFIGURATION_EXCEPTION_INVALID_RESPONSE;
             }
-            if (fileName.equals(element.getAsJsonPrimitive(NAME_FIELD).getAsString())) {
-                return element;
+            if (fileName.equals(entry.getName())) {
+                return entry;
             }
         }
         throw UNABLE_TO_GET_CONFIGURATION_EXCEPTION_NO_FILE;
     }
 
+    // the same SHA-1 Git calculates for a blob object, so raw files share validation cache entries with listed ones
     @Nonnull
-    @Override
-    public byte[] getFileContent(@Nullable String authHeader, @Nullable String user, @Nullable String repo,
+    private static String blobSha(@Nonnull byte[] content) {
+        MessageDigest digest = DigestUtils.getSha1Digest();
+        digest.update(("blob " + content.length + "\0").getBytes(StandardCharsets.US_ASCII));
+        return Hex.encodeHexString(digest.digest(content));
+    }
+
+    // streams the file and stops reading as soon as it exceeds the size limit, the connection is closed then
+    @Nonnull
+    private byte[] getRawContent(@Nullable String authHeader, @Nullable String user, @Nullable String repo,
                                  @Nullable String branch, @Nonnull String filePath) {
-        JsonObject fileInfo = getFileInfo(authHeader, user, repo, branch, filePath);
-        if (!fileInfo.has(SIZE_FIELD) || !fileInfo.getAsJsonPrimitive(SIZE_FIELD).isNumber()) {
-            throw UNABLE_TO_GET_CONFIGURATION_RESPONSE_IS_NOT_JSON;
+        Response<ResponseBody> response;
+        try {
+            response = executeServiceCall(apiClient.getRawContent(authHeader, user, repo, filePath, branch), charset);
+        } catch (RestServiceException e) {
+            throw noFileIfNotFound(e);
         }
-        long size = fileInfo.getAsJsonPrimitive(SIZE_FIELD).getAsLong();
+        return readRawContent(response);
+    }
 
-        if (size > sizeLimit) {
-            throw UNABLE_TO_GET_CONFIGURATION_FILE_TOO_BIG;
+    @Nonnull
+    private static RuntimeException noFileIfNotFound(@Nonnull RuntimeException e) {
+        if (e instanceof RestServiceException && ((RestServiceException) e).getCode() == HttpStatus.SC_NOT_FOUND) {
+            return UNABLE_TO_GET_CONFIGURATION_EXCEPTION_NO_FILE;
         }
+        return e;
+    }
 
-        JsonElement fileElement = executeServiceCall(apiClient.getContent(authHeader, user, repo, filePath, branch), charset).body();
-        if (fileElement == null || !fileElement.isJsonObject()) {
-            throw UNABLE_TO_GET_CONFIGURATION_RESPONSE_IS_NOT_JSON;
+    @Nonnull
+    private CompletableFuture<byte[]> getRawContentAsync(@Nullable String authHeader, @Nullable String user,
+                                                         @Nullable String repo, @Nullable String branch,
+                                                         @Nonnull String filePath) {
+        CompletableFuture<byte[]> result = new CompletableFuture<>();
+        executeServiceCallAsync(apiClient.getRawContent(authHeader, user, repo, filePath, branch), charset)
+                .whenComplete((response, error) -> {
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                        result.completeExceptionally(cause instanceof RuntimeException ?
+                                noFileIfNotFound((RuntimeException) cause) : cause);
+                        return;
+                    }
+                    try {
+                        result.complete(readRawContent(response));
+                    } catch (RuntimeException e) {
+                        result.completeExceptionally(e);
+                    }
+                });
+        return result;
+    }
+
+    @Nonnull
+    private byte[] readRawContent(@Nonnull Response<ResponseBody> response) {
+        try (ResponseBody body = response.body()) {
+            if (body == null) {
+                throw UNABLE_TO_GET_CONFIGURATION_EXCEPTION_INVALID_RESPONSE;
+            }
+            if (body.contentLength() > sizeLimit) {
+                throw UNABLE_TO_GET_CONFIGURATION_FILE_TOO_BIG;
+            }
+            byte[] content = IoUtils.readInputStreamToBytes(body.byteStream(), READ_BUFFER, sizeLimit);
+            if (content == null) {
+                throw UNABLE_TO_GET_CONFIGURATION_FILE_TOO_BIG;
+            }
+            return content;
         }
+    }
 
-        JsonObject file = fileElement.getAsJsonObject();
-        if (!file.has(CONTENT_FIELD) || !file.get(CONTENT_FIELD).isJsonPrimitive() || !file.getAsJsonPrimitive(CONTENT_FIELD).isString()) {
+    @Nonnull
+    @Override
+    public FileInfo getFileInfo(@Nullable String authHeader, @Nullable String user, @Nullable String repo,
+                                @Nullable String branch, @Nonnull String filePath) {
+        if (rawFile) {
+            byte[] content = getRawContent(authHeader, user, repo, branch, filePath);
+            return new FileInfo(filePath, blobSha(content), content.length, content);
+        }
+        ContentEntry fileInfo = getDirectoryEntry(authHeader, user, repo, branch, filePath);
+        return toFileInfo(filePath, fileInfo);
+    }
+
+    @Nonnull
+    private static FileInfo toFileInfo(@Nonnull String filePath, @Nonnull ContentEntry fileInfo) {
+        if (fileInfo.getSize() == null) {
             throw UNABLE_TO_GET_CONFIGURATION_RESPONSE_IS_NOT_JSON;
         }
+        return new FileInfo(filePath, fileInfo.getSha(), fileInfo.getSize());
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<FileInfo> getFileInfoAsync(@Nullable String authHeader, @Nullable String user,
+                                                        @Nullable String repo, @Nullable String branch,
+                                                        @Nonnull String filePath) {
+        if (rawFile) {
+            return getRawContentAsync(authHeader, user, repo, branch, filePath)
+                    .thenApply(content -> new FileInfo(filePath, blobSha(content), content.length, content));
+        }
+        Pair<String, String> path = splitPath(filePath);
+        return executeServiceCallAsync(apiClient.getContent(authHeader, user, repo, path.getKey(), branch), charset)
+                .thenApply(response -> toFileInfo(filePath, findEntry(response.body(), path.getValue())));
+    }
 
-        return Base64.getDecoder()
-                .decode(file.getAsJsonPrimitive(CONTENT_FIELD).getAsString().replace("\n", "").replace("\r", ""));
+    @Nonnull
+    @Override
+    public byte[] getFileContent(@Nullable String authHeader, @Nullable String user, @Nullable String repo,
+                                 @Nullable String branch, @Nonnull FileInfo fileInfo) {
+        if (fileInfo.getSize() > sizeLimit) {
+            throw UNABLE_TO_GET_CONFIGURATION_FILE_TOO_BIG;
+        }
+        if (fileInfo.getContent() != null) {
+            return fileInfo.getContent();
+        }
+        return getRawContent(authHeader, user, repo, branch, fileInfo.getPath());
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<byte[]> getFileContentAsync(@Nullable String authHeader, @Nullable String user,
+                                                         @Nullable String repo, @Nullable String branch,
+                                                         @Nonnull FileInfo fileInfo) {
+        if (fileInfo.getSize() > sizeLimit) {
+            return CompletableFuture.failedFuture(UNABLE_TO_GET_CONFIGURATION_FILE_TOO_BIG);
+        }
+        if (fileInfo.getContent() != null) {
+            return CompletableFuture.completedFuture(fileInfo.getContent());
+        }
+        return getRawContentAsync(authHeader, user, repo, branch, fileInfo.getPath());
     }
 
     @Nonnull
     @Override
     public String getLatestCommit(@Nullable String authHeader, @Nullable String user, @Nullable String repo,
                                   @Nullable String branch) {
-        JsonObject branchInfo = executeServiceCall(apiClient.getBranch(authHeader, user, repo, branch), charset).body();
-        if (branchInfo == null || !branchInfo.has(COMMIT_FIELD) || !branchInfo.get(COMMIT_FIELD).isJsonObject()) {
-            throw UNABLE_TO_GET_BRANCH_RESPONSE_IS_NOT_JSON;
-        }
-        JsonObject commitInfo = branchInfo.getAsJsonObject(COMMIT_FIELD);
-        if (commitInfo == null || !commitInfo.has(COMMIT_HASH_FIELD) || !commitInfo.get(COMMIT_HASH_FIELD).isJsonPrimitive()
-                || !commitInfo.getAsJsonPrimitive(COMMIT_HASH_FIELD).isString()) {
+        return toCommitSha(executeServiceCall(apiClient.getBranch(authHeader, user, repo, branch), charset));
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<String> getLatestCommitAsync(@Nullable String authHeader, @Nullable String user,
+                                                          @Nullable String repo, @Nullable String branch) {
+        return executeServiceCallAsync(apiClient.getBranch(authHeader, user, repo, branch), charset)
+                .thenApply(GithubService::toCommitSha);
+    }
+
+    @Nonnull
+    private static String toCommitSha(@Nonnull Response<BranchInfo> response) {
+        BranchInfo branchInfo = response.body();
+        if (branchInfo == null || branchInfo.getCommitSha() == null) {
             throw UNABLE_TO_GET_BRANCH_RESPONSE_IS_NOT_JSON;
         }
-        return commitInfo.getAsJsonPrimitive(COMMIT_HASH_FIELD).getAsString();
+        return branchInfo.getCommitSha();
     }
 
     @Nonnull
@@ -216,111 +347,217 @@ public class GithubService implements Github {
                                         @Nullable String source, @Nullable String dest) {
         String sourceCommit = getLatestCommit(authHeader, user, repo, source);
         String destCommit = getLatestCommit(authHeader, user, repo, dest);
+        return compareCommits(authHeader, user, repo, destCommit, sourceCommit);
+    }
 
-        JsonObject diff = executeServiceCall(apiClient.compareCommits(authHeader, user, repo, destCommit, sourceCommit), charset).body();
-        if (diff == null || !diff.has(AHEAD_BY_FIELD) || !diff.get(AHEAD_BY_FIELD).isJsonPrimitive() || !diff.getAsJsonPrimitive(AHEAD_BY_FIELD).isNumber()
-                || !diff.has(BEHIND_BY_FIELD) || !diff.get(BEHIND_BY_FIELD).isJsonPrimitive() || !diff.getAsJsonPrimitive(BEHIND_BY_FIELD).isNumber()
-                || !diff.has(FILES_FIELD) || !diff.get(FILES_FIELD).isJsonArray()) {
-            throw UNABLE_TO_COMPARE_COMMITS_RESPONSE_IS_NOT_JSON;
-        }
+    @Nonnull
+    @Override
+    public CompletableFuture<CommitDifference> listChangesAsync(@Nullable String authHeader, @Nullable String user,
+                                                                @Nullable String repo, @Nullable String source,
+                                                                @Nullable String dest) {
+        return getLatestCommitAsync(authHeader, user, repo, source)
+                .thenCombine(getLatestCommitAsync(authHeader, user, repo, dest), Pair::of)
+                .thenCompose(commits -> compareCommitsAsync(authHeader, user, repo, commits.getValue(),
+                        commits.getKey()));
+    }
 
-        JsonArray commits = diff.getAsJsonArray(FILES_FIELD);
-        List<FileChange> fileChanges = StreamSupport.stream(commits.spliterator(), false).map(f -> {
-            if (!f.isJsonObject()) {
-                throw UNABLE_TO_COMPARE_COMMITS_INVALID_FILES_FORMAT;
-            }
-            JsonObject fo = f.getAsJsonObject();
-            if (!fo.has(STATUS_FIELD) || !fo.has(FILENAME_FIELD) || !fo.get(STATUS_FIELD).isJsonPrimitive()
-                    || !fo.get(FILENAME_FIELD).isJsonPrimitive() || !fo.getAsJsonPrimitive(STATUS_FIELD).isString()
-                    || !fo.getAsJsonPrimitive(FILENAME_FIELD).isString()) {
-                throw UNABLE_TO_COMPARE_COMMITS_INVALID_FILES_FORMAT;
-            }
-            FileChange.Type type = FileChange.Type.getByStatus(fo.getAsJsonPrimitive(STATUS_FIELD).getAsString());
-            if (type == null) {
-                throw UNABLE_TO_COMPARE_COMMITS_INVALID_FILES_FORMAT;
-            }
-            return new FileChange(type, fo.getAsJsonPrimitive(FILENAME_FIELD).getAsString());
-        }).collect(Collectors.toList());
+    // Github pages commits of a comparison, not files: all changed files are listed on the first page only
+    @Nonnull
+    @Override
+    public CommitDifference compareCommits(@Nullable String authHeader, @Nullable String user, @Nullable String repo,
+                                           @Nullable String base, @Nullable String head) {
+        return toDifference(executeServiceCall(apiClient.compareCommits(authHeader, user, repo, base, head,
+                COMPARE_PAGE_SIZE, null), charset));
+    }
 
-        return new CommitDifference(diff.getAsJsonPrimitive(AHEAD_BY_FIELD).getAsInt(),
-                diff.getAsJsonPrimitive(BEHIND_BY_FIELD).getAsInt(),
-                fileChanges);
+    @Nonnull
+    @Override
+    public CompletableFuture<CommitDifference> compareCommitsAsync(@Nullable String authHeader, @Nullable String user,
+                                                                   @Nullable String repo, @Nullable String base,
+                                                                   @Nullable String head) {
+        return executeServiceCallAsync(apiClient.compareCommits(authHeader, user, repo, base, head, COMPARE_PAGE_SIZE,
+                null), charset).thenApply(GithubService::toDifference);
+    }
+
+    @Nonnull
+    private static CommitDifference toDifference(@Nonnull Response<Comparison> response) {
+        Comparison comparison = response.body();
+        if (comparison == null || comparison.getAheadBy() == null || comparison.getBehindBy() == null
+                || comparison.getFiles() == null) {
+            throw UNABLE_TO_COMPARE_COMMITS_RESPONSE_IS_NOT_JSON;
+        }
+        // the list may be truncated, so changes over the limit can not be validated
+        if (comparison.getFiles().size() >= COMPARE_FILE_LIMIT) {
+            throw UNABLE_TO_COMPARE_COMMITS_FILE_LIMIT;
+        }
+        return new CommitDifference(comparison.getAheadBy(), comparison.getBehindBy(), comparison.getFiles());
     }
 
     @Override
     public void merge(@Nullable String authHeader, @Nullable String owner, @Nullable String repo,
                       @Nullable String source, @Nullable String dest, @Nullable String message) {
+        executeServiceCall(apiClient.mergeBranches(authHeader, owner, repo, mergeRequest(source, dest, message)),
+                charset);
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Void> mergeAsync(@Nullable String authHeader, @Nullable String owner,
+                                              @Nullable String repo, @Nullable String source, @Nullable String dest,
+                                              @Nullable String message) {
+        return executeServiceCallAsync(apiClient.mergeBranches(authHeader, owner, repo,
+                mergeRequest(source, dest, message)), charset).thenApply(r -> null);
+    }
+
+    @Nonnull
+    private static JsonObject mergeRequest(@Nullable String source, @Nullable String dest, @Nullable String message) {
         JsonObject request = new JsonObject();
         ofNullable(dest).ifPresent(d -> request.add(BASE_FIELD, new JsonPrimitive(d)));
         ofNullable(source).ifPresent(s -> request.add(HEAD_FIELD, new JsonPrimitive(s)));
         ofNullable(message).ifPresent(m -> request.add(COMMIT_MESSAGE_FIELD, new JsonPrimitive(m)));
-        executeServiceCall(apiClient.mergeBranches(authHeader, owner, repo, request), charset);
+        return request;
     }
 
     @Override
     public int createPullRequest(@Nullable String authHeader, @Nullable String owner, @Nullable String repo,
                                  @Nullable String source, @Nullable String dest, @Nullable String title,
                                  @Nullable String body) {
+        Response<PullRequest> result = executeServiceCall(apiClient.createPullRequest(authHeader, owner, repo,
+                pullRequestRequest(source, dest, title, body)), charset);
+        return ofNullable(result.body()).map(PullRequest::getNumber).orElseThrow(() -> INVALID_API_RESPONSE);
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Integer> createPullRequestAsync(@Nullable String authHeader, @Nullable String owner,
+                                                             @Nullable String repo, @Nullable String source,
+                                                             @Nullable String dest, @Nullable String title,
+                                                             @Nullable String body) {
+        return executeServiceCallAsync(apiClient.createPullRequest(authHeader, owner, repo,
+                pullRequestRequest(source, dest, title, body)), charset)
+                .thenApply(result -> ofNullable(result.body()).map(PullRequest::getNumber)
+                        .orElseThrow(() -> INVALID_API_RESPONSE));
+    }
+
+    @Nonnull
+    private static JsonObject pullRequestRequest(@Nullable String source, @Nullable String dest,
+                                                 @Nullable String title, @Nullable String body) {
         JsonObject request = new JsonObject();
         ofNullable(dest).ifPresent(d -> request.add(BASE_FIELD, new JsonPrimitive(d)));
         ofNullable(source).ifPresent(s -> request.add(HEAD_FIELD, new JsonPrimitive(s)));
         ofNullable(title).ifPresent(m -> request.add(TITLE_FIELD, new JsonPrimitive(m)));
         ofNullable(body).ifPresent(m -> request.add(BODY_FIELD, new JsonPrimitive(m)));
-        Response<JsonObject> result =
-                executeServiceCall(apiClient.createPullRequest(authHeader, owner, repo, request), charset);
-        return ofNullable(result.body()).map(b -> b.getAsJsonPrimitive(NUMBER_FIELD)).map(JsonPrimitive::getAsInt)
-                .orElseThrow(() -> INVALID_API_RESPONSE);
+        return request;
     }
 
     @Override
     public void createReview(@Nullable String authHeader, @Nullable String owner, @Nullable String repo,
-                             int pullNumber, @Nullable String event, @Nullable String body) {
+                             int pullNumber, @Nullable String commitId, @Nullable String event,
+                             @Nullable String body) {
+        executeServiceCall(apiClient.createReview(authHeader, owner, repo, pullNumber,
+                reviewRequest(commitId, event, body)), charset);
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Void> createReviewAsync(@Nullable String authHeader, @Nullable String owner,
+                                                     @Nullable String repo, int pullNumber,
+                                                     @Nullable String commitId, @Nullable String event,
+                                                     @Nullable String body) {
+        return executeServiceCallAsync(apiClient.createReview(authHeader, owner, repo, pullNumber,
+                reviewRequest(commitId, event, body)), charset).thenApply(r -> null);
+    }
+
+    @Nonnull
+    private static JsonObject reviewRequest(@Nullable String commitId, @Nullable String event,
+                                            @Nullable String body) {
         JsonObject request = new JsonObject();
+        ofNullable(commitId).ifPresent(c -> request.add(COMMIT_ID_FIELD, new JsonPrimitive(c)));
         ofNullable(event).ifPresent(m -> request.add(EVENT_FIELD, new JsonPrimitive(m)));
         ofNullable(body).ifPresent(m -> request.add(BODY_FIELD, new JsonPrimitive(m)));
-        executeServiceCall(apiClient.createReview(authHeader, owner, repo, pullNumber, request), charset);
+        return request;
     }
 
     @Override
     public void mergePullRequest(@Nullable String authHeader, @Nullable String owner, @Nullable String repo,
-                                 int pullNumber, @Nullable String commitTitle, @Nullable String commitMessage,
-                                 @Nullable String mergeMethod) {
+                                 int pullNumber, @Nullable String sha, @Nullable String commitTitle,
+                                 @Nullable String commitMessage, @Nullable String mergeMethod) {
+        executeServiceCall(apiClient.mergePullRequest(authHeader, owner, repo, pullNumber,
+                mergePullRequestRequest(sha, commitTitle, commitMessage, mergeMethod)), charset);
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Void> mergePullRequestAsync(@Nullable String authHeader, @Nullable String owner,
+                                                         @Nullable String repo, int pullNumber,
+                                                         @Nullable String sha, @Nullable String commitTitle,
+                                                         @Nullable String commitMessage,
+                                                         @Nullable String mergeMethod) {
+        return executeServiceCallAsync(apiClient.mergePullRequest(authHeader, owner, repo, pullNumber,
+                mergePullRequestRequest(sha, commitTitle, commitMessage, mergeMethod)), charset)
+                .thenApply(r -> null);
+    }
+
+    @Nonnull
+    private static JsonObject mergePullRequestRequest(@Nullable String sha, @Nullable String commitTitle,
+                                                      @Nullable String commitMessage,
+                                                      @Nullable String mergeMethod) {
         JsonObject request = new JsonObject();
+        ofNullable(sha).ifPresent(m -> request.add(SHA_FIELD, new JsonPrimitive(m)));
         ofNullable(commitTitle).ifPresent(m -> request.add(COMMIT_TITLE_FIELD, new JsonPrimitive(m)));
         ofNullable(commitMessage).ifPresent(m -> request.add(COMMIT_MESSAGE_FIELD, new JsonPrimitive(m)));
         ofNullable(mergeMethod).ifPresent(m -> request.add(MERGE_METHOD_FIELD, new JsonPrimitive(m)));
-        executeServiceCall(apiClient.mergePullRequest(authHeader, owner, repo, pullNumber, request), charset);
+        return request;
     }
 
     @Override
     public BranchProtection getBranchProtection(@Nullable String authHeader, @Nullable String owner, @Nullable String repo,
                                                 @Nullable String branch) {
-        Response<JsonObject> response =
-                executeServiceCall(apiClient.getBranchProtection(authHeader, owner, repo, branch), charset);
-        return ofNullable(response.body())
-                .map(b -> WebServiceCommon.deserializeJson(b, BranchProtection.class))
-                .orElseThrow(() -> INVALID_API_RESPONSE);
+        return requireBody(executeServiceCall(apiClient.getBranchProtection(authHeader, owner, repo, branch), charset));
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<BranchProtection> getBranchProtectionAsync(@Nullable String authHeader,
+                                                                        @Nullable String owner, @Nullable String repo,
+                                                                        @Nullable String branch) {
+        return executeServiceCallAsync(apiClient.getBranchProtection(authHeader, owner, repo, branch), charset)
+                .thenApply(GithubService::requireBody);
+    }
+
+    @Nonnull
+    private static <T> T requireBody(@Nonnull Response<T> response) {
+        return ofNullable(response.body()).orElseThrow(() -> INVALID_API_RESPONSE);
     }
 
     @Override
     public List<PullRequest> getOpenedPullRequests(@Nullable String authHeader, @Nullable String owner,
                                                    @Nullable String repo, @Nullable String branch) {
-        Response<JsonArray> response =
-                executeServiceCall(apiClient.getPullRequests(authHeader, owner, repo, "open", null, branch,
-                        null, null, null, null), charset);
-        return ofNullable(response.body())
-                .map(b -> WebServiceCommon.<List<PullRequest>>deserializeJson(b, new TypeToken<List<PullRequest>>() {
-                }.getType()))
-                .orElseThrow(() -> INVALID_API_RESPONSE);
+        return requireBody(executeServiceCall(apiClient.getPullRequests(authHeader, owner, repo, "open", null, branch,
+                null, null, null, null), charset));
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<List<PullRequest>> getOpenedPullRequestsAsync(@Nullable String authHeader,
+                                                                           @Nullable String owner,
+                                                                           @Nullable String repo,
+                                                                           @Nullable String branch) {
+        return executeServiceCallAsync(apiClient.getPullRequests(authHeader, owner, repo, "open", null, branch,
+                null, null, null, null), charset).thenApply(GithubService::requireBody);
     }
 
     @Override
     public PullRequest getPullRequest(@Nullable String authHeader, @Nullable String owner, @Nullable String repo,
                                       int pullNumber) {
-        Response<JsonObject> response =
-                executeServiceCall(apiClient.getPullRequest(authHeader, owner, repo, pullNumber), charset);
-        return ofNullable(response.body())
-                .map(b -> WebServiceCommon.deserializeJson(b, PullRequest.class))
-                .orElseThrow(() -> INVALID_API_RESPONSE);
+        return requireBody(executeServiceCall(apiClient.getPullRequest(authHeader, owner, repo, pullNumber), charset));
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<PullRequest> getPullRequestAsync(@Nullable String authHeader, @Nullable String owner,
+                                                              @Nullable String repo, int pullNumber) {
+        return executeServiceCallAsync(apiClient.getPullRequest(authHeader, owner, repo, pullNumber), charset)
+                .thenApply(GithubService::requireBody);
     }
 }
@@ -4,13 +4,21 @@ import com.google.cloud.Timestamp;
 import com.google.cloud.datastore.*;
 import net.hardnorth.github.merge.model.github.hook.*;
 import net.hardnorth.github.merge.service.Github;
+import net.hardnorth.github.merge.service.GithubAsync;
 import net.hardnorth.github.merge.service.GithubWebhook;
 import net.hardnorth.github.merge.service.JWT;
 import net.hardnorth.github.merge.service.MergeValidate;
+import net.hardnorth.github.merge.utils.SingleFlight;
 import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.lang3.tuple.Triple;
 import org.jboss.logging.Logger;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 
 import static java.util.Optional.ofNullable;
@@ -37,27 +45,62 @@ public class GithubWebhookService implements GithubWebhook {
     private static final String CHECK_PASSED = "check_passed";
     private static final String BEARER = "Bearer ";
     private static final String APPROVE_EVENT = "APPROVE";
+    private static final long DEFAULT_TOKEN_REFRESH_MARGIN = 5;
 
     private final String appName;
     private final Github github;
+    private final GithubAsync githubAsync;
     private final MergeValidate merge;
     private final JWT jwt;
     private final Datastore datastore;
     private final KeyFactory tokenKeyFactory;
     private final KeyFactory pullsKeyFactory;
     private final KeyFactory checksKeyFactory;
+    private final InstallationTokenCache tokenCache;
+    // events for the same pull request join the validation which is already running instead of starting a new one
+    private final SingleFlight<Triple<String, String, Integer>, Void> pullRequestFlights = new SingleFlight<>();
 
     @SuppressWarnings("CdiInjectionPointsInspection")
     public GithubWebhookService(String applicationName, Github githubService, MergeValidate mergeValidate,
                                 JWT jwtService, Datastore datastoreService) {
+        this(applicationName, githubService, mergeValidate, jwtService, datastoreService,
+                DEFAULT_TOKEN_REFRESH_MARGIN, TimeUnit.MINUTES);
+    }
+
+    @SuppressWarnings("CdiInjectionPointsInspection")
+    public GithubWebhookService(String applicationName, Github githubService, MergeValidate mergeValidate,
+                                JWT jwtService, Datastore datastoreService, long tokenRefreshMargin,
+                                TimeUnit tokenRefreshMarginUnit) {
+        this(applicationName, githubService, null, mergeValidate, jwtService, datastoreService, tokenRefreshMargin,
+                tokenRefreshMarginUnit);
+    }
+
+    /**
+     * @param applicationName         application name, also the label which triggers pull request validation
+     * @param githubService           Github client
+     * @param asyncGithubService      non-blocking Github client for {@link #processPullAsync}, <code>null</code> to
+     *                                process pull requests in a calling thread
+     * @param mergeValidate           merge validation service
+     * @param jwtService              application JWT source
+     * @param datastoreService        Datastore client
+     * @param tokenRefreshMargin      how long before expiration an installation token is refreshed
+     * @param tokenRefreshMarginUnit  time unit of <code>tokenRefreshMargin</code>
+     */
+    @SuppressWarnings("CdiInjectionPointsInspection")
+    public GithubWebhookService(String applicationName, Github githubService,
+                                @Nullable GithubAsync asyncGithubService, MergeValidate mergeValidate,
+                                JWT jwtService, Datastore datastoreService, long tokenRefreshMargin,
+                                TimeUnit tokenRefreshMarginUnit) {
         appName = applicationName;
         github = githubService;
+        githubAsync = asyncGithubService;
         merge = mergeValidate;
         jwt = jwtService;
         datastore = datastoreService;
         tokenKeyFactory = datastore.newKeyFactory().setKind(TOKENS_KIND);
         pullsKeyFactory = datastore.newKeyFactory().setKind(PULL_REQUESTS_KIND);
         checksKeyFactory = datastore.newKeyFactory().setKind(REQUIRED_CHECKS_KIND);
+        tokenCache = new InstallationTokenCache(this::loadToken, tokenRefreshMargin, tokenRefreshMarginUnit);
     }
 
     private void createInstallation(EventInstallation installationRequest) {
@@ -72,6 +115,7 @@ public class GithubWebhookService implements GithubWebhook {
         Account account = installation.getAccount();
         LOGGER.infof("Installation '%d' deleted by '%s' '%s' with user ID '%d'", installation.getId(),
                 account.getType(), account.getLogin(), account.getId());
+        ofNullable(installation.getId()).ifPresent(tokenCache::invalidate);
     }
 
     @Override
@@ -94,53 +138,48 @@ public class GithubWebhookService implements GithubWebhook {
         // ignore for now
     }
 
-    private void verifyAndMerge(EventPullRequest pullRequest) {
-        String labelName = pullRequest.getLabel().getName();
-        if (!appName.equals(labelName)) {
-            return;
-        }
-        String workBranch = pullRequest.getPullRequest().getHead().getRef();
-        String targetBranch = pullRequest.getPullRequest().getBase().getRef();
-
-        Long installationId = pullRequest.getInstallation().getId();
-        if (installationId == null) {
-            throw new IllegalArgumentException("Invalid request: no installation ID");
-        }
+    // Datastore is used as a warm-start tier behind the in-memory token cache, so only tokens which will not be
+    // refreshed right away are taken from there
+    private Pair<String, Date> loadToken(long installationId) {
+        Date validAfter = new Date(System.currentTimeMillis() + tokenCache.getRefreshMargin());
         EntityQuery query = Query
                 .newEntityQueryBuilder()
                 .setKind(TOKENS_KIND)
                 .setFilter(
                         StructuredQuery.CompositeFilter.and(
                                 StructuredQuery.PropertyFilter.eq(INSTALLATION_ID, installationId),
-                                StructuredQuery.PropertyFilter.gt(EXPIRE_DATE, Timestamp.now())
+                                StructuredQuery.PropertyFilter.gt(EXPIRE_DATE, Timestamp.of(validAfter))
                         ))
                 .setLimit(1)
                 .build();
 
         QueryResults<Entity> tokenResult = datastore.run(query);
-        String token;
-        if (!tokenResult.hasNext()) {
-            Pair<String, Date> tokenResponse =
-                    github.authenticateInstallation(BEARER + jwt.get(), installationId);
-            Entity entity = Entity
-                    .newBuilder(datastore.allocateId(tokenKeyFactory.newKey()))
-                    .set(TOKEN, tokenResponse.getKey())
-                    .set(INSTALLATION_ID, installationId)
-                    .set(EXPIRE_DATE, Timestamp.of(tokenResponse.getValue()))
-                    .build();
-            datastore.put(entity);
-            token = tokenResponse.getKey();
-        } else {
-            token = tokenResult.next().getString(TOKEN);
+        if (tokenResult.hasNext()) {
+            Entity tokenEntity = tokenResult.next();
+            return Pair.of(tokenEntity.getString(TOKEN), tokenEntity.getTimestamp(EXPIRE_DATE).toDate());
         }
 
-        String auth = BEARER + token;
-        String owner = pullRequest.getRepository().getOwner().getLogin();
-        String repository = pullRequest.getRepository().getName();
+        Pair<String, Date> tokenResponse = github.authenticateInstallation(BEARER + jwt.get(), installationId);
+        Entity entity = Entity
+                .newBuilder(datastore.allocateId(tokenKeyFactory.newKey()))
+                .set(TOKEN, tokenResponse.getKey())
+                .set(INSTALLATION_ID, installationId)
+                .set(EXPIRE_DATE, Timestamp.of(tokenResponse.getValue()))
+                .build();
+        datastore.put(entity);
+        return tokenResponse;
+    }
 
-        merge.validate(auth, owner, repository, workBranch, targetBranch);
+    private String authorize(EventPullRequest pullRequest) {
+        Long installationId = pullRequest.getInstallation().getId();
+        if (installationId == null) {
+            throw new IllegalArgumentException("Invalid request: no installation ID");
+        }
+        return BEARER + tokenCache.get(installationId).getKey();
+    }
 
-        int pullNumber = pullRequest.getNumber();
+    private void savePullRequest(int pullNumber, String owner, String repository, String workBranch,
+                                 String targetBranch) {
         Key prKey = datastore.allocateId(pullsKeyFactory.newKey());
         Entity entity = Entity
                 .newBuilder(prKey)
@@ -152,26 +191,121 @@ public class GithubWebhookService implements GithubWebhook {
                 .set(TARGET_BRANCH, targetBranch)
                 .build();
         datastore.put(entity);
+    }
 
-        github.createReview(auth, owner, repository, pullNumber, APPROVE_EVENT, null);
+    // the commit a pull request side points to now, the event may be stale by the time it is processed
+    @Nonnull
+    private static String currentHead(int pullNumber, @Nullable String eventSha, @Nullable Branch current) {
+        String currentSha = ofNullable(current).map(Branch::getSha).orElse(eventSha);
+        if (currentSha == null) {
+            throw new IllegalArgumentException("Invalid request: no pull request head commit");
+        }
+        if (eventSha != null && !eventSha.equals(currentSha)) {
+            LOGGER.infof("Pull request '%d' head moved from '%s' to '%s', validating current commit", pullNumber,
+                    eventSha, currentSha);
+        }
+        return currentSha;
+    }
 
-        ofNullable(github.getPullRequest(auth, owner, repository, pullNumber).getMergeable()).filter(m -> m)
-                .ifPresent(m -> github.mergePullRequest(auth, owner, repository, pullNumber, "Merge "
-                        + workBranch + " to " + targetBranch, null, null));
+    private static String mergeTitle(String workBranch, String targetBranch) {
+        return "Merge " + workBranch + " to " + targetBranch;
+    }
+
+    private void verifyAndMerge(EventPullRequest pullRequest) {
+        String workBranch = pullRequest.getPullRequest().getHead().getRef();
+        String targetBranch = pullRequest.getPullRequest().getBase().getRef();
+        String workSha = pullRequest.getPullRequest().getHead().getSha();
+
+        String auth = authorize(pullRequest);
+        String owner = pullRequest.getRepository().getOwner().getLogin();
+        String repository = pullRequest.getRepository().getName();
+        int pullNumber = pullRequest.getNumber();
+
+        // validate the commit the pull request points to now, then approve and merge exactly the validated head,
+        // so Github rejects the merge if the head moves after validation. The head is compared with the target branch
+        // itself, since Github does not update pull request base SHA when the target branch moves
+        net.hardnorth.github.merge.model.github.repo.PullRequest current =
+                github.getPullRequest(auth, owner, repository, pullNumber);
+        String headSha = currentHead(pullNumber, workSha, current.getHead());
+
+        merge.validate(auth, owner, repository, workBranch, targetBranch, headSha, null);
+
+        savePullRequest(pullNumber, owner, repository, workBranch, targetBranch);
+
+        github.createReview(auth, owner, repository, pullNumber, headSha, APPROVE_EVENT, null);
+
+        ofNullable(current.getMergeable()).filter(m -> m)
+                .ifPresent(m -> github.mergePullRequest(auth, owner, repository, pullNumber, headSha,
+                        mergeTitle(workBranch, targetBranch), null, null));
+    }
+
+    // the same steps as verifyAndMerge, but each Github call is composed on the completion of the previous one;
+    // the installation token is usually taken from memory and Datastore calls still block a completing thread
+    private CompletableFuture<Void> verifyAndMergeAsync(EventPullRequest pullRequest) {
+        String workBranch = pullRequest.getPullRequest().getHead().getRef();
+        String targetBranch = pullRequest.getPullRequest().getBase().getRef();
+        String workSha = pullRequest.getPullRequest().getHead().getSha();
+
+        String auth = authorize(pullRequest);
+        String owner = pullRequest.getRepository().getOwner().getLogin();
+        String repository = pullRequest.getRepository().getName();
+        int pullNumber = pullRequest.getNumber();
+
+        return githubAsync.getPullRequestAsync(auth, owner, repository, pullNumber).thenCompose(current -> {
+            String headSha = currentHead(pullNumber, workSha, current.getHead());
+            CompletableFuture<Void> approval =
+                    merge.validateAsync(auth, owner, repository, workBranch, targetBranch, headSha, null)
+                            .thenCompose(v -> {
+                                savePullRequest(pullNumber, owner, repository, workBranch, targetBranch);
+                                return githubAsync.createReviewAsync(auth, owner, repository, pullNumber, headSha,
+                                        APPROVE_EVENT, null);
+                            });
+            if (!ofNullable(current.getMergeable()).orElse(Boolean.FALSE)) {
+                return approval;
+            }
+            return approval.thenCompose(v -> githubAsync.mergePullRequestAsync(auth, owner, repository, pullNumber,
+                    headSha, mergeTitle(workBranch, targetBranch), null, null));
+        });
+    }
+
+    private void logPull(EventPullRequest pullRequest) {
+        LOGGER.infof("Pull request action '%s' on pull request '%d' in repository '%s' of user '%s'",
+                pullRequest.getAction(), pullRequest.getNumber(), pullRequest.getRepository().getName(),
+                pullRequest.getRepository().getOwner().getName());
     }
 
     @Override
     public void processPull(EventPullRequest pullRequest) {
-        String action = pullRequest.getAction();
-        //noinspection SwitchStatementWithTooFewBranches
-        switch (action) {
-            case "labeled":
+        if (acceptsPull(pullRequest.getAction(), () -> pullRequest.getLabel().getName())) {
+            Repository repository = pullRequest.getRepository();
+            pullRequestFlights.execute(Triple.of(repository.getOwner().getLogin(), repository.getName(),
+                    pullRequest.getNumber()), () -> {
                 verifyAndMerge(pullRequest);
-            default:
-                LOGGER.infof("Pull request action '%s' on pull request '%d' in repository '%s' of user '%s'",
-                        pullRequest.getAction(), pullRequest.getNumber(), pullRequest.getRepository().getName(),
-                        pullRequest.getRepository().getOwner().getName());
+                return null;
+            });
         }
+        logPull(pullRequest);
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Void> processPullAsync(EventPullRequest pullRequest) {
+        if (githubAsync == null) {
+            return GithubWebhook.super.processPullAsync(pullRequest);
+        }
+        CompletableFuture<Void> result = CompletableFuture.completedFuture(null);
+        if (acceptsPull(pullRequest.getAction(), () -> pullRequest.getLabel().getName())) {
+            Repository repository = pullRequest.getRepository();
+            result = pullRequestFlights.executeAsync(Triple.of(repository.getOwner().getLogin(),
+                    repository.getName(), pullRequest.getNumber()), () -> verifyAndMergeAsync(pullRequest));
+        }
+        logPull(pullRequest);
+        return result;
+    }
+
+    @Override
+    public boolean acceptsPull(@Nullable String action, @Nonnull Supplier<String> label) {
+        return "labeled".equals(action) && appName.equals(label.get());
     }
 
     @Override
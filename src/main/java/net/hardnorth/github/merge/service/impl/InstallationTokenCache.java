@@ -0,0 +1,152 @@
+package net.hardnorth.github.merge.service.impl;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.jboss.logging.Logger;
+
+import javax.annotation.Nonnull;
+import java.util.Date;
+import java.util.concurrent.*;
+import java.util.function.LongFunction;
+
+/**
+ * In-process cache of Github installation tokens. Concurrent misses for the same installation are collapsed into a
+ * single loader call, and tokens which were used since the last load are refreshed in background
+ * <code>refreshMargin</code> milliseconds before they expire. Tokens which were not used are dropped instead.
+ */
+public class InstallationTokenCache {
+    private static final Logger LOGGER = Logger.getLogger(InstallationTokenCache.class);
+
+    private final LongFunction<Pair<String, Date>> loader;
+    private final long refreshMargin;
+    private final ScheduledExecutorService scheduler;
+    private final ConcurrentMap<Long, Entry> tokens = new ConcurrentHashMap<>();
+
+    private static class Entry {
+        private final CompletableFuture<Pair<String, Date>> token = new CompletableFuture<>();
+        private volatile boolean accessed = true;
+
+        private boolean isExpired(long now) {
+            if (!token.isDone()) {
+                return false;
+            }
+            if (token.isCompletedExceptionally()) {
+                return true;
+            }
+            return token.join().getValue().getTime() <= now;
+        }
+    }
+
+    /**
+     * @param tokenLoader       a function which returns a token and its expiration date for an installation ID
+     * @param refreshMarginTime how long before the token expiration it should be refreshed
+     * @param refreshMarginUnit time unit of <code>refreshMarginTime</code>
+     */
+    public InstallationTokenCache(@Nonnull LongFunction<Pair<String, Date>> tokenLoader, long refreshMarginTime,
+                                  @Nonnull TimeUnit refreshMarginUnit) {
+        loader = tokenLoader;
+        refreshMargin = refreshMarginUnit.toMillis(refreshMarginTime);
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "installation-token-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public long getRefreshMargin() {
+        return refreshMargin;
+    }
+
+    private static RuntimeException unwrap(CompletionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        return e;
+    }
+
+    private void scheduleRefresh(long installationId, Entry entry, Date expiresAt) {
+        long delay = expiresAt.getTime() - refreshMargin - System.currentTimeMillis();
+        if (delay <= 0) {
+            // the token is too short-living to refresh it ahead, it will be loaded again on expiration
+            return;
+        }
+        entry.accessed = false;
+        scheduler.schedule(() -> refresh(installationId, entry), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void refresh(long installationId, Entry entry) {
+        if (tokens.get(installationId) != entry) {
+            return;
+        }
+        if (!entry.accessed) {
+            tokens.remove(installationId, entry);
+            return;
+        }
+        Pair<String, Date> token;
+        try {
+            token = loader.apply(installationId);
+        } catch (RuntimeException e) {
+            LOGGER.warnf(e, "Unable to refresh token for installation '%d'", installationId);
+            return;
+        }
+        Entry newEntry = new Entry();
+        newEntry.token.complete(token);
+        if (tokens.replace(installationId, entry, newEntry)) {
+            scheduleRefresh(installationId, newEntry, token.getValue());
+        }
+    }
+
+    private Pair<String, Date> load(long installationId, Entry entry) {
+        Pair<String, Date> token;
+        try {
+            token = loader.apply(installationId);
+        } catch (RuntimeException e) {
+            tokens.remove(installationId, entry);
+            entry.token.completeExceptionally(e);
+            throw e;
+        }
+        entry.token.complete(token);
+        scheduleRefresh(installationId, entry, token.getValue());
+        return token;
+    }
+
+    /**
+     * Returns a valid token for the installation, loads it on a cache miss.
+     *
+     * @param installationId Github installation ID
+     * @return a token and its expiration date
+     */
+    @Nonnull
+    public Pair<String, Date> get(long installationId) {
+        while (true) {
+            long now = System.currentTimeMillis();
+            Entry entry = tokens.get(installationId);
+            if (entry == null || entry.isExpired(now)) {
+                Entry newEntry = new Entry();
+                entry = tokens.compute(installationId, (k, v) -> v == null || v.isExpired(now) ? newEntry : v);
+                if (entry == newEntry) {
+                    return load(installationId, newEntry);
+                }
+            }
+            entry.accessed = true;
+            Pair<String, Date> token;
+            try {
+                token = entry.token.join();
+            } catch (CompletionException e) {
+                throw unwrap(e);
+            }
+            if (token.getValue().getTime() > now) {
+                return token;
+            }
+        }
+    }
+
+    /**
+     * Drops cached token for the installation, e.g. when the installation was deleted.
+     *
+     * @param installationId Github installation ID
+     */
+    public void invalidate(long installationId) {
+        tokens.remove(installationId);
+    }
+}
@@ -3,6 +3,7 @@ package net.hardnorth.github.merge.service.impl;
 import com.auth0.jwt.JWTCreator;
 import com.auth0.jwt.algorithms.Algorithm;
 import net.hardnorth.github.merge.service.JWT;
+import org.apache.commons.lang3.tuple.Pair;
 import org.bouncycastle.openssl.PEMKeyPair;
 import org.bouncycastle.openssl.PEMParser;
 import org.bouncycastle.openssl.jcajce.JcaPEMKeyConverter;
@@ -16,6 +17,7 @@ import java.security.interfaces.RSAPrivateKey;
 import java.security.interfaces.RSAPublicKey;
 import java.time.ZoneId;
 import java.util.Calendar;
+import java.util.Date;
 import java.util.TimeZone;
 
 public class JwtService implements JWT {
@@ -37,13 +39,24 @@ public class JwtService implements JWT {
         algorithm = Algorithm.RSA256((RSAPublicKey) keyPair.getPublic(), (RSAPrivateKey) keyPair.getPrivate());
     }
 
+    /**
+     * Creates and signs a new application token.
+     *
+     * @return the token and its expiration date
+     */
     @Nonnull
-    @Override
-    public String get() {
+    public Pair<String, Date> sign() {
         Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone(ZoneId.of("UTC")));
         calendar.add(Calendar.MINUTE, -1);
         JWTCreator.Builder jwtBuilder = com.auth0.jwt.JWT.create().withIssuer(issuer).withIssuedAt(calendar.getTime());
         calendar.add(Calendar.MINUTE, 10);
-        return jwtBuilder.withExpiresAt(calendar.getTime()).sign(algorithm);
+        Date expiresAt = calendar.getTime();
+        return Pair.of(jwtBuilder.withExpiresAt(expiresAt).sign(algorithm), expiresAt);
+    }
+
+    @Nonnull
+    @Override
+    public String get() {
+        return sign().getKey();
     }
 }
@@ -1,60 +1,279 @@
 package net.hardnorth.github.merge.service.impl;
 
+import net.hardnorth.github.merge.exception.HttpException;
+import net.hardnorth.github.merge.exception.IllegalChangeException;
 import net.hardnorth.github.merge.model.Charset;
 import net.hardnorth.github.merge.model.CommitDifference;
 import net.hardnorth.github.merge.model.FileChange;
+import net.hardnorth.github.merge.model.FileInfo;
 import net.hardnorth.github.merge.service.Github;
+import net.hardnorth.github.merge.service.GithubAsync;
 import net.hardnorth.github.merge.service.MergeValidate;
 import net.hardnorth.github.merge.utils.ValidationPattern;
+import net.hardnorth.github.merge.utils.ValidationPatternCache;
+import net.hardnorth.github.merge.utils.VirtualThreads;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.http.HttpStatus;
 
 import javax.annotation.Nonnull;
-import java.io.File;
+import javax.annotation.Nullable;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.*;
 
 public class MergeValidateService implements MergeValidate {
+    private static final int DEFAULT_CACHE_SIZE = 1024;
+    private static final long DEFAULT_CACHE_RULES = 100000;
 
     private static final RuntimeException NOT_FAST_FORWARD =
             new IllegalArgumentException("Unable to merge branches: not fast forward");
-    private static final RuntimeException ILLEGAL_CHANGES =
-            new IllegalArgumentException("Unable to merge branches: illegal changes");
+    private static final RuntimeException VALIDATION_TIMEOUT =
+            new HttpException("Unable to validate branches: Github calls timed out", HttpStatus.SC_GATEWAY_TIMEOUT);
+    private static final RuntimeException VALIDATION_INTERRUPTED =
+            new IllegalStateException("Unable to validate branches: interrupted");
 
     private final Github client;
+    private final GithubAsync asyncClient;
     private final String mergeFile;
     private final java.nio.charset.Charset charset;
     private final List<String> strictRules;
+    private final ValidationPatternCache patternCache;
+    private final ExecutorService executor;
+    private final long timeout;
 
     @SuppressWarnings("CdiInjectionPointsInspection")
     public MergeValidateService(@Nonnull Github githubClient, @Nonnull String mergeFileName,
                                 @Nonnull Charset currentCharset) {
+        this(githubClient, mergeFileName, currentCharset, new ValidationPatternCache(DEFAULT_CACHE_SIZE,
+                DEFAULT_CACHE_RULES));
+    }
+
+    @SuppressWarnings("CdiInjectionPointsInspection")
+    public MergeValidateService(@Nonnull Github githubClient, @Nonnull String mergeFileName,
+                                @Nonnull Charset currentCharset, @Nonnull ValidationPatternCache cache) {
+        this(githubClient, mergeFileName, currentCharset, cache, 0, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param githubClient   Github client
+     * @param mergeFileName  merge configuration file name
+     * @param currentCharset merge configuration file charset
+     * @param cache          compiled merge configuration cache
+     * @param threadCount    number of threads which fetch merge configuration and branch difference in parallel,
+     *                       zero means to fetch them one after another in a calling thread
+     * @param timeoutValue   maximum time to wait for both fetches, ignored if fetches are not parallel
+     * @param timeoutUnit    time unit of <code>timeoutValue</code>
+     */
+    @SuppressWarnings("CdiInjectionPointsInspection")
+    public MergeValidateService(@Nonnull Github githubClient, @Nonnull String mergeFileName,
+                                @Nonnull Charset currentCharset, @Nonnull ValidationPatternCache cache,
+                                int threadCount, long timeoutValue, @Nonnull TimeUnit timeoutUnit) {
+        this(githubClient, null, mergeFileName, currentCharset, cache, threadCount, timeoutValue, timeoutUnit);
+    }
+
+    @SuppressWarnings("CdiInjectionPointsInspection")
+    public MergeValidateService(@Nonnull Github githubClient, @Nullable GithubAsync asyncGithubClient,
+                                @Nonnull String mergeFileName, @Nonnull Charset currentCharset,
+                                @Nonnull ValidationPatternCache cache, int threadCount, long timeoutValue,
+                                @Nonnull TimeUnit timeoutUnit) {
+        this(githubClient, asyncGithubClient, mergeFileName, currentCharset, cache, threadCount, timeoutValue,
+                timeoutUnit, VirtualThreads.factory("merge-validate-", false));
+    }
+
+    /**
+     * @param githubClient      Github client
+     * @param asyncGithubClient non-blocking Github client for {@link #validateAsync}, <code>null</code> to validate
+     *                          in a calling thread
+     * @param mergeFileName     merge configuration file name
+     * @param currentCharset    merge configuration file charset
+     * @param cache             compiled merge configuration cache
+     * @param threadCount       number of threads which fetch merge configuration and branch difference in parallel,
+     *                          zero means to fetch them one after another in a calling thread
+     * @param timeoutValue      maximum time to wait for both fetches, ignored if fetches are neither parallel nor
+     *                          asynchronous
+     * @param timeoutUnit       time unit of <code>timeoutValue</code>
+     * @param threadFactory     creates fetch threads, e.g. virtual ones
+     */
+    @SuppressWarnings("CdiInjectionPointsInspection")
+    public MergeValidateService(@Nonnull Github githubClient, @Nullable GithubAsync asyncGithubClient,
+                                @Nonnull String mergeFileName, @Nonnull Charset currentCharset,
+                                @Nonnull ValidationPatternCache cache, int threadCount, long timeoutValue,
+                                @Nonnull TimeUnit timeoutUnit, @Nonnull ThreadFactory threadFactory) {
         client = githubClient;
+        asyncClient = asyncGithubClient;
         mergeFile = mergeFileName;
         charset = currentCharset.get();
         strictRules = Arrays.asList("!" + mergeFile, "!.github/workflows/**");
+        patternCache = cache;
+        timeout = timeoutUnit.toNanos(timeoutValue);
+        if (threadCount > 0) {
+            executor = Executors.newFixedThreadPool(threadCount, threadFactory);
+        } else {
+            executor = null;
+        }
+    }
+
+    private ValidationPattern compile(String authHeader, String user, String repo, String to, FileInfo file) {
+        String mergeFileContent = new String(client.getFileContent(authHeader, user, repo, to, file), charset);
+        return ValidationPattern.parse(mergeFileContent, strictRules);
+    }
+
+    private ValidationPattern loadPattern(String authHeader, String user, String repo, String to) {
+        FileInfo mergeFileInfo = client.getFileInfo(authHeader, user, repo, to, mergeFile);
+        if (user == null || repo == null || mergeFileInfo.getSha() == null) {
+            return compile(authHeader, user, repo, to, mergeFileInfo);
+        }
+        return patternCache.get(user, repo, mergeFileInfo.getSha(),
+                () -> compile(authHeader, user, repo, to, mergeFileInfo));
+    }
+
+    private CommitDifference loadDifference(String authHeader, String user, String repo, String from, String to,
+                                            @Nullable String fromSha, @Nullable String toSha) {
+        if (fromSha != null) {
+            // the compare API accepts references, so the current target branch head costs no extra request
+            return client.compareCommits(authHeader, user, repo, toSha != null ? toSha : to, fromSha);
+        }
+        return client.listChanges(authHeader, user, repo, from, to);
+    }
+
+    private CompletableFuture<ValidationPattern> compileAsync(String authHeader, String user, String repo, String to,
+                                                              FileInfo file) {
+        return asyncClient.getFileContentAsync(authHeader, user, repo, to, file)
+                .thenApply(content -> ValidationPattern.parse(new String(content, charset), strictRules));
+    }
+
+    private CompletableFuture<ValidationPattern> loadPatternAsync(String authHeader, String user, String repo,
+                                                                  String to) {
+        return asyncClient.getFileInfoAsync(authHeader, user, repo, to, mergeFile).thenCompose(mergeFileInfo -> {
+            String sha = mergeFileInfo.getSha();
+            if (user == null || repo == null || sha == null) {
+                return compileAsync(authHeader, user, repo, to, mergeFileInfo);
+            }
+            ValidationPattern cached = patternCache.get(user, repo, sha);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached);
+            }
+            return compileAsync(authHeader, user, repo, to, mergeFileInfo).thenApply(pattern -> {
+                patternCache.put(user, repo, sha, pattern);
+                return pattern;
+            });
+        });
+    }
+
+    private CompletableFuture<CommitDifference> loadDifferenceAsync(String authHeader, String user, String repo,
+                                                                    String from, String to, @Nullable String fromSha,
+                                                                    @Nullable String toSha) {
+        if (fromSha != null) {
+            return asyncClient.compareCommitsAsync(authHeader, user, repo, toSha != null ? toSha : to, fromSha);
+        }
+        return asyncClient.listChangesAsync(authHeader, user, repo, from, to);
+    }
+
+    private static RuntimeException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IllegalStateException(cause);
+    }
+
+    // runs both fetches in parallel, the first failure or the deadline cancels the other one
+    private Pair<ValidationPattern, CommitDifference> load(Callable<ValidationPattern> patternCall,
+                                                           Callable<CommitDifference> differenceCall) {
+        CompletionService<Object> completion = new ExecutorCompletionService<>(executor);
+        Future<Object> patternTask = completion.submit(patternCall::call);
+        Future<Object> differenceTask = completion.submit(differenceCall::call);
+        long deadline = System.nanoTime() + timeout;
+        try {
+            for (int i = 0; i < 2; i++) {
+                Future<Object> done = completion.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (done == null) {
+                    throw VALIDATION_TIMEOUT;
+                }
+                done.get();
+            }
+            return Pair.of((ValidationPattern) patternTask.get(), (CommitDifference) differenceTask.get());
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw VALIDATION_INTERRUPTED;
+        } finally {
+            patternTask.cancel(true);
+            differenceTask.cancel(true);
+        }
     }
 
     @Override
-    public void validate(String authHeader, String user, String repo, String from, String to) {
-        String mergeFileContent = new String(client.getFileContent(authHeader, user, repo, to, mergeFile), charset);
-        ValidationPattern pattern = ValidationPattern.parse(mergeFileContent);
-        strictRules.forEach(pattern::addRule);
+    public void validate(String authHeader, String user, String repo, String from, String to,
+                         @Nullable String fromSha, @Nullable String toSha) {
+        ValidationPattern pattern;
+        CommitDifference difference;
+        if (executor == null) {
+            pattern = loadPattern(authHeader, user, repo, to);
+            difference = loadDifference(authHeader, user, repo, from, to, fromSha, toSha);
+        } else {
+            Pair<ValidationPattern, CommitDifference> result =
+                    load(() -> loadPattern(authHeader, user, repo, to),
+                            () -> loadDifference(authHeader, user, repo, from, to, fromSha, toSha));
+            pattern = result.getKey();
+            difference = result.getValue();
+        }
+        check(pattern, difference);
+    }
 
-        CommitDifference difference = client.listChanges(authHeader, user, repo, from, to);
+    /**
+     * Fetches merge configuration and branch difference concurrently without blocking the calling thread. Further
+     * pages of a long difference are still loaded on demand by the thread which completes the fetches.
+     */
+    @Nonnull
+    @Override
+    public CompletableFuture<Void> validateAsync(String authHeader, String user, String repo, String from, String to,
+                                                 @Nullable String fromSha, @Nullable String toSha) {
+        if (asyncClient == null) {
+            return MergeValidate.super.validateAsync(authHeader, user, repo, from, to, fromSha, toSha);
+        }
+        CompletableFuture<Void> validation = loadPatternAsync(authHeader, user, repo, to)
+                .thenCombine(loadDifferenceAsync(authHeader, user, repo, from, to, fromSha, toSha),
+                        (pattern, difference) -> {
+                            check(pattern, difference);
+                            return null;
+                        });
+        if (timeout > 0) {
+            validation = validation.orTimeout(timeout, TimeUnit.NANOSECONDS);
+        }
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        validation.whenComplete((r, error) -> {
+            if (error == null) {
+                result.complete(null);
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ?
+                    error.getCause() : error;
+            result.completeExceptionally(cause instanceof TimeoutException ? VALIDATION_TIMEOUT : cause);
+        });
+        return result;
+    }
+
+    private void check(ValidationPattern pattern, CommitDifference difference) {
         if (difference.getBehindBy() > 0) {
             throw NOT_FAST_FORWARD;
         }
-        if (difference.getAheadBy() <= 0 || difference.getCommits().isEmpty()) {
+        if (difference.getAheadBy() <= 0) {
             return; // nothing to merge
         }
 
-        boolean illegalChanges = difference.getCommits().stream()
-                .anyMatch(c -> FileChange.Type.ADDED == c.getType() || FileChange.Type.DELETED == c.getType());
-        if (illegalChanges) {
-            throw ILLEGAL_CHANGES;
-        }
-        boolean allConform = difference.getCommits().stream().allMatch(c -> pattern.test(new File(c.getName()).toPath()));
-        if (!allConform) {
-            throw ILLEGAL_CHANGES;
+        // a single pass, so the rest of change pages are not loaded after the first illegal change
+        for (FileChange change : difference.getChanges()) {
+            if (FileChange.Type.ADDED == change.getType() || FileChange.Type.DELETED == change.getType()) {
+                throw new IllegalChangeException(change, null);
+            }
+            if (!pattern.matches(change.getName())) {
+                throw new IllegalChangeException(change, pattern.getMatchedRule(change.getName()));
+            }
         }
     }
 }
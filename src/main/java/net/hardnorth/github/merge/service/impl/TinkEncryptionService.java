@@ -15,6 +15,8 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
 import java.util.concurrent.Callable;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static java.util.Optional.ofNullable;
 
@@ -24,8 +26,10 @@ public class TinkEncryptionService implements EncryptionService {
 
     private final EncryptionSupplier supplier;
 
-    // lazy init encryption algorithm supplier
+    // lazy init encryption algorithm supplier, the key is loaded under a lock instead of a monitor, so a virtual
+    // thread waiting for Secret Manager does not pin its carrier thread
     private static class EncryptionSupplier implements Callable<Aead> {
+        private final Lock lock = new ReentrantLock();
         private volatile Aead aead;
 
         private final SecretManager secrets;
@@ -42,7 +46,8 @@ public class TinkEncryptionService implements EncryptionService {
             if (aead != null) {
                 return aead;
             }
-            synchronized (this) {
+            lock.lock();
+            try {
                 if (aead != null) {
                     return aead;
                 }
@@ -84,6 +89,8 @@ public class TinkEncryptionService implements EncryptionService {
                     return kh;
                 });
                 aead = keysetHandle.getPrimitive(Aead.class);
+            } finally {
+                lock.unlock();
             }
             return aead;
         }
@@ -0,0 +1,68 @@
+package net.hardnorth.github.merge.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import net.hardnorth.github.merge.exception.ServiceUnavailableException;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the number of concurrent calls to a dependency, so a degraded dependency can not hold all request threads.
+ * A call which does not get a permit in time is rejected with {@link ServiceUnavailableException}.
+ */
+public class Bulkhead {
+    public static final String AVAILABLE_METRIC = "bulkhead.available";
+    public static final String REJECTED_METRIC = "bulkhead.rejected";
+
+    private final String name;
+    private final Semaphore permits;
+    private final long maxWait;
+    private final Counter rejected;
+
+    /**
+     * @param dependencyName a name of the protected dependency for error messages and metric tags
+     * @param maxCalls       maximum number of concurrent calls
+     * @param maxWaitValue   how long a call may wait for a permit
+     * @param maxWaitUnit    time unit of the wait
+     * @param meterRegistry  a registry to publish available permits and rejected calls
+     */
+    public Bulkhead(@Nonnull String dependencyName, int maxCalls, long maxWaitValue, @Nonnull TimeUnit maxWaitUnit,
+                    @Nonnull MeterRegistry meterRegistry) {
+        name = dependencyName;
+        permits = new Semaphore(maxCalls, true);
+        maxWait = maxWaitUnit.toMillis(maxWaitValue);
+        Tags tags = Tags.of("name", name);
+        meterRegistry.gauge(AVAILABLE_METRIC, tags, permits, Semaphore::availablePermits);
+        rejected = meterRegistry.counter(REJECTED_METRIC, tags);
+    }
+
+    /**
+     * Takes a permit, which should be returned with {@link #release()} after the call.
+     *
+     * @throws ServiceUnavailableException if there is no free permit in time
+     */
+    public void acquire() {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(maxWait, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            rejected.increment();
+            throw new ServiceUnavailableException("Too many concurrent calls to " + name, 1);
+        }
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public int available() {
+        return permits.availablePermits();
+    }
+}
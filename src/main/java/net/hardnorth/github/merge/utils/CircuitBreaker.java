@@ -0,0 +1,196 @@
+package net.hardnorth.github.merge.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import net.hardnorth.github.merge.exception.ServiceUnavailableException;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * A circuit breaker over a count-based sliding window of recent calls. The circuit opens when the share of failed or
+ * slow calls in the window reaches its threshold, then all calls are rejected with
+ * {@link ServiceUnavailableException} for the open duration. After that a few trial calls are let through: the
+ * circuit closes if all of them succeed in time and opens again otherwise.
+ */
+public class CircuitBreaker {
+    public static final String STATE_METRIC = "circuit.breaker.state";
+    public static final String REJECTED_METRIC = "circuit.breaker.rejected";
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * Circuit breaker thresholds, which are shared by all dependencies.
+     */
+    public static class Settings {
+        private final int windowSize;
+        private final int minCalls;
+        private final double failureRate;
+        private final double slowCallRate;
+        private final long slowCallDuration;
+        private final long openDuration;
+        private final int halfOpenCalls;
+
+        /**
+         * @param windowCalls       how many recent calls are taken into account
+         * @param minimalCalls      how many calls should be recorded before the circuit may open
+         * @param failureRateShare  share of failed calls which opens the circuit
+         * @param slowRateShare     share of slow calls which opens the circuit
+         * @param slowCallMillis    how long a call should take to be considered slow
+         * @param openMillis        how long an open circuit rejects calls
+         * @param halfOpenCallCount how many trial calls decide whether the circuit closes
+         */
+        public Settings(int windowCalls, int minimalCalls, double failureRateShare, double slowRateShare,
+                        long slowCallMillis, long openMillis, int halfOpenCallCount) {
+            windowSize = Math.max(windowCalls, 1);
+            minCalls = Math.min(Math.max(minimalCalls, 1), windowSize);
+            failureRate = failureRateShare;
+            slowCallRate = slowRateShare;
+            slowCallDuration = slowCallMillis;
+            openDuration = openMillis;
+            halfOpenCalls = Math.max(halfOpenCallCount, 1);
+        }
+    }
+
+    private final String name;
+    private final Settings settings;
+    private final LongSupplier clock;
+    private final boolean[] failures;
+    private final boolean[] slowCalls;
+    private final Counter rejected;
+
+    private State state = State.CLOSED;
+    private int position;
+    private int recorded;
+    private int failureCount;
+    private int slowCount;
+    private long openedAt;
+    private int trialPermits;
+    private int trialSuccesses;
+
+    /**
+     * @param dependencyName a name of the protected dependency for error messages and metric tags
+     * @param breakerSettings thresholds
+     * @param meterRegistry  a registry to publish the circuit state and rejected calls
+     */
+    public CircuitBreaker(@Nonnull String dependencyName, @Nonnull Settings breakerSettings,
+                          @Nonnull MeterRegistry meterRegistry) {
+        this(dependencyName, breakerSettings, meterRegistry, System::currentTimeMillis);
+    }
+
+    CircuitBreaker(@Nonnull String dependencyName, @Nonnull Settings breakerSettings,
+                   @Nonnull MeterRegistry meterRegistry, @Nonnull LongSupplier millisClock) {
+        name = dependencyName;
+        settings = breakerSettings;
+        clock = millisClock;
+        failures = new boolean[settings.windowSize];
+        slowCalls = new boolean[settings.windowSize];
+        Tags tags = Tags.of("name", name);
+        meterRegistry.gauge(STATE_METRIC, tags, this, b -> b.getState().ordinal());
+        rejected = meterRegistry.counter(REJECTED_METRIC, tags);
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private long now() {
+        return clock.getAsLong();
+    }
+
+    private void reset() {
+        position = 0;
+        recorded = 0;
+        failureCount = 0;
+        slowCount = 0;
+    }
+
+    private void open(long now) {
+        state = State.OPEN;
+        openedAt = now;
+        reset();
+    }
+
+    private ServiceUnavailableException reject(long retryAfterMillis) {
+        rejected.increment();
+        return new ServiceUnavailableException("Circuit breaker of " + name + " is open",
+                Math.max(TimeUnit.MILLISECONDS.toSeconds(retryAfterMillis + 999), 1));
+    }
+
+    /**
+     * Checks whether a call is allowed.
+     *
+     * @return call start time to pass to {@link #onResult(long, boolean)}
+     * @throws ServiceUnavailableException if the circuit is open
+     */
+    public synchronized long acquire() {
+        long now = now();
+        if (state == State.OPEN) {
+            long openLeft = openedAt + settings.openDuration - now;
+            if (openLeft > 0) {
+                throw reject(openLeft);
+            }
+            state = State.HALF_OPEN;
+            trialPermits = settings.halfOpenCalls;
+            trialSuccesses = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialPermits <= 0) {
+                throw reject(0);
+            }
+            trialPermits--;
+        }
+        return now;
+    }
+
+    /**
+     * Gives back the permit of an allowed call which did not reach the dependency.
+     */
+    public synchronized void onSkipped() {
+        if (state == State.HALF_OPEN) {
+            trialPermits++;
+        }
+    }
+
+    /**
+     * Records a result of an allowed call.
+     *
+     * @param start  the value which {@link #acquire()} returned
+     * @param failed whether the call failed
+     */
+    public synchronized void onResult(long start, boolean failed) {
+        long now = now();
+        boolean slow = now - start >= settings.slowCallDuration;
+        if (state == State.HALF_OPEN) {
+            if (failed || slow) {
+                open(now);
+            } else if (++trialSuccesses >= settings.halfOpenCalls) {
+                state = State.CLOSED;
+                reset();
+            }
+            return;
+        }
+        if (state != State.CLOSED) {
+            return;
+        }
+        if (recorded == settings.windowSize) {
+            failureCount -= failures[position] ? 1 : 0;
+            slowCount -= slowCalls[position] ? 1 : 0;
+        } else {
+            recorded++;
+        }
+        failures[position] = failed;
+        slowCalls[position] = slow;
+        failureCount += failed ? 1 : 0;
+        slowCount += slow ? 1 : 0;
+        position = (position + 1) % settings.windowSize;
+        if (recorded >= settings.minCalls && (failureCount >= settings.failureRate * recorded
+                || slowCount >= settings.slowCallRate * recorded)) {
+            open(now);
+        }
+    }
+}
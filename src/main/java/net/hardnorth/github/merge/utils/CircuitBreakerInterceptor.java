@@ -0,0 +1,58 @@
+package net.hardnorth.github.merge.utils;
+
+import net.hardnorth.github.merge.exception.CallRejectedException;
+import net.hardnorth.github.merge.exception.ServiceUnavailableException;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+import org.apache.http.HttpStatus;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+
+/**
+ * An OkHttp interceptor which passes calls through a {@link CircuitBreaker} and a {@link Bulkhead}. Connection errors
+ * and 5xx responses are failures, a rejected call fails with {@link CallRejectedException} without reaching the
+ * server. The interceptor should be the last one before the network, so retry backoff and rate limit delays of outer
+ * interceptors are neither timed as slow calls nor spent holding a bulkhead permit.
+ */
+public class CircuitBreakerInterceptor implements Interceptor {
+    private final CircuitBreaker breaker;
+    private final Bulkhead bulkhead;
+
+    public CircuitBreakerInterceptor(@Nonnull CircuitBreaker circuitBreaker, @Nonnull Bulkhead callBulkhead) {
+        breaker = circuitBreaker;
+        bulkhead = callBulkhead;
+    }
+
+    @Nonnull
+    @Override
+    public Response intercept(@Nonnull Chain chain) throws IOException {
+        long start;
+        try {
+            bulkhead.acquire();
+        } catch (ServiceUnavailableException e) {
+            throw new CallRejectedException(e.getMessage(), e.getRetryAfter());
+        }
+        try {
+            start = breaker.acquire();
+        } catch (ServiceUnavailableException e) {
+            bulkhead.release();
+            throw new CallRejectedException(e.getMessage(), e.getRetryAfter());
+        }
+        Response response;
+        try {
+            response = chain.proceed(chain.request());
+        } catch (CallRejectedException e) {
+            // rejected by an inner interceptor, the server was not called
+            breaker.onSkipped();
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            breaker.onResult(start, true);
+            throw e;
+        } finally {
+            bulkhead.release();
+        }
+        breaker.onResult(start, response.code() >= HttpStatus.SC_INTERNAL_SERVER_ERROR);
+        return response;
+    }
+}
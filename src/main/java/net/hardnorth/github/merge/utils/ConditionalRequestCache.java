@@ -0,0 +1,162 @@
+package net.hardnorth.github.merge.utils;
+
+import okhttp3.*;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An OkHttp interceptor which stores bodies of successful GET responses with <code>ETag</code> or
+ * <code>Last-Modified</code> headers, revalidates them with <code>If-None-Match</code> and
+ * <code>If-Modified-Since</code> on the next call and serves the stored body on <code>304 Not Modified</code>. Github
+ * does not count such responses against the rate limit.
+ * <p>
+ * Unlike {@link okhttp3.Cache} a stored response is never served without revalidation. Entries are keyed by URL and
+ * SHA-256 hash of <code>Authorization</code> header, so different installations never share responses and tokens are
+ * not kept in memory longer than their calls. The cache is bounded by total body size and evicts the least recently
+ * used entries.
+ */
+public class ConditionalRequestCache implements Interceptor {
+    private static final String GET = "GET";
+    private static final String NO_STORE = "no-store";
+
+    private static class Entry {
+        private final String etag;
+        private final String lastModified;
+        private final MediaType contentType;
+        private final byte[] body;
+
+        private Entry(String etag, String lastModified, MediaType contentType, byte[] body) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.contentType = contentType;
+            this.body = body;
+        }
+    }
+
+    private final long maxSize;
+    private final long maxEntrySize;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+
+    /**
+     * @param maxCacheSize maximum total size of stored bodies in bytes
+     * @param maxEntrySize maximum size of a single stored body in bytes, larger responses are not cached
+     */
+    public ConditionalRequestCache(long maxCacheSize, long maxEntrySize) {
+        maxSize = maxCacheSize;
+        this.maxEntrySize = Math.min(maxEntrySize, maxCacheSize);
+    }
+
+    @Nonnull
+    private static String key(@Nonnull Request request) {
+        String auth = request.header(HttpHeaders.AUTHORIZATION);
+        return auth == null ? request.url().toString() : DigestUtils.sha256Hex(auth) + ' ' + request.url();
+    }
+
+    @Nullable
+    private synchronized Entry get(String key) {
+        return entries.get(key);
+    }
+
+    private synchronized void put(String key, Entry entry) {
+        remove(key);
+        entries.put(key, entry);
+        size += entry.body.length;
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            size -= iterator.next().getValue().body.length;
+            iterator.remove();
+        }
+    }
+
+    private synchronized void remove(String key) {
+        Entry old = entries.remove(key);
+        if (old != null) {
+            size -= old.body.length;
+        }
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+
+    public synchronized int count() {
+        return entries.size();
+    }
+
+    private static boolean isStorable(Response response) {
+        String cacheControl = response.header(HttpHeaders.CACHE_CONTROL);
+        return cacheControl == null || !cacheControl.contains(NO_STORE);
+    }
+
+    @Nonnull
+    @Override
+    public Response intercept(@Nonnull Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!GET.equals(request.method()) || request.header(HttpHeaders.IF_NONE_MATCH) != null
+                || request.header(HttpHeaders.IF_MODIFIED_SINCE) != null) {
+            return chain.proceed(request);
+        }
+
+        String key = key(request);
+        Entry cached = get(key);
+        if (cached != null) {
+            Request.Builder builder = request.newBuilder();
+            if (cached.etag != null) {
+                builder.header(HttpHeaders.IF_NONE_MATCH, cached.etag);
+            }
+            if (cached.lastModified != null) {
+                builder.header(HttpHeaders.IF_MODIFIED_SINCE, cached.lastModified);
+            }
+            request = builder.build();
+        }
+
+        Response response = chain.proceed(request);
+        if (response.code() == HttpStatus.SC_NOT_MODIFIED && cached != null) {
+            response.close();
+            Response.Builder builder = response.newBuilder()
+                    .code(HttpStatus.SC_OK)
+                    .message("OK")
+                    .header(HttpHeaders.CONTENT_LENGTH, String.valueOf(cached.body.length))
+                    .body(ResponseBody.create(cached.contentType, cached.body));
+            if (cached.contentType != null) {
+                builder.header(HttpHeaders.CONTENT_TYPE, cached.contentType.toString());
+            }
+            return builder.build();
+        }
+
+        if (response.code() != HttpStatus.SC_OK) {
+            return response;
+        }
+
+        String etag = response.header(HttpHeaders.ETAG);
+        String lastModified = response.header(HttpHeaders.LAST_MODIFIED);
+        ResponseBody body = response.body();
+        if ((etag == null && lastModified == null) || body == null || !isStorable(response)
+                || body.contentLength() > maxEntrySize) {
+            remove(key);
+            return response;
+        }
+
+        // a body of unknown length is buffered only up to the entry limit, a larger one is passed on as a stream
+        if (body.source().request(maxEntrySize + 1)) {
+            remove(key);
+            return response;
+        }
+        byte[] bytes;
+        MediaType contentType = body.contentType();
+        try (ResponseBody b = body) {
+            bytes = b.bytes();
+        }
+        put(key, new Entry(etag, lastModified, contentType, bytes));
+        return response.newBuilder().body(ResponseBody.create(contentType, bytes)).build();
+    }
+}
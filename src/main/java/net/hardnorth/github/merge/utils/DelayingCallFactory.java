@@ -0,0 +1,166 @@
+package net.hardnorth.github.merge.utils;
+
+import net.hardnorth.github.merge.exception.CallDelayedException;
+import okhttp3.*;
+import okio.Timeout;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Creates OkHttp calls which wait for retries and rate limits outside of the interceptor chain when they are enqueued.
+ * Interceptors throw {@link CallDelayedException} for a request of an enqueued call instead of sleeping on a dispatcher
+ * thread, and the call is enqueued again after the delay. Blocking calls are executed as is.
+ */
+public class DelayingCallFactory implements Call.Factory {
+
+    /**
+     * Marks a request of an enqueued call and keeps its retry state between enqueued attempts.
+     */
+    static final class Attempts {
+        private int count;
+        private long deadline = -1;
+
+        /**
+         * @return <code>true</code> if the call has not started yet, the deadline is set then
+         */
+        synchronized boolean start(long now, long deadlineMillis) {
+            if (deadline >= 0) {
+                return false;
+            }
+            deadline = now + deadlineMillis;
+            return true;
+        }
+
+        synchronized int next() {
+            return ++count;
+        }
+
+        synchronized long getDeadline() {
+            return deadline;
+        }
+    }
+
+    private final OkHttpClient client;
+
+    public DelayingCallFactory(@Nonnull OkHttpClient httpClient) {
+        client = httpClient;
+    }
+
+    /**
+     * @param request a request in an interceptor chain
+     * @return retry state if the request belongs to an enqueued call, which must not wait in the chain
+     */
+    @Nullable
+    static Attempts attempts(@Nonnull Request request) {
+        return request.tag(Attempts.class);
+    }
+
+    @Nonnull
+    @Override
+    public Call newCall(@Nonnull Request request) {
+        return new DelayingCall(request);
+    }
+
+    private class DelayingCall implements Call {
+        private final Request request;
+        private final AtomicBoolean executed = new AtomicBoolean();
+        private volatile Call current;
+        private volatile boolean canceled;
+
+        private DelayingCall(Request originalRequest) {
+            request = originalRequest;
+        }
+
+        @Nonnull
+        @Override
+        public Request request() {
+            return request;
+        }
+
+        private void markExecuted() {
+            if (!executed.compareAndSet(false, true)) {
+                throw new IllegalStateException("Already Executed");
+            }
+        }
+
+        @Nonnull
+        @Override
+        public Response execute() throws IOException {
+            markExecuted();
+            Call call = client.newCall(request);
+            current = call;
+            if (canceled) {
+                call.cancel();
+            }
+            return call.execute();
+        }
+
+        private void start(Request attemptRequest, Callback callback) {
+            Call call = client.newCall(attemptRequest);
+            current = call;
+            if (canceled) {
+                call.cancel();
+            }
+            call.enqueue(new Callback() {
+                @Override
+                public void onFailure(@Nonnull Call c, @Nonnull IOException e) {
+                    if (e instanceof CallDelayedException && !canceled) {
+                        CompletableFuture.delayedExecutor(((CallDelayedException) e).getDelay(), TimeUnit.MILLISECONDS)
+                                .execute(() -> start(attemptRequest, callback));
+                        return;
+                    }
+                    callback.onFailure(DelayingCall.this, e);
+                }
+
+                @Override
+                public void onResponse(@Nonnull Call c, @Nonnull Response response) throws IOException {
+                    callback.onResponse(DelayingCall.this, response);
+                }
+            });
+        }
+
+        @Override
+        public void enqueue(@Nonnull Callback responseCallback) {
+            markExecuted();
+            start(request.newBuilder().tag(Attempts.class, new Attempts()).build(), responseCallback);
+        }
+
+        @Override
+        public void cancel() {
+            canceled = true;
+            Call call = current;
+            if (call != null) {
+                call.cancel();
+            }
+        }
+
+        @Override
+        public boolean isExecuted() {
+            return executed.get();
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return canceled;
+        }
+
+        // every attempt is limited by the client call timeout, delays between them are limited by interceptors
+        @Nonnull
+        @Override
+        public Timeout timeout() {
+            return Timeout.NONE;
+        }
+
+        @SuppressWarnings("MethodDoesntCallSuperMethod")
+        @Nonnull
+        @Override
+        public Call clone() {
+            return new DelayingCall(request);
+        }
+    }
+}
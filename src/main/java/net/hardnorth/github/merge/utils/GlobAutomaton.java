@@ -0,0 +1,489 @@
+package net.hardnorth.github.merge.utils;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Matches a path against a list of glob rules at once and tells whether the last matched rule is an including one.
+ * <p>
+ * All rules are compiled into a single Thompson NFA which is lazily converted into a DFA, so a path is checked in one
+ * pass over its characters regardless of the rule count. Every DFA state knows the highest rule which still can match,
+ * that lets the evaluation stop early: on a dead state, or when the highest live rule is inside a trailing
+ * <code>**</code>, which matches any remainder of the path.
+ * <p>
+ * Glob syntax and semantics are exactly the same as in {@link java.nio.file.FileSystem#getPathMatcher(String)} of the
+ * default Unix file system, including exceptions thrown on invalid patterns. Bracket expressions are converted into
+ * the same regular expression classes the JDK uses, so their corner cases behave identically.
+ * <p>
+ * The class is thread-safe. DFA states and transitions are cached up to {@link #MAX_STATES} states, after that new
+ * transitions are computed on every call.
+ */
+class GlobAutomaton {
+    static final int MAX_STATES = 2048;
+
+    private static final int ASCII = 128;
+    private static final char EOL = 0;
+
+    private enum Wildcard {
+        // '?' and '*' do not cross directory boundaries, '**' behaves like regex '.*'
+        ANY_CHAR, STAR, DOUBLE_STAR
+    }
+
+    // NFA node types
+    private static final int CHAR = 0;
+    private static final int ANY_BUT_SEPARATOR = 1;
+    private static final int ANY_BUT_LINE_TERMINATOR = 2;
+    private static final int CLASS = 3;
+    private static final int SPLIT = 4;
+    private static final int ACCEPT = 5;
+
+    private static class Node {
+        private final int type;
+        private final int rule;
+        private int codePoint;
+        private CharClass charClass;
+        private int next = -1;
+        private int alternative = -1;
+        // the node is a '**' loop, after which the rule accepts
+        private boolean universal;
+
+        private Node(int nodeType, int ruleIndex) {
+            type = nodeType;
+            rule = ruleIndex;
+        }
+
+        private boolean matches(int c) {
+            switch (type) {
+                case CHAR:
+                    return c == codePoint;
+                case ANY_BUT_SEPARATOR:
+                    return c != '/';
+                case ANY_BUT_LINE_TERMINATOR:
+                    return !isLineTerminator(c);
+                case CLASS:
+                    return charClass.matches(c);
+                default:
+                    return false;
+            }
+        }
+    }
+
+    private static class CharClass {
+        private final Pattern pattern;
+        private final boolean[] ascii = new boolean[ASCII];
+
+        private CharClass(String regex) {
+            pattern = Pattern.compile(regex);
+            for (int i = 0; i < ASCII; i++) {
+                ascii[i] = pattern.matcher(String.valueOf((char) i)).matches();
+            }
+        }
+
+        private boolean matches(int c) {
+            if (c < ASCII) {
+                return ascii[c];
+            }
+            return pattern.matcher(new String(Character.toChars(c))).matches();
+        }
+    }
+
+    static final int NO_MATCH = -1;
+    private static final int UNDECIDED = -2;
+
+    private static class State {
+        private final int[] nodes;
+        // the last rule which accepts if the path ends here
+        private final int accepted;
+        // the last rule which matches whatever the rest of the path is, if it is already known
+        private final int decision;
+        private final AtomicReferenceArray<State> asciiTransitions = new AtomicReferenceArray<>(ASCII);
+        private final Map<Integer, State> transitions = new ConcurrentHashMap<>();
+
+        private State(int[] consumingNodes, int acceptedRule, int earlyDecision) {
+            nodes = consumingNodes;
+            accepted = acceptedRule;
+            decision = earlyDecision;
+        }
+    }
+
+    private final List<Node> nfa = new ArrayList<>();
+    private final boolean[] includes;
+    private final Map<BitSet, State> states = new ConcurrentHashMap<>();
+    private final State start;
+
+    /**
+     * @param patterns glob patterns in rule order
+     * @param include  whether a rule with the same index is an including (<code>true</code>) or excluding one
+     * @throws PatternSyntaxException if a pattern is invalid
+     */
+    GlobAutomaton(@Nonnull List<String> patterns, @Nonnull boolean[] include) {
+        includes = include.clone();
+        BitSet startNodes = new BitSet();
+        for (int i = 0; i < patterns.size(); i++) {
+            startNodes.set(build(tokenize(patterns.get(i)), i, node(ACCEPT, i)));
+        }
+        start = state(closure(startNodes));
+    }
+
+    // the same characters, which a regular expression '.' does not match
+    static boolean isLineTerminator(int c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == 0x2028 || c == 0x2029;
+    }
+
+    private static char next(String glob, int i) {
+        if (i < glob.length()) {
+            return glob.charAt(i);
+        }
+        return EOL;
+    }
+
+    // a regular expression treats a surrogate pair as a single code point, even if the pair was escaped in the glob
+    private static void addLiteral(List<Object> tokens, char c) {
+        int last = tokens.size() - 1;
+        if (Character.isLowSurrogate(c) && last >= 0 && tokens.get(last) instanceof Integer) {
+            int previous = (Integer) tokens.get(last);
+            if (previous <= Character.MAX_VALUE && Character.isHighSurrogate((char) previous)) {
+                tokens.set(last, Character.toCodePoint((char) previous, c));
+                return;
+            }
+        }
+        tokens.add((int) c);
+    }
+
+    /*
+     * Parses a glob in the same way as sun.nio.fs.Globs does, but instead of a regular expression produces a token
+     * list. A token is a literal code point, a wildcard, a character class or a group: a list of alternative token
+     * lists.
+     */
+    private static List<Object> tokenize(String glob) {
+        List<Object> tokens = new ArrayList<>();
+        List<List<Object>> group = null;
+        List<Object> current = tokens;
+        int i = 0;
+        while (i < glob.length()) {
+            char c = glob.charAt(i++);
+            switch (c) {
+                case '\\':
+                    if (i == glob.length()) {
+                        throw new PatternSyntaxException("No character to escape", glob, i - 1);
+                    }
+                    addLiteral(current, glob.charAt(i++));
+                    break;
+                case '[':
+                    StringBuilder regex = new StringBuilder("[[^/]&&[");
+                    if (next(glob, i) == '^') {
+                        regex.append("\\^");
+                        i++;
+                    } else {
+                        if (next(glob, i) == '!') {
+                            regex.append('^');
+                            i++;
+                        }
+                        if (next(glob, i) == '-') {
+                            regex.append('-');
+                            i++;
+                        }
+                    }
+                    boolean hasRangeStart = false;
+                    char last = 0;
+                    while (i < glob.length()) {
+                        c = glob.charAt(i++);
+                        if (c == ']') {
+                            break;
+                        }
+                        if (c == '/') {
+                            throw new PatternSyntaxException("Explicit 'name separator' in class", glob, i - 1);
+                        }
+                        if (c == '\\' || c == '[' || c == '&' && next(glob, i) == '&') {
+                            regex.append('\\');
+                        }
+                        regex.append(c);
+                        if (c == '-') {
+                            if (!hasRangeStart) {
+                                throw new PatternSyntaxException("Invalid range", glob, i - 1);
+                            }
+                            if ((c = next(glob, i++)) == EOL || c == ']') {
+                                break;
+                            }
+                            if (c < last) {
+                                throw new PatternSyntaxException("Invalid range", glob, i - 3);
+                            }
+                            regex.append(c);
+                            hasRangeStart = false;
+                        } else {
+                            hasRangeStart = true;
+                            last = c;
+                        }
+                    }
+                    if (c != ']') {
+                        throw new PatternSyntaxException("Missing ']", glob, i - 1);
+                    }
+                    current.add(new CharClass(regex.append("]]").toString()));
+                    break;
+                case '{':
+                    if (group != null) {
+                        throw new PatternSyntaxException("Cannot nest groups", glob, i - 1);
+                    }
+                    group = new ArrayList<>();
+                    current = new ArrayList<>();
+                    group.add(current);
+                    tokens.add(group);
+                    break;
+                case '}':
+                    if (group != null) {
+                        group = null;
+                        current = tokens;
+                    } else {
+                        addLiteral(current, c);
+                    }
+                    break;
+                case ',':
+                    if (group != null) {
+                        current = new ArrayList<>();
+                        group.add(current);
+                    } else {
+                        addLiteral(current, c);
+                    }
+                    break;
+                case '*':
+                    if (next(glob, i) == '*') {
+                        current.add(Wildcard.DOUBLE_STAR);
+                        i++;
+                    } else {
+                        current.add(Wildcard.STAR);
+                    }
+                    break;
+                case '?':
+                    current.add(Wildcard.ANY_CHAR);
+                    break;
+                default:
+                    addLiteral(current, c);
+            }
+        }
+        if (group != null) {
+            throw new PatternSyntaxException("Missing '}", glob, i - 1);
+        }
+        return tokens;
+    }
+
+    private int node(int type, int rule) {
+        nfa.add(new Node(type, rule));
+        return nfa.size() - 1;
+    }
+
+    private int consuming(int type, int rule, int next) {
+        int id = node(type, rule);
+        nfa.get(id).next = next;
+        return id;
+    }
+
+    private int split(int rule, int first, int second) {
+        int id = node(SPLIT, rule);
+        Node split = nfa.get(id);
+        split.next = first;
+        split.alternative = second;
+        return id;
+    }
+
+    private boolean accepts(int node, int rule) {
+        BitSet nodes = new BitSet();
+        nodes.set(node);
+        BitSet closure = closure(nodes);
+        for (int n = closure.nextSetBit(0); n >= 0; n = closure.nextSetBit(n + 1)) {
+            if (nfa.get(n).type == ACCEPT && nfa.get(n).rule == rule) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // builds NFA nodes for tokens backwards, so every token is linked to already built continuation
+    private int build(List<Object> tokens, int rule, int next) {
+        int current = next;
+        for (int i = tokens.size() - 1; i >= 0; i--) {
+            Object token = tokens.get(i);
+            if (token instanceof Integer) {
+                current = consuming(CHAR, rule, current);
+                nfa.get(current).codePoint = (Integer) token;
+            } else if (token instanceof CharClass) {
+                current = consuming(CLASS, rule, current);
+                nfa.get(current).charClass = (CharClass) token;
+            } else if (token == Wildcard.ANY_CHAR) {
+                current = consuming(ANY_BUT_SEPARATOR, rule, current);
+            } else if (token instanceof Wildcard) {
+                int type = token == Wildcard.STAR ? ANY_BUT_SEPARATOR : ANY_BUT_LINE_TERMINATOR;
+                boolean universal = type == ANY_BUT_LINE_TERMINATOR && accepts(current, rule);
+                int loop = split(rule, -1, current);
+                int body = consuming(type, rule, loop);
+                nfa.get(loop).next = body;
+                nfa.get(body).universal = universal;
+                current = loop;
+            } else {
+                @SuppressWarnings("unchecked")
+                List<List<Object>> alternatives = (List<List<Object>>) token;
+                int alternative = build(alternatives.get(alternatives.size() - 1), rule, current);
+                for (int j = alternatives.size() - 2; j >= 0; j--) {
+                    alternative = split(rule, build(alternatives.get(j), rule, current), alternative);
+                }
+                current = alternative;
+            }
+        }
+        return current;
+    }
+
+    // follows SPLIT nodes and returns consuming and ACCEPT nodes only
+    private BitSet closure(BitSet nodes) {
+        BitSet result = new BitSet();
+        BitSet visited = new BitSet();
+        int[] stack = new int[nfa.size()];
+        int size = 0;
+        for (int n = nodes.nextSetBit(0); n >= 0; n = nodes.nextSetBit(n + 1)) {
+            visited.set(n);
+            stack[size++] = n;
+        }
+        while (size > 0) {
+            Node node = nfa.get(stack[--size]);
+            if (node.type != SPLIT) {
+                result.set(stack[size]);
+                continue;
+            }
+            if (!visited.get(node.next)) {
+                visited.set(node.next);
+                stack[size++] = node.next;
+            }
+            if (!visited.get(node.alternative)) {
+                visited.set(node.alternative);
+                stack[size++] = node.alternative;
+            }
+        }
+        return result;
+    }
+
+    private State state(BitSet nodes) {
+        State existing = states.get(nodes);
+        if (existing != null) {
+            return existing;
+        }
+        int[] consuming = new int[nodes.cardinality()];
+        int size = 0;
+        int accepted = NO_MATCH;
+        int maxLive = NO_MATCH;
+        boolean universal = false;
+        for (int n = nodes.nextSetBit(0); n >= 0; n = nodes.nextSetBit(n + 1)) {
+            Node node = nfa.get(n);
+            if (node.rule > maxLive) {
+                maxLive = node.rule;
+                universal = false;
+            }
+            universal |= node.universal;
+            if (node.type == ACCEPT) {
+                accepted = Math.max(accepted, node.rule);
+            } else {
+                consuming[size++] = n;
+            }
+        }
+        int[] stateNodes = new int[size];
+        System.arraycopy(consuming, 0, stateNodes, 0, size);
+
+        int decision = UNDECIDED;
+        if (maxLive < 0 || universal) {
+            decision = maxLive;
+        }
+        State state = new State(stateNodes, accepted, decision);
+        if (states.size() >= MAX_STATES) {
+            return state;
+        }
+        existing = states.putIfAbsent(nodes, state);
+        return existing == null ? state : existing;
+    }
+
+    private State step(State state, int c) {
+        State next = c < ASCII ? state.asciiTransitions.get(c) : state.transitions.get(c);
+        if (next != null) {
+            return next;
+        }
+        BitSet targets = new BitSet();
+        for (int n : state.nodes) {
+            Node node = nfa.get(n);
+            if (node.matches(c)) {
+                targets.set(node.next);
+            }
+        }
+        next = state(closure(targets));
+        if (states.size() < MAX_STATES) {
+            if (c < ASCII) {
+                state.asciiTransitions.set(c, next);
+            } else {
+                state.transitions.put(c, next);
+            }
+        }
+        return next;
+    }
+
+    private static boolean hasLineTerminator(CharSequence path, int from) {
+        for (int i = from; i < path.length(); i++) {
+            if (isLineTerminator(path.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Matches a path string normalized on the fly in the same way as {@link java.io.File} and Unix
+     * {@link java.nio.file.Path} do: repeated separators are collapsed and a trailing separator is ignored, unless the
+     * path consists of separators only.
+     *
+     * @param path a path string
+     * @return <code>true</code> if the last rule which matches the path is an including one
+     */
+    boolean test(@Nonnull CharSequence path) {
+        int rule = match(path);
+        return rule != NO_MATCH && includes[rule];
+    }
+
+    /**
+     * The same as {@link #test(CharSequence)}, but tells which rule matched.
+     *
+     * @param path a path string
+     * @return index of the last rule which matches the path or {@link #NO_MATCH}
+     */
+    int match(@Nonnull CharSequence path) {
+        State state = start;
+        int length = path.length();
+        boolean lineTerminatorAhead = false;
+        int i = 0;
+        while (true) {
+            if (state.decision != UNDECIDED && !lineTerminatorAhead) {
+                if (state.nodes.length == 0 || !hasLineTerminator(path, i)) {
+                    return state.decision;
+                }
+                lineTerminatorAhead = true;
+            }
+            if (i >= length) {
+                return state.accepted;
+            }
+            char c = path.charAt(i++);
+            int codePoint = c;
+            if (c == '/') {
+                int separatorStart = i - 1;
+                while (i < length && path.charAt(i) == '/') {
+                    i++;
+                }
+                if (i >= length && separatorStart > 0) {
+                    return state.accepted;
+                }
+            } else if (Character.isHighSurrogate(c) && i < length && Character.isLowSurrogate(path.charAt(i))) {
+                codePoint = Character.toCodePoint(c, path.charAt(i++));
+            }
+            state = step(state, codePoint);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package net.hardnorth.github.merge.utils;
+
+import javax.annotation.Nonnull;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Wraps a client interface, so every remote call goes through a {@link CircuitBreaker} and a {@link Bulkhead}. Objects
+ * returned as one of the guarded types, like transactions or lazily loaded results, are wrapped the same way, since
+ * they make remote calls too. Only exceptions accepted by the failure predicate count as failures.
+ */
+public class GuardedProxy implements InvocationHandler {
+    private final Object target;
+    private final CircuitBreaker breaker;
+    private final Bulkhead bulkhead;
+    private final Set<String> localMethods;
+    private final Map<Class<?>, Set<String>> guardedTypes;
+    private final Predicate<Throwable> failure;
+
+    private GuardedProxy(Object client, CircuitBreaker circuitBreaker, Bulkhead callBulkhead, Set<String> local,
+                         Map<Class<?>, Set<String>> types, Predicate<Throwable> isFailure) {
+        target = client;
+        breaker = circuitBreaker;
+        bulkhead = callBulkhead;
+        localMethods = local;
+        guardedTypes = types;
+        failure = isFailure;
+    }
+
+    /**
+     * @param type           client interface
+     * @param client         client to wrap
+     * @param circuitBreaker a circuit breaker of the dependency
+     * @param callBulkhead   a bulkhead of the dependency
+     * @param localMethods   names of methods which do not make remote calls and are not guarded
+     * @param <T>            client type
+     * @return guarded client, any exception it throws counts as a failure
+     */
+    @Nonnull
+    public static <T> T create(@Nonnull Class<T> type, @Nonnull T client, @Nonnull CircuitBreaker circuitBreaker,
+                               @Nonnull Bulkhead callBulkhead, @Nonnull Set<String> localMethods) {
+        return create(type, client, circuitBreaker, callBulkhead, Map.of(type, localMethods), e -> true);
+    }
+
+    /**
+     * @param type           client interface, must be one of the guarded types
+     * @param client         client to wrap
+     * @param circuitBreaker a circuit breaker of the dependency
+     * @param callBulkhead   a bulkhead of the dependency
+     * @param guardedTypes   interfaces to guard, with names of their methods which do not make remote calls
+     * @param failure        tells which exceptions are failures of the dependency, rather than of the call
+     * @param <T>            client type
+     * @return guarded client
+     */
+    @Nonnull
+    public static <T> T create(@Nonnull Class<T> type, @Nonnull T client, @Nonnull CircuitBreaker circuitBreaker,
+                               @Nonnull Bulkhead callBulkhead, @Nonnull Map<Class<?>, Set<String>> guardedTypes,
+                               @Nonnull Predicate<Throwable> failure) {
+        Set<String> localMethods = guardedTypes.get(type);
+        if (localMethods == null) {
+            throw new IllegalArgumentException("Type '" + type.getName() + "' is not guarded");
+        }
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                new GuardedProxy(client, circuitBreaker, callBulkhead, localMethods, guardedTypes, failure)));
+    }
+
+    private Object invokeTarget(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private Object invokeGuarded(Method method, Object[] args) throws Throwable {
+        bulkhead.acquire();
+        try {
+            long start = breaker.acquire();
+            boolean failed = false;
+            try {
+                return invokeTarget(method, args);
+            } catch (Throwable e) {
+                failed = failure.test(e);
+                throw e;
+            } finally {
+                breaker.onResult(start, failed);
+            }
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    private Object guard(Class<?> type, Object result) {
+        if (result == null || !guardedTypes.containsKey(type)) {
+            return result;
+        }
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                new GuardedProxy(result, breaker, bulkhead, guardedTypes.get(type), guardedTypes, failure));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return invokeTarget(method, args);
+            }
+        }
+        Object result = localMethods.contains(method.getName()) ? invokeTarget(method, args)
+                : invokeGuarded(method, args);
+        return guard(method.getReturnType(), result);
+    }
+}
@@ -0,0 +1,58 @@
+package net.hardnorth.github.merge.utils;
+
+import javax.annotation.Nonnull;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Validates HMAC signatures with a single secret key. Initialized {@link Mac} instances are not thread-safe, so they
+ * are kept in a pool and each one is used by a single thread at a time. The pool grows up to the number of concurrent
+ * validations.
+ */
+public class HmacSignature {
+    private final SecretKeySpec key;
+    private final Queue<Mac> macs = new ConcurrentLinkedQueue<>();
+
+    public HmacSignature(@Nonnull String algorithm, @Nonnull byte[] secret) {
+        key = new SecretKeySpec(secret, algorithm);
+        macs.add(newMac());
+    }
+
+    private Mac newMac() {
+        Mac mac;
+        try {
+            mac = Mac.getInstance(key.getAlgorithm());
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("Unable to find " + key.getAlgorithm() + " algorithm:", e);
+        }
+        try {
+            mac.init(key);
+        } catch (InvalidKeyException e) {
+            throw new RuntimeException("Invalid key:", e);
+        }
+        return mac;
+    }
+
+    /**
+     * @param signature expected signature
+     * @param body      signed data
+     * @return <code>true</code> if the signature matches the data
+     */
+    public boolean validate(@Nonnull byte[] signature, @Nonnull byte[] body) {
+        Mac mac = macs.poll();
+        if (mac == null) {
+            mac = newMac();
+        }
+        try {
+            // 'doFinal' resets the instance, so it is ready for the next data
+            return MessageDigest.isEqual(signature, mac.doFinal(body));
+        } finally {
+            macs.offer(mac);
+        }
+    }
+}
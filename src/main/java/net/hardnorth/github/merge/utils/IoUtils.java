@@ -74,4 +74,38 @@ public class IoUtils {
 
         return baos.toByteArray();
     }
+
+    /**
+     * Reads an <code>InputStream</code> into an array of bytes, but stops reading as soon as the stream turns out to be
+     * longer than the limit.
+     *
+     * @param is         a stream to read from
+     * @param bufferSize size of read buffer in bytes
+     * @param maxSize    maximum number of bytes to read
+     * @return the result or <code>null</code> if the stream is longer than <code>maxSize</code>
+     */
+    @Nullable
+    public static byte[] readInputStreamToBytes(@Nullable final InputStream is, final int bufferSize,
+                                                final long maxSize) {
+        if (is == null) {
+            return null;
+        }
+        ReadableByteChannel channel = Channels.newChannel(is);
+        ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try {
+            int read;
+            while ((read = channel.read(buffer)) >= 0) {
+                if (baos.size() + (long) read > maxSize) {
+                    return null;
+                }
+                baos.write(buffer.array(), 0, read);
+                buffer.clear();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        return baos.toByteArray();
+    }
 }
@@ -0,0 +1,92 @@
+package net.hardnorth.github.merge.utils;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * An iterable over a paginated result which loads the next page only when an iterator reaches the end of already
+ * loaded ones. Loaded elements are kept, so the result can be iterated many times, but every page is requested once.
+ * A lock guards page loading instead of a monitor, so a virtual thread waiting for a page does not pin its carrier.
+ *
+ * @param <T> element type
+ */
+public class PagedIterable<T> implements Iterable<T> {
+    private final List<T> elements;
+    private final Lock lock = new ReentrantLock();
+    private Supplier<List<T>> nextPage;
+
+    /**
+     * @param firstPage elements of already loaded first page
+     * @param pages     loads the next page on every call and returns <code>null</code> if there are no more pages,
+     *                  <code>null</code> means there is only one page
+     */
+    public PagedIterable(@Nonnull List<T> firstPage, @Nullable Supplier<List<T>> pages) {
+        elements = new ArrayList<>(firstPage);
+        nextPage = pages;
+    }
+
+    private boolean has(int index) {
+        lock.lock();
+        try {
+            while (elements.size() <= index && nextPage != null) {
+                List<T> page = nextPage.get();
+                if (page == null) {
+                    nextPage = null;
+                } else {
+                    elements.addAll(page);
+                }
+            }
+            return elements.size() > index;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private T get(int index) {
+        lock.lock();
+        try {
+            return elements.get(index);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Nonnull
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return has(index);
+            }
+
+            @Override
+            public T next() {
+                if (!has(index)) {
+                    throw new NoSuchElementException();
+                }
+                return get(index++);
+            }
+        };
+    }
+
+    // does not load pages, just shows what is already loaded
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            return nextPage == null ? elements.toString() : elements + "...";
+        } finally {
+            lock.unlock();
+        }
+    }
+}
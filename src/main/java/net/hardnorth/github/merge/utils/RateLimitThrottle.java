@@ -0,0 +1,194 @@
+package net.hardnorth.github.merge.utils;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import net.hardnorth.github.merge.exception.CallDelayedException;
+import net.hardnorth.github.merge.exception.RateLimitException;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * An OkHttp interceptor which tracks Github rate limit budget of every token by <code>X-RateLimit-*</code> response
+ * headers. When the remaining budget drops below the reserve, GET requests are spaced evenly until the limit reset, so
+ * the rest of the budget is left for calls which change data. No calls are made until the reset when the budget is
+ * exhausted or until <code>Retry-After</code> when Github reports a secondary rate limit. A call which would have to
+ * wait longer than the maximum delay fails with {@link RateLimitException} without reaching Github. A call enqueued
+ * through {@link DelayingCallFactory} does not sleep on a dispatcher thread, it fails with {@link CallDelayedException}
+ * and is enqueued again after the delay.
+ */
+public class RateLimitThrottle implements Interceptor {
+    public static final String REMAINING_METRIC = "github.rate.limit.remaining";
+    public static final String DELAY_METRIC = "github.rate.limit.delay";
+
+    private static final String GET = "GET";
+    private static final String LIMIT_HEADER = "X-RateLimit-Limit";
+    private static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+    private static final String RESET_HEADER = "X-RateLimit-Reset";
+    private static final int MAX_TRACKED_TOKENS = 1000;
+
+    private static class Budget {
+        private long limit;
+        private long remaining = -1;
+        private long resetAt;
+        private long blockedUntil;
+        private long nextSlot;
+    }
+
+    private final double reserve;
+    private final long maxDelay;
+    private final LongSupplier clock;
+    private final Timer delays;
+    private final LinkedHashMap<String, Budget> budgets = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Budget> eldest) {
+            return size() > MAX_TRACKED_TOKENS;
+        }
+    };
+
+    /**
+     * @param reserveShare  share of the rate limit, below which GET requests are spaced evenly until the limit reset
+     * @param maxDelayValue how long a call may wait for the rate limit
+     * @param maxDelayUnit  time unit of the maximum delay
+     * @param meterRegistry a registry to publish the lowest remaining budget and call delays
+     */
+    public RateLimitThrottle(double reserveShare, long maxDelayValue, @Nonnull TimeUnit maxDelayUnit,
+                             @Nonnull MeterRegistry meterRegistry) {
+        this(reserveShare, maxDelayValue, maxDelayUnit, meterRegistry, System::currentTimeMillis);
+    }
+
+    RateLimitThrottle(double reserveShare, long maxDelayValue, @Nonnull TimeUnit maxDelayUnit,
+                      @Nonnull MeterRegistry meterRegistry, @Nonnull LongSupplier millisClock) {
+        reserve = reserveShare;
+        maxDelay = maxDelayUnit.toMillis(maxDelayValue);
+        clock = millisClock;
+        meterRegistry.gauge(REMAINING_METRIC, this, RateLimitThrottle::remaining);
+        delays = meterRegistry.timer(DELAY_METRIC);
+    }
+
+    @Nonnull
+    private static String key(@Nonnull Request request) {
+        String auth = request.header(HttpHeaders.AUTHORIZATION);
+        return auth == null ? "" : auth;
+    }
+
+    @Nullable
+    private static Long parseLong(@Nullable String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the lowest remaining budget among tokens whose rate limit window is not over, {@link Double#NaN} if
+     * there are no such tokens
+     */
+    public synchronized double remaining() {
+        long now = clock.getAsLong();
+        long result = -1;
+        for (Budget budget : budgets.values()) {
+            if (budget.remaining >= 0 && budget.resetAt > now && (result < 0 || budget.remaining < result)) {
+                result = budget.remaining;
+            }
+        }
+        return result < 0 ? Double.NaN : result;
+    }
+
+    // a call which may not wait gets its delay without taking the slot, it takes one when it is made again
+    private synchronized long acquire(String key, boolean urgent, boolean wait, long now) throws RateLimitException {
+        Budget budget = budgets.get(key);
+        if (budget == null) {
+            return 0;
+        }
+        long start = Math.max(budget.blockedUntil, now);
+        boolean window = budget.remaining >= 0 && budget.resetAt > now;
+        if (window && budget.remaining == 0) {
+            start = Math.max(start, budget.resetAt);
+        }
+        long slot = start;
+        boolean paced = window && !urgent && budget.remaining > 0 && budget.remaining <= budget.limit * reserve;
+        if (paced) {
+            slot = Math.max(start, budget.nextSlot);
+        }
+        long delay = slot - now;
+        if (delay > maxDelay) {
+            throw new RateLimitException("Github rate limit is exhausted, the call would wait for "
+                    + TimeUnit.MILLISECONDS.toSeconds(delay) + " seconds", TimeUnit.MILLISECONDS.toSeconds(delay + 999));
+        }
+        if (delay > 0 && !wait) {
+            return delay;
+        }
+        if (paced) {
+            budget.nextSlot = slot + (budget.resetAt - now) / budget.remaining;
+        }
+        if (window && budget.remaining > 0) {
+            // the call is counted right away, so concurrent calls do not spend the same budget
+            budget.remaining--;
+        }
+        return delay;
+    }
+
+    private synchronized void update(String key, Response response, long now) {
+        Long limit = parseLong(response.header(LIMIT_HEADER));
+        Long remaining = parseLong(response.header(REMAINING_HEADER));
+        Long reset = parseLong(response.header(RESET_HEADER));
+        Long retryAfter = parseLong(response.header(HttpHeaders.RETRY_AFTER));
+        boolean limited = response.code() == HttpStatus.SC_FORBIDDEN || response.code() == 429;
+        if ((limit == null || remaining == null || reset == null) && !(limited && retryAfter != null)) {
+            return;
+        }
+        Budget budget = budgets.computeIfAbsent(key, k -> new Budget());
+        if (limit != null && remaining != null && reset != null) {
+            budget.limit = limit;
+            budget.remaining = remaining;
+            budget.resetAt = TimeUnit.SECONDS.toMillis(reset);
+        }
+        if (limited && retryAfter != null) {
+            budget.blockedUntil = now + TimeUnit.SECONDS.toMillis(retryAfter);
+        }
+    }
+
+    void sleep(long millis) throws InterruptedException {
+        Thread.sleep(millis);
+    }
+
+    @Nonnull
+    @Override
+    public Response intercept(@Nonnull Chain chain) throws IOException {
+        Request request = chain.request();
+        String key = key(request);
+        boolean enqueued = DelayingCallFactory.attempts(request) != null;
+        long delay = acquire(key, !GET.equals(request.method()), !enqueued, clock.getAsLong());
+        if (delay > 0) {
+            delays.record(delay, TimeUnit.MILLISECONDS);
+            if (enqueued) {
+                throw new CallDelayedException("Github rate limit delays the call for " + delay + " ms", delay);
+            }
+            try {
+                sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for Github rate limit");
+            }
+        }
+        Response response = chain.proceed(request);
+        update(key, response, clock.getAsLong());
+        return response;
+    }
+}
@@ -0,0 +1,167 @@
+package net.hardnorth.github.merge.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.hardnorth.github.merge.exception.CallDelayedException;
+import net.hardnorth.github.merge.exception.CallRejectedException;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.apache.http.HttpStatus;
+import org.jboss.logging.Logger;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * An OkHttp interceptor which retries failed Github calls with exponential backoff and full jitter. Safe methods
+ * (GET, HEAD) are retried on any connection error and on 5xx responses. Other methods, like merges and reviews, are
+ * retried only if the connection was not established, so a request which could have reached Github is never repeated.
+ * No retry is scheduled past the deadline of the call. A call enqueued through {@link DelayingCallFactory} does not
+ * sleep in the interceptor, it fails with {@link CallDelayedException} and is enqueued again after the backoff delay.
+ */
+public class RetryInterceptor implements Interceptor {
+    private static final Logger LOGGER = Logger.getLogger(RetryInterceptor.class);
+
+    public static final String ATTEMPT_METRIC = "github.call.attempts";
+
+    private static final Set<String> SAFE_METHODS = Set.of("GET", "HEAD");
+    private static final Set<Integer> RETRY_STATUSES = Set.of(HttpStatus.SC_INTERNAL_SERVER_ERROR,
+            HttpStatus.SC_BAD_GATEWAY, HttpStatus.SC_SERVICE_UNAVAILABLE, HttpStatus.SC_GATEWAY_TIMEOUT);
+
+    private final int maxAttempts;
+    private final long baseDelay;
+    private final long maxDelay;
+    private final long deadline;
+    private final LongSupplier clock;
+    private final Counter firstAttempts;
+    private final Counter retries;
+
+    /**
+     * @param maxAttemptCount  maximum number of attempts including the first one
+     * @param baseDelayMillis  upper bound of the first backoff delay, it doubles on every retry
+     * @param maxDelayMillis   upper bound of a single backoff delay
+     * @param deadlineValue    how long all attempts of a call may take
+     * @param deadlineUnit     time unit of the deadline
+     * @param meterRegistry    a registry to count attempts
+     */
+    public RetryInterceptor(int maxAttemptCount, long baseDelayMillis, long maxDelayMillis, long deadlineValue,
+                            @Nonnull TimeUnit deadlineUnit, @Nonnull MeterRegistry meterRegistry) {
+        this(maxAttemptCount, baseDelayMillis, maxDelayMillis, deadlineValue, deadlineUnit, meterRegistry,
+                System::currentTimeMillis);
+    }
+
+    RetryInterceptor(int maxAttemptCount, long baseDelayMillis, long maxDelayMillis, long deadlineValue,
+                     @Nonnull TimeUnit deadlineUnit, @Nonnull MeterRegistry meterRegistry,
+                     @Nonnull LongSupplier millisClock) {
+        maxAttempts = Math.max(maxAttemptCount, 1);
+        baseDelay = baseDelayMillis;
+        maxDelay = maxDelayMillis;
+        deadline = deadlineUnit.toMillis(deadlineValue);
+        clock = millisClock;
+        firstAttempts = meterRegistry.counter(ATTEMPT_METRIC, "attempt", "first");
+        retries = meterRegistry.counter(ATTEMPT_METRIC, "attempt", "retry");
+    }
+
+    // the request was not sent, if the connection was not established
+    private static boolean isConnectFailure(IOException e) {
+        return e instanceof ConnectException || e instanceof UnknownHostException
+                || e instanceof NoRouteToHostException;
+    }
+
+    private static boolean isRetryable(IOException e, boolean safe) {
+        if (e instanceof CallRejectedException || Thread.currentThread().isInterrupted()) {
+            return false;
+        }
+        return safe || isConnectFailure(e);
+    }
+
+    private long backoff(int attempt) {
+        long bound = Math.min(maxDelay, baseDelay << Math.min(attempt - 1, 30));
+        return ThreadLocalRandom.current().nextLong(bound + 1);
+    }
+
+    // a retry may not outlive the deadline, so its timeouts are cut to the time left
+    private static Chain limit(Chain chain, long timeLeft) {
+        int timeout = (int) Math.min(Math.max(timeLeft, 1), Integer.MAX_VALUE);
+        Chain result = chain;
+        if (timeout < result.connectTimeoutMillis()) {
+            result = result.withConnectTimeout(timeout, TimeUnit.MILLISECONDS);
+        }
+        if (timeout < result.readTimeoutMillis()) {
+            result = result.withReadTimeout(timeout, TimeUnit.MILLISECONDS);
+        }
+        if (timeout < result.writeTimeoutMillis()) {
+            result = result.withWriteTimeout(timeout, TimeUnit.MILLISECONDS);
+        }
+        return result;
+    }
+
+    void sleep(long millis) throws InterruptedException {
+        Thread.sleep(millis);
+    }
+
+    @Nonnull
+    @Override
+    public Response intercept(@Nonnull Chain chain) throws IOException {
+        Request request = chain.request();
+        boolean safe = SAFE_METHODS.contains(request.method());
+        // an enqueued call keeps its attempts in the request and is enqueued again instead of sleeping here
+        DelayingCallFactory.Attempts enqueued = DelayingCallFactory.attempts(request);
+        DelayingCallFactory.Attempts attempts = enqueued != null ? enqueued : new DelayingCallFactory.Attempts();
+        if (attempts.start(clock.getAsLong(), deadline)) {
+            firstAttempts.increment();
+        }
+        long end = attempts.getDeadline();
+        for (; ; ) {
+            int attempt = attempts.next();
+            Response response = null;
+            IOException error = null;
+            try {
+                response = (attempt > 1 ? limit(chain, end - clock.getAsLong()) : chain).proceed(request);
+                if (!safe || !RETRY_STATUSES.contains(response.code())) {
+                    return response;
+                }
+            } catch (IOException e) {
+                if (!isRetryable(e, safe)) {
+                    throw e;
+                }
+                error = e;
+            }
+
+            long delay = backoff(attempt);
+            if (attempt >= maxAttempts || clock.getAsLong() + delay >= end) {
+                if (error != null) {
+                    throw error;
+                }
+                return response;
+            }
+            if (response != null) {
+                LOGGER.infof("Retrying %s %s after %d response", request.method(), request.url(), response.code());
+                response.close();
+            } else {
+                LOGGER.infof("Retrying %s %s after connection error: %s", request.method(), request.url(),
+                        error.getMessage());
+            }
+            retries.increment();
+            if (enqueued != null) {
+                throw new CallDelayedException("Retry of " + request.method() + " " + request.url()
+                        + " is delayed", delay);
+            }
+            try {
+                sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a retry");
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package net.hardnorth.github.merge.utils;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Runs at most one call per key at a time. Callers which come while a call with the same key is in flight do not start
+ * their own call, but wait for the running one and get its result or exception.
+ *
+ * @param <K> key type
+ * @param <V> result type
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentMap<K, CompletableFuture<V>> calls = new ConcurrentHashMap<>();
+
+    private static RuntimeException unwrap(CompletionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        return e;
+    }
+
+    /**
+     * @param key  call key
+     * @param call the call to run if there is no call in flight with the same key
+     * @return the call result
+     */
+    public V execute(@Nonnull K key, @Nonnull Supplier<V> call) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = calls.putIfAbsent(key, future);
+        if (inFlight != null) {
+            try {
+                return inFlight.join();
+            } catch (CompletionException e) {
+                throw unwrap(e);
+            }
+        }
+        try {
+            V result = call.get();
+            future.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(key, future);
+        }
+    }
+
+    /**
+     * Asynchronous variant of {@link #execute(Object, Supplier)}. The call is in flight until its future completes.
+     *
+     * @param key  call key
+     * @param call starts the call if there is no call in flight with the same key
+     * @return a future of the call result
+     */
+    @Nonnull
+    public CompletableFuture<V> executeAsync(@Nonnull K key, @Nonnull Supplier<CompletableFuture<V>> call) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = calls.putIfAbsent(key, future);
+        if (inFlight != null) {
+            return inFlight.copy();
+        }
+        CompletableFuture<V> started;
+        try {
+            started = call.get();
+        } catch (RuntimeException | Error e) {
+            started = CompletableFuture.failedFuture(e);
+        }
+        started.whenComplete((result, error) -> {
+            calls.remove(key, future);
+            if (error == null) {
+                future.complete(result);
+            } else {
+                future.completeExceptionally(error instanceof CompletionException && error.getCause() != null ?
+                        error.getCause() : error);
+            }
+        });
+        return future.copy();
+    }
+
+    /**
+     * @return number of calls in flight
+     */
+    public int size() {
+        return calls.size();
+    }
+}
@@ -1,9 +1,10 @@
 package net.hardnorth.github.merge.utils;
 
-import java.nio.file.FileSystems;
+import javax.annotation.Nullable;
 import java.nio.file.Path;
-import java.nio.file.PathMatcher;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -11,14 +12,14 @@ import java.util.stream.Collectors;
 @SuppressWarnings("CdiInjectionPointsInspection")
 public class ValidationPattern implements Predicate<Path> {
 
-    private static class Rule implements Predicate<Path> {
+    private static class Rule {
 
         public enum RuleType {
             INCLUDE, EXCLUDE
         }
 
         private final RuleType type;
-        private final PathMatcher matcher;
+        private final String pattern;
 
         private static String normalizePattern(String pattern) {
             return pattern.startsWith("./") ? pattern.substring(2) : pattern;
@@ -26,27 +27,67 @@ public class ValidationPattern implements Predicate<Path> {
 
         public Rule(RuleType ruleType, String rulePattern) {
             type = ruleType;
-            matcher = FileSystems.getDefault().getPathMatcher("glob:" + normalizePattern(rulePattern));
+            pattern = normalizePattern(rulePattern);
         }
 
-        public boolean test(Path filePath) {
-            return matcher.matches(filePath);
+        @Override
+        public String toString() {
+            return RuleType.EXCLUDE == type ? "!" + pattern : pattern;
         }
     }
 
     private final List<Rule> rules;
+    private final GlobAutomaton automaton;
 
     ValidationPattern(List<Rule> ruleList) {
-        rules = ruleList;
+        rules = Collections.unmodifiableList(ruleList);
+        boolean[] includes = new boolean[rules.size()];
+        for (int i = 0; i < includes.length; i++) {
+            includes[i] = Rule.RuleType.INCLUDE == rules.get(i).type;
+        }
+        automaton = new GlobAutomaton(rules.stream().map(r -> r.pattern).collect(Collectors.toList()), includes);
+    }
+
+    /**
+     * @return number of rules in the pattern
+     */
+    public int size() {
+        return rules.size();
     }
 
+    /**
+     * Checks the path against all rules in a single pass, the last matched rule wins.
+     *
+     * @param path a file path to check
+     * @return <code>true</code> if the last matched rule is an including one, <code>false</code> otherwise or if no
+     * rule matched
+     */
     public boolean test(Path path) {
-        List<Rule> matchedRules = rules.stream().filter(r -> r.test(path)).collect(Collectors.toList());
-        boolean result = false;
-        for (Rule r : matchedRules) {
-            result = Rule.RuleType.INCLUDE == r.type;
-        }
-        return result;
+        return automaton.test(path.toString());
+    }
+
+    /**
+     * The same as {@link #test(Path)}, but checks a path string without creating any objects. The string is normalized
+     * the same way as {@link java.io.File} does it: repeated separators are collapsed and a trailing one is ignored.
+     *
+     * @param path a file path to check
+     * @return <code>true</code> if the last matched rule is an including one, <code>false</code> otherwise or if no
+     * rule matched
+     */
+    public boolean matches(CharSequence path) {
+        return automaton.test(path);
+    }
+
+    /**
+     * Finds the rule which decides whether a path is included, to explain a rejection.
+     *
+     * @param path a file path to check
+     * @return the last matched rule, excluding ones are prefixed with <code>!</code>, or <code>null</code> if no rule matched
+     */
+    @Nullable
+    public String getMatchedRule(CharSequence path) {
+        int rule = automaton.match(path);
+        return rule == GlobAutomaton.NO_MATCH ? null : rules.get(rule).toString();
     }
 
     private static Rule toRule(String ruleStr) {
@@ -59,17 +100,25 @@ public class ValidationPattern implements Predicate<Path> {
         }
     }
 
-    public void addRule(String ruleStr) {
-        rules.add(toRule(ruleStr));
+    public static ValidationPattern parse(String pattern) {
+        return parse(pattern, Collections.emptyList());
     }
 
-    public static ValidationPattern parse(String pattern) {
+    /**
+     * Parses a merge configuration file content into an immutable pattern.
+     *
+     * @param pattern         merge configuration file content
+     * @param additionalRules rules which are applied after rules from the file
+     * @return compiled pattern
+     */
+    public static ValidationPattern parse(String pattern, Collection<String> additionalRules) {
         String[] content = pattern.split("\\r?\\n");
         List<Rule> result = Arrays.stream(content)
                 .filter(l -> !l.isBlank())
                 .filter(l -> !l.startsWith("#"))
                 .map(ValidationPattern::toRule)
                 .collect(Collectors.toList());
+        additionalRules.stream().map(ValidationPattern::toRule).forEach(result::add);
         return new ValidationPattern(result);
     }
 }
@@ -0,0 +1,100 @@
+package net.hardnorth.github.merge.utils;
+
+import org.apache.commons.lang3.tuple.Triple;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * LRU cache of compiled merge configurations keyed by repository owner, repository name and configuration file blob
+ * SHA. Since a blob SHA identifies file content, entries never go stale. The cache is bounded both by entry count and
+ * by total rule count of stored patterns.
+ */
+public class ValidationPatternCache {
+    private final int maxEntries;
+    private final long maxRules;
+    private final LinkedHashMap<Triple<String, String, String>, ValidationPattern> patterns =
+            new LinkedHashMap<>(16, 0.75f, true);
+    private long rules;
+
+    public ValidationPatternCache(int maxEntryCount, long maxRuleCount) {
+        maxEntries = maxEntryCount;
+        maxRules = maxRuleCount;
+    }
+
+    private synchronized ValidationPattern get(Triple<String, String, String> key) {
+        return patterns.get(key);
+    }
+
+    private synchronized void put(Triple<String, String, String> key, ValidationPattern pattern) {
+        ValidationPattern old = patterns.put(key, pattern);
+        if (old != null) {
+            rules -= old.size();
+        }
+        rules += pattern.size();
+        Iterator<Map.Entry<Triple<String, String, String>, ValidationPattern>> iterator =
+                patterns.entrySet().iterator();
+        while ((patterns.size() > maxEntries || rules > maxRules) && iterator.hasNext()) {
+            rules -= iterator.next().getValue().size();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Returns cached pattern or compiles and caches a new one.
+     *
+     * @param owner    repository owner
+     * @param repo     repository name
+     * @param sha      merge configuration file blob SHA
+     * @param compiler loads and compiles the pattern on a cache miss
+     * @return compiled pattern
+     */
+    @Nonnull
+    public ValidationPattern get(@Nonnull String owner, @Nonnull String repo, @Nonnull String sha,
+                                 @Nonnull Supplier<ValidationPattern> compiler) {
+        Triple<String, String, String> key = Triple.of(owner, repo, sha);
+        ValidationPattern pattern = get(key);
+        if (pattern != null) {
+            return pattern;
+        }
+        pattern = compiler.get();
+        put(key, pattern);
+        return pattern;
+    }
+
+    /**
+     * @param owner repository owner
+     * @param repo  repository name
+     * @param sha   merge configuration file blob SHA
+     * @return cached pattern or <code>null</code>
+     */
+    @Nullable
+    public ValidationPattern get(@Nonnull String owner, @Nonnull String repo, @Nonnull String sha) {
+        return get(Triple.of(owner, repo, sha));
+    }
+
+    /**
+     * Caches a pattern compiled by a caller, e.g. asynchronously.
+     *
+     * @param owner   repository owner
+     * @param repo    repository name
+     * @param sha     merge configuration file blob SHA
+     * @param pattern compiled pattern
+     */
+    public void put(@Nonnull String owner, @Nonnull String repo, @Nonnull String sha,
+                    @Nonnull ValidationPattern pattern) {
+        put(Triple.of(owner, repo, sha), pattern);
+    }
+
+    public synchronized int size() {
+        return patterns.size();
+    }
+
+    public synchronized long ruleCount() {
+        return rules;
+    }
+}
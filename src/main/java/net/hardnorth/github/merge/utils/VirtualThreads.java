@@ -0,0 +1,84 @@
+package net.hardnorth.github.merge.utils;
+
+import org.jboss.logging.Logger;
+
+import javax.annotation.Nonnull;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates thread factories for service executors. On JDK 21 and newer the factories may create virtual threads, which
+ * are looked up at runtime, so the service still compiles and runs on Java 11 with platform threads.
+ */
+public class VirtualThreads {
+    private static final Logger LOGGER = Logger.getLogger(VirtualThreads.class);
+
+    private static final MethodHandle OF_VIRTUAL;
+    private static final MethodHandle NAME;
+    private static final MethodHandle FACTORY;
+
+    static {
+        MethodHandle ofVirtual = null;
+        MethodHandle name = null;
+        MethodHandle factory = null;
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            Class<?> virtualBuilder = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            ofVirtual = lookup.findStatic(Thread.class, "ofVirtual", MethodType.methodType(virtualBuilder));
+            name = lookup.findVirtual(virtualBuilder, "name",
+                    MethodType.methodType(virtualBuilder, String.class, long.class));
+            factory = lookup.findVirtual(builder, "factory", MethodType.methodType(ThreadFactory.class));
+        } catch (ReflectiveOperationException e) {
+            LOGGER.debugf("Virtual threads are not supported by the runtime: %s", e.getMessage());
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        FACTORY = factory;
+    }
+
+    private VirtualThreads() {
+
+    }
+
+    /**
+     * @return <code>true</code> if the runtime supports virtual threads
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null && NAME != null && FACTORY != null;
+    }
+
+    @Nonnull
+    private static ThreadFactory platform(@Nonnull String prefix) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * @param prefix  thread name prefix, a thread number is appended to it
+     * @param virtual create virtual threads if the runtime supports them
+     * @return a factory of virtual threads or of daemon platform threads
+     */
+    @Nonnull
+    public static ThreadFactory factory(@Nonnull String prefix, boolean virtual) {
+        if (!virtual) {
+            return platform(prefix);
+        }
+        if (!isSupported()) {
+            LOGGER.warnf("Virtual threads are not supported by the runtime, '%s' threads are platform ones", prefix);
+            return platform(prefix);
+        }
+        try {
+            return (ThreadFactory) FACTORY.invoke(NAME.invoke(OF_VIRTUAL.invoke(), prefix, 1L));
+        } catch (Throwable e) {
+            throw new IllegalStateException("Unable to create virtual thread factory", e);
+        }
+    }
+}
@@ -2,44 +2,112 @@ package net.hardnorth.github.merge.utils;
 
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
 import com.google.gson.JsonParser;
 import com.google.gson.JsonSyntaxException;
 import net.hardnorth.github.merge.exception.ConnectionException;
 import net.hardnorth.github.merge.exception.HttpException;
+import net.hardnorth.github.merge.exception.CallRejectedException;
 import net.hardnorth.github.merge.exception.RestServiceException;
+import net.hardnorth.github.merge.exception.ServiceUnavailableException;
+import okhttp3.Callback;
 import okhttp3.Headers;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
 import okhttp3.ResponseBody;
 import org.apache.http.HttpHeaders;
 import org.apache.http.HttpStatus;
+import org.jboss.logging.Logger;
 import retrofit2.Call;
 import retrofit2.Response;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.ws.rs.core.MediaType;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.util.concurrent.CompletableFuture;
 
 public class WebClientCommon {
+    private static final Logger LOGGER = Logger.getLogger(WebClientCommon.class);
+
     private static final int FAILED_DEPENDENCY = HttpStatus.SC_FAILED_DEPENDENCY;
+    private static final String LINK_HEADER = "Link";
+    private static final String NEXT_RELATION = "rel=\"next\"";
+    private static final String PAGE_PARAMETER = "page";
+
+    private static <T> Response<T> checkResponse(Response<T> result, Charset charset) {
+        if (!result.isSuccessful()) {
+            if (result.code() >= HttpStatus.SC_BAD_REQUEST) {
+                JsonObject errorResponse = parseErrorBodyIfValid(result.headers(), result.errorBody(), charset);
+                String message = "Downstream service error: " + result.code() + " " + result.message();
+                if (errorResponse != null) {
+                    throw new RestServiceException(message, result.code(), errorResponse);
+                } else {
+                    throw new HttpException(message, FAILED_DEPENDENCY);
+                }
+            }
+            throw new HttpException("Unexpected upstream service response: " + result.code() + " " + result.message(), FAILED_DEPENDENCY);
+        }
+        return result;
+    }
+
+    private static Throwable translate(Throwable e) {
+        if (e instanceof CallRejectedException) {
+            return new ServiceUnavailableException(e.getMessage(), ((CallRejectedException) e).getRetryAfter());
+        }
+        if (e instanceof IOException) {
+            return new ConnectionException(e.getMessage(), e);
+        }
+        if (e instanceof JsonParseException || e instanceof IllegalStateException) {
+            // a response body of unexpected shape, thrown by a streaming type adapter
+            return new HttpException("Invalid upstream service response: " + e.getMessage(), FAILED_DEPENDENCY, e);
+        }
+        return e;
+    }
 
     public static <T> Response<T> executeServiceCall(Call<T> request, Charset charset) {
         try {
-            Response<T> result = request.execute();
-            if (!result.isSuccessful()) {
-                if (result.code() >= HttpStatus.SC_BAD_REQUEST) {
-                    JsonObject errorResponse = parseErrorBodyIfValid(result.headers(), result.errorBody(), charset);
-                    String message = "Downstream service error: " + result.code() + " " + result.message();
-                    if (errorResponse != null) {
-                        throw new RestServiceException(message, result.code(), errorResponse);
-                    } else {
-                        throw new HttpException(message, FAILED_DEPENDENCY);
-                    }
+            return checkResponse(request.execute(), charset);
+        } catch (IOException | JsonParseException | IllegalStateException e) {
+            throw (RuntimeException) translate(e);
+        }
+    }
+
+    /**
+     * Enqueues a call to the HTTP client dispatcher instead of blocking the calling thread. The future is completed on
+     * a dispatcher thread with the same exceptions {@link #executeServiceCall(Call, Charset)} throws. Cancellation of
+     * the future cancels the call.
+     *
+     * @param request a call to execute
+     * @param charset charset of error responses
+     * @param <T>     response body type
+     * @return a future of a successful response
+     */
+    public static <T> CompletableFuture<Response<T>> executeServiceCallAsync(Call<T> request, Charset charset) {
+        CompletableFuture<Response<T>> result = new CompletableFuture<>();
+        request.enqueue(new retrofit2.Callback<T>() {
+            @Override
+            public void onResponse(@Nonnull Call<T> call, @Nonnull Response<T> response) {
+                try {
+                    result.complete(checkResponse(response, charset));
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
                 }
-                throw new HttpException("Unexpected upstream service response: " + result.code() + " " + result.message(), FAILED_DEPENDENCY);
             }
-            return result;
-        } catch (IOException e) {
-            throw new ConnectionException(e.getMessage(), e);
-        }
+
+            @Override
+            public void onFailure(@Nonnull Call<T> call, @Nonnull Throwable t) {
+                result.completeExceptionally(translate(t));
+            }
+        });
+        result.whenComplete((r, e) -> {
+            if (result.isCancelled()) {
+                request.cancel();
+            }
+        });
+        return result;
     }
 
     public static okhttp3.Response executeServiceCall(okhttp3.Call request, Charset charset) {
@@ -58,6 +126,8 @@ public class WebClientCommon {
                 throw new HttpException("Unexpected upstream service response: " + result.code() + " " + result.message(), FAILED_DEPENDENCY);
             }
             return result;
+        } catch (CallRejectedException e) {
+            throw new ServiceUnavailableException(e.getMessage(), e.getRetryAfter());
         } catch (IOException e) {
             throw new ConnectionException(e.getMessage(), e);
         }
@@ -88,4 +158,57 @@ public class WebClientCommon {
             return null;
         }
     }
+
+    /**
+     * Opens a connection to a server in background, so the connection pool has a connection with completed TLS
+     * handshake before the first real call. Errors are ignored.
+     *
+     * @param client an HTTP client to warm up
+     * @param url    any URL of the server
+     */
+    public static void warmUp(@Nonnull OkHttpClient client, @Nonnull String url) {
+        client.newCall(new Request.Builder().url(url).head().build()).enqueue(new Callback() {
+            @Override
+            public void onFailure(@Nonnull okhttp3.Call call, @Nonnull IOException e) {
+                LOGGER.debugf("Unable to warm up connection to '%s': %s", url, e.getMessage());
+            }
+
+            @Override
+            public void onResponse(@Nonnull okhttp3.Call call, @Nonnull okhttp3.Response response) {
+                response.close();
+            }
+        });
+    }
+
+    /**
+     * Extracts the next page number from a <code>Link</code> header of a paginated Github response.
+     *
+     * @param headers response headers
+     * @return <code>page</code> parameter of the <code>next</code> link or <code>null</code> if it is the last page
+     */
+    @Nullable
+    public static Integer getNextPage(@Nullable Headers headers) {
+        String link = headers == null ? null : headers.get(LINK_HEADER);
+        if (link == null) {
+            return null;
+        }
+        for (String part : link.split(",")) {
+            int start = part.indexOf('<');
+            int end = part.indexOf('>', start + 1);
+            if (start < 0 || end < 0 || !part.substring(end).contains(NEXT_RELATION)) {
+                continue;
+            }
+            HttpUrl url = HttpUrl.parse(part.substring(start + 1, end));
+            String page = url == null ? null : url.queryParameter(PAGE_PARAMETER);
+            if (page == null) {
+                return null;
+            }
+            try {
+                return Integer.valueOf(page);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
 }
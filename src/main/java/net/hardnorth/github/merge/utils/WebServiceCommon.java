@@ -4,6 +4,9 @@ import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import org.apache.http.HttpHeaders;
 import org.apache.http.HttpStatus;
 
@@ -13,6 +16,11 @@ import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
 import java.lang.reflect.Type;
 import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
@@ -56,6 +64,11 @@ public class WebServiceCommon {
         return GSON.fromJson(json, type);
     }
 
+    // reads UTF-8 JSON right from the buffer, without decoding it to a String first
+    public static <T> T deserializeJson(byte[] json, Class<T> type) {
+        return GSON.fromJson(asReader(json), type);
+    }
+
     public static <T> T deserializeJson(JsonElement json, Class<T> type) {
         return GSON.fromJson(json, type);
     }
@@ -68,6 +81,62 @@ public class WebServiceCommon {
         return GSON.toJson(json);
     }
 
+    /**
+     * Reads a single string value from JSON without binding the whole document. Reading stops as soon as the value is
+     * found, other values are skipped without creating any objects.
+     *
+     * @param json a JSON document
+     * @param path names of nested object fields which lead to the value
+     * @return the value or <code>null</code> if there is no such field or it is not a string
+     * @throws JsonSyntaxException if the document is malformed
+     */
+    @Nullable
+    public static String readString(@Nonnull String json, @Nonnull String... path) {
+        return readString(new StringReader(json), path);
+    }
+
+    /**
+     * The same as {@link #readString(String, String...)}, but reads UTF-8 JSON right from the buffer.
+     *
+     * @param json a JSON document
+     * @param path names of nested object fields which lead to the value
+     * @return the value or <code>null</code> if there is no such field or it is not a string
+     * @throws JsonSyntaxException if the document is malformed
+     */
+    @Nullable
+    public static String readString(@Nonnull byte[] json, @Nonnull String... path) {
+        return readString(asReader(json), path);
+    }
+
+    private static Reader asReader(byte[] json) {
+        return new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8);
+    }
+
+    private static String readString(Reader json, String... path) {
+        try (JsonReader reader = new JsonReader(json)) {
+            for (int level = 0; level < path.length; level++) {
+                if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                    return null;
+                }
+                reader.beginObject();
+                boolean found = false;
+                while (!found && reader.hasNext()) {
+                    if (path[level].equals(reader.nextName())) {
+                        found = true;
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                if (!found) {
+                    return null;
+                }
+            }
+            return reader.peek() == JsonToken.STRING ? reader.nextString() : null;
+        } catch (IOException | IllegalStateException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
     @Nullable
     public static String getAuthToken(@Nonnull String authHeader) {
         int separator = authHeader.indexOf(' ');
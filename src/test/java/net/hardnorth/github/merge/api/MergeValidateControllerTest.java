@@ -12,6 +12,7 @@ import org.junit.jupiter.api.Test;
 import javax.ws.rs.core.MediaType;
 import java.nio.charset.StandardCharsets;
 import java.util.Collections;
+import java.util.UUID;
 
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.Matchers.is;
@@ -60,4 +61,21 @@ public class MergeValidateControllerTest {
                 .then()
                 .statusCode(HttpStatus.SC_NO_CONTENT);
     }
+
+    @Test
+    public void web_hook_repeated_delivery_test() {
+        String delivery = UUID.randomUUID().toString();
+        for (int status : new int[]{HttpStatus.SC_NO_CONTENT, HttpStatus.SC_OK}) {
+            given()
+                    .body(getClass().getClassLoader().getResourceAsStream("hook/new_installation.json"))
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON)
+                    .header("x-hub-signature-256","sha256=2a30244bfdbd9025f674fb9e18f54ca9b0ff773934ab5d08c416be7f03309122")
+                    .header("x-github-event", "installation")
+                    .header("x-github-delivery", delivery)
+                    .when()
+                    .post("/webhook")
+                    .then()
+                    .statusCode(status);
+        }
+    }
 }
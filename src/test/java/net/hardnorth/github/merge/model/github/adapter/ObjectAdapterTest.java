@@ -0,0 +1,71 @@
+package net.hardnorth.github.merge.model.github.adapter;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import net.hardnorth.github.merge.model.FileChange;
+import net.hardnorth.github.merge.model.github.repo.BranchInfo;
+import net.hardnorth.github.merge.model.github.repo.BranchProtection;
+import net.hardnorth.github.merge.model.github.repo.Comparison;
+import net.hardnorth.github.merge.model.github.repo.PullRequest;
+import net.hardnorth.github.merge.utils.IoUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ObjectAdapterTest {
+    private static final Gson GSON = new Gson();
+
+    private String readFileString(String file) {
+        return IoUtils.readInputStreamToString(getClass().getClassLoader().getResourceAsStream(file), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void verify_comparison_is_read_without_commits_and_patches() {
+        Comparison comparison = GSON.fromJson(readFileString("github/change_list_illegal_changes.json"), Comparison.class);
+        assertThat(comparison.getAheadBy(), equalTo(5));
+        assertThat(comparison.getBehindBy(), equalTo(0));
+        assertThat(comparison.getFiles(), hasSize(3));
+        assertThat(comparison.getFiles().get(1).getType(), sameInstance(FileChange.Type.ADDED));
+        assertThat(comparison.getFiles().get(1).getName(), equalTo(".merge-validate"));
+    }
+
+    @Test
+    public void verify_unknown_file_status_is_rejected() {
+        Assertions.assertThrows(JsonSyntaxException.class, () -> GSON.fromJson(
+                "{\"files\":[{\"filename\":\"README.md\",\"status\":\"unknown\"}]}", Comparison.class));
+    }
+
+    @Test
+    public void verify_branch_commit_sha_is_read() {
+        BranchInfo branch = GSON.fromJson(readFileString("github/get_master_branch.json"), BranchInfo.class);
+        assertThat(branch.getName(), equalTo("master"));
+        assertThat(branch.getCommitSha(), not(emptyOrNullString()));
+    }
+
+    @Test
+    public void verify_pull_request_round_trip() {
+        PullRequest pullRequest = GSON.fromJson(readFileString("github/pr_get.json"), PullRequest.class);
+        assertThat(pullRequest.getNumber(), notNullValue());
+        assertThat(pullRequest.getHead().getSha(), not(emptyOrNullString()));
+        assertThat(pullRequest.getBase().getRef(), not(emptyOrNullString()));
+
+        PullRequest copy = GSON.fromJson(GSON.toJson(pullRequest), PullRequest.class);
+        assertThat(copy.getNumber(), equalTo(pullRequest.getNumber()));
+        assertThat(copy.getMergeable(), equalTo(pullRequest.getMergeable()));
+        assertThat(copy.getMergeableState(), equalTo(pullRequest.getMergeableState()));
+        assertThat(copy.getHead().getSha(), equalTo(pullRequest.getHead().getSha()));
+        assertThat(copy.getBase().getRef(), equalTo(pullRequest.getBase().getRef()));
+    }
+
+    @Test
+    public void verify_branch_protection_is_read() {
+        BranchProtection protection = GSON.fromJson(readFileString("github/branch_protection.json"), BranchProtection.class);
+        assertThat(protection.getRequiredStatusChecks(), notNullValue());
+        assertThat(protection.getRequiredStatusChecks().getContexts(), notNullValue());
+        assertThat(protection.getRequiredPullRequestReviews(), notNullValue());
+    }
+}
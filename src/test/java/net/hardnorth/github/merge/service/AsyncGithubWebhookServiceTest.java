@@ -0,0 +1,131 @@
+package net.hardnorth.github.merge.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.hardnorth.github.merge.exception.ServiceUnavailableException;
+import net.hardnorth.github.merge.model.github.hook.EventPullRequest;
+import net.hardnorth.github.merge.model.github.hook.EventPush;
+import net.hardnorth.github.merge.service.impl.AsyncGithubWebhookService;
+import net.hardnorth.github.merge.utils.VirtualThreads;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.*;
+
+public class AsyncGithubWebhookServiceTest {
+
+    @Test
+    public void verify_events_are_processed_in_background() {
+        GithubWebhook delegate = mock(GithubWebhook.class);
+        MeterRegistry registry = new SimpleMeterRegistry();
+        AsyncGithubWebhookService webhook = new AsyncGithubWebhookService(delegate, 2, 10, registry);
+
+        EventPullRequest pullRequest = new EventPullRequest();
+        EventPush push = new EventPush();
+        webhook.processPull(pullRequest);
+        webhook.processPush(push);
+
+        verify(delegate, timeout(5000)).processPull(same(pullRequest));
+        verify(delegate, timeout(5000)).processPush(same(push));
+        assertThat(registry.timer(AsyncGithubWebhookService.QUEUE_WAIT_METRIC).count(), equalTo(2L));
+    }
+
+    @Test
+    public void verify_full_queue_rejects_events() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        GithubWebhook delegate = mock(GithubWebhook.class);
+        doAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return null;
+        }).when(delegate).processPush(any());
+        MeterRegistry registry = new SimpleMeterRegistry();
+        AsyncGithubWebhookService webhook = new AsyncGithubWebhookService(delegate, 1, 1, registry);
+
+        webhook.processPush(new EventPush());
+        Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+        webhook.processPush(new EventPush());
+        assertThat(registry.get(AsyncGithubWebhookService.QUEUE_SIZE_METRIC).gauge().value(), equalTo(1.0));
+
+        ServiceUnavailableException exception = Assertions.assertThrows(ServiceUnavailableException.class,
+                () -> webhook.processPush(new EventPush()));
+        assertThat(exception.getRetryAfter(), equalTo(AsyncGithubWebhookService.RETRY_AFTER));
+        assertThat(registry.counter(AsyncGithubWebhookService.QUEUE_REJECTED_METRIC).count(), equalTo(1.0));
+
+        release.countDown();
+        verify(delegate, timeout(5000).times(2)).processPush(any());
+    }
+
+    @Test
+    public void verify_processing_error_does_not_stop_workers() {
+        GithubWebhook delegate = mock(GithubWebhook.class);
+        doThrow(new IllegalStateException("Test")).doNothing().when(delegate).processPush(any());
+        AsyncGithubWebhookService webhook = new AsyncGithubWebhookService(delegate, 1, 10, new SimpleMeterRegistry());
+
+        webhook.processPush(new EventPush());
+        webhook.processPush(new EventPush());
+
+        verify(delegate, timeout(5000).times(2)).processPush(any());
+    }
+
+    @Test
+    public void verify_non_blocking_pull_processing_does_not_hold_workers() {
+        GithubWebhook delegate = mock(GithubWebhook.class);
+        CompletableFuture<Void> inFlight = new CompletableFuture<>();
+        when(delegate.processPullAsync(any())).thenReturn(inFlight);
+        AsyncGithubWebhookService webhook =
+                new AsyncGithubWebhookService(delegate, 1, 10, new SimpleMeterRegistry(), true);
+
+        webhook.processPull(new EventPullRequest());
+        webhook.processPull(new EventPullRequest());
+        webhook.processPush(new EventPush());
+
+        verify(delegate, timeout(5000).times(2)).processPullAsync(any());
+        verify(delegate, timeout(5000)).processPush(any());
+        verify(delegate, never()).processPull(any());
+        inFlight.completeExceptionally(new IllegalStateException("Test"));
+    }
+
+    @Test
+    public void verify_failed_background_processing_releases_delivery() {
+        GithubWebhook delegate = mock(GithubWebhook.class);
+        DeliveryRegistry deliveries = mock(DeliveryRegistry.class);
+        doThrow(new IllegalStateException("Test")).doNothing().when(delegate).processPush(any());
+        AsyncGithubWebhookService webhook = new AsyncGithubWebhookService(delegate, 1, 10, new SimpleMeterRegistry(),
+                false, VirtualThreads.factory("test-", false), deliveries);
+
+        webhook.processPush("failed", new EventPush());
+        webhook.processPush("succeeded", new EventPush());
+
+        verify(delegate, timeout(5000).times(2)).processPush(any());
+        verify(deliveries, timeout(5000)).release("failed");
+        verify(deliveries, never()).release("succeeded");
+    }
+
+    @Test
+    public void verify_failed_non_blocking_pull_processing_releases_delivery() {
+        GithubWebhook delegate = mock(GithubWebhook.class);
+        DeliveryRegistry deliveries = mock(DeliveryRegistry.class);
+        CompletableFuture<Void> inFlight = new CompletableFuture<>();
+        when(delegate.processPullAsync(any())).thenReturn(inFlight);
+        AsyncGithubWebhookService webhook = new AsyncGithubWebhookService(delegate, 1, 10, new SimpleMeterRegistry(),
+                true, VirtualThreads.factory("test-", false), deliveries);
+
+        webhook.processPull("delivery", new EventPullRequest());
+
+        verify(delegate, timeout(5000)).processPullAsync(any());
+        verify(deliveries, never()).release(anyString());
+        inFlight.completeExceptionally(new IllegalStateException("Test"));
+        verify(deliveries, timeout(5000)).release("delivery");
+    }
+}
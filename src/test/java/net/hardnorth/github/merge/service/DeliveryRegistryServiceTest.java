@@ -0,0 +1,77 @@
+package net.hardnorth.github.merge.service;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.datastore.*;
+import net.hardnorth.github.merge.service.impl.DeliveryRegistryService;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class DeliveryRegistryServiceTest {
+
+    @Test
+    public void verify_repeated_delivery_is_rejected() {
+        DeliveryRegistryService registry = new DeliveryRegistryService(1, TimeUnit.HOURS, 100, null);
+
+        assertThat(registry.register("delivery-1"), equalTo(true));
+        assertThat(registry.register("delivery-2"), equalTo(true));
+        assertThat(registry.register("delivery-1"), equalTo(false));
+    }
+
+    @Test
+    public void verify_delivery_is_forgotten_after_ttl() throws InterruptedException {
+        DeliveryRegistryService registry = new DeliveryRegistryService(50, TimeUnit.MILLISECONDS, 100, null);
+
+        assertThat(registry.register("delivery"), equalTo(true));
+        Thread.sleep(100);
+        assertThat(registry.register("delivery"), equalTo(true));
+        assertThat(registry.size(), equalTo(1));
+    }
+
+    @Test
+    public void verify_oldest_deliveries_are_evicted() {
+        DeliveryRegistryService registry = new DeliveryRegistryService(1, TimeUnit.HOURS, 2, null);
+
+        registry.register("delivery-1");
+        registry.register("delivery-2");
+        registry.register("delivery-3");
+
+        assertThat(registry.size(), equalTo(2));
+        assertThat(registry.register("delivery-3"), equalTo(false));
+        assertThat(registry.register("delivery-1"), equalTo(true));
+    }
+
+    @Test
+    public void verify_released_delivery_can_be_processed_again() {
+        DeliveryRegistryService registry = new DeliveryRegistryService(1, TimeUnit.HOURS, 100, null);
+
+        registry.register("delivery");
+        registry.release("delivery");
+
+        assertThat(registry.register("delivery"), equalTo(true));
+    }
+
+    @Test
+    public void verify_delivery_registered_by_another_instance_is_rejected() {
+        Datastore datastore = mock(Datastore.class);
+        when(datastore.newKeyFactory()).thenReturn(new KeyFactory("test-project"));
+        Transaction transaction = mock(Transaction.class);
+        when(datastore.newTransaction()).thenReturn(transaction);
+        Key key = new KeyFactory("test-project").setKind("deliveries").newKey("delivery");
+        Date expireDate = new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1));
+        when(transaction.get(key)).thenReturn(Entity.newBuilder(key).set("expire_date", Timestamp.of(expireDate)).build());
+        when(transaction.isActive()).thenReturn(true);
+
+        DeliveryRegistryService registry = new DeliveryRegistryService(1, TimeUnit.HOURS, 100, datastore);
+
+        assertThat(registry.register("delivery"), equalTo(false));
+        verify(transaction, never()).put(any(FullEntity.class));
+        verify(transaction).rollback();
+    }
+}
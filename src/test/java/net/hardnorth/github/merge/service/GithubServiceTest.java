@@ -1,15 +1,25 @@
 package net.hardnorth.github.merge.service;
 
 import com.google.gson.Gson;
-import com.google.gson.JsonElement;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import com.google.gson.reflect.TypeToken;
 import net.hardnorth.github.merge.exception.HttpException;
 import net.hardnorth.github.merge.model.Charset;
 import net.hardnorth.github.merge.model.CommitDifference;
 import net.hardnorth.github.merge.model.FileChange;
+import net.hardnorth.github.merge.model.FileInfo;
+import net.hardnorth.github.merge.model.github.repo.BranchInfo;
+import net.hardnorth.github.merge.model.github.repo.Comparison;
+import net.hardnorth.github.merge.model.github.repo.ContentEntry;
 import net.hardnorth.github.merge.service.impl.GithubService;
 import net.hardnorth.github.merge.utils.IoUtils;
 import okhttp3.Headers;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import okio.Buffer;
 import org.apache.http.HttpStatus;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Assertions;
@@ -17,20 +27,24 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 import retrofit2.Call;
+import retrofit2.Callback;
 import retrofit2.Response;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionException;
 import java.util.stream.IntStream;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 public class GithubServiceTest {
     public static final String MERGE_FILE_NAME = ".merge-validate";
@@ -42,14 +56,34 @@ public class GithubServiceTest {
     public final Github github =
             new GithubService(githubApiClient, 512000, new Charset(StandardCharsets.UTF_8));
 
+    private static final String RAW_CONTENT = "**\n!.github/**\n";
+    // git hash-object of RAW_CONTENT
+    private static final String RAW_CONTENT_SHA = "dc953f093b29926675649e4905142b2ae8687f1e";
+    private static final MediaType RAW_TYPE = MediaType.get("application/vnd.github.v3.raw");
+
+    public final Github rawGithub =
+            new GithubService(githubApiClient, RAW_CONTENT.length(), new Charset(StandardCharsets.UTF_8), true);
+
+    public final GithubAsync rawGithubAsync = (GithubAsync) rawGithub;
+
+    // completes an enqueued call right in the calling thread
+    @SuppressWarnings("unchecked")
+    private static <T> void mockEnqueue(Call<T> call, Response<T> response) {
+        doAnswer(invocation -> {
+            ((Callback<T>) invocation.getArgument(0)).onResponse(call, response);
+            return null;
+        }).when(call).enqueue(any(Callback.class));
+    }
+
     @SuppressWarnings({"unchecked"})
-    private void mockContentCall(String path, JsonElement responseBody) throws IOException {
-        Call<JsonElement> call = mock(Call.class);
-        Response<JsonElement> response = mock(Response.class);
+    private void mockContentCall(String path, String responseBody) throws IOException {
+        Call<List<ContentEntry>> call = mock(Call.class);
+        Response<List<ContentEntry>> response = mock(Response.class);
         when(call.execute()).thenReturn(response);
         when(response.isSuccessful()).thenReturn(Boolean.TRUE);
         when(githubApiClient.getContent(anyString(), anyString(), anyString(), eq(path), eq("dest"))).thenReturn(call);
-        when(response.body()).thenReturn(responseBody);
+        when(response.body()).thenReturn(GSON.fromJson(responseBody, new TypeToken<List<ContentEntry>>() {
+        }.getType()));
         when(response.headers()).thenReturn(Headers.of());
     }
 
@@ -66,7 +100,7 @@ public class GithubServiceTest {
     @ParameterizedTest
     @MethodSource("invalidConfigurationFileResponses")
     public <T extends HttpException> void verify_github_bad_merge_file_responses(String file, Class<T> exception, int status, String message) throws IOException {
-        mockContentCall("", GSON.fromJson(readFileString(file), JsonElement.class));
+        mockContentCall("", readFileString(file));
         T result = Assertions.assertThrows(exception, () -> github.getFileContent("auth", "HardNorth", "test", "dest", MERGE_FILE_NAME));
         assertThat(result.getCode(), equalTo(status));
         assertThat(result.getMessage(), Matchers.endsWith(message));
@@ -74,28 +108,40 @@ public class GithubServiceTest {
 
     @Test
     public void verify_github_bad_merge_file_responses() throws IOException {
-        mockContentCall("", GSON.fromJson(readFileString("github/file_list_merge_file.json"), JsonElement.class));
-        String content = readFileString("github/merge_file_default.json");
-        mockContentCall(MERGE_FILE_NAME, GSON.fromJson(content, JsonElement.class));
+        mockContentCall("", readFileString("github/file_list_merge_file.json"));
+        String expected = readFileString("file/default.txt").replace("\r", "");
+        mockRawContentCall(MERGE_FILE_NAME, Response.success(ResponseBody.create(RAW_TYPE, expected)));
 
         String result = new String(github.getFileContent("auth", "HardNorth", "test", "dest", MERGE_FILE_NAME), StandardCharsets.UTF_8);
-        String expected = readFileString("file/default.txt").replace("\r", "");
         assertThat(result, equalTo(expected));
     }
 
     @SuppressWarnings("unchecked")
     private void mockBranchResponse(String branch, JsonObject responseBody) throws IOException {
-        Call<JsonObject> branchCall = mock(Call.class);
-        Response<JsonObject> branchResponse = mock(Response.class);
+        Call<BranchInfo> branchCall = mock(Call.class);
+        Response<BranchInfo> branchResponse = mock(Response.class);
         when(branchCall.execute()).thenReturn(branchResponse);
+        mockEnqueue(branchCall, branchResponse);
         when(branchResponse.isSuccessful()).thenReturn(Boolean.TRUE);
         when(githubApiClient.getBranch(anyString(), anyString(), anyString(), eq(branch))).thenReturn(branchCall);
-        when(branchResponse.body()).thenReturn(responseBody);
+        when(branchResponse.body()).thenReturn(GSON.fromJson(responseBody, BranchInfo.class));
         when(branchResponse.headers()).thenReturn(Headers.of());
     }
 
-    @SuppressWarnings({"unchecked", "SameParameterValue"})
-    private void mockChangesCall(String source, String dest, JsonObject responseBody) throws IOException {
+    @SuppressWarnings("unchecked")
+    private Call<Comparison> mockComparePage(String base, String head, Integer page, String body, Headers headers)
+            throws IOException {
+        Call<Comparison> call = mock(Call.class);
+        Response<Comparison> response = Response.success(GSON.fromJson(body, Comparison.class), headers);
+        when(call.execute()).thenReturn(response);
+        mockEnqueue(call, response);
+        when(githubApiClient.compareCommits(anyString(), anyString(), anyString(), eq(base), eq(head), anyInt(), eq(page)))
+                .thenReturn(call);
+        return call;
+    }
+
+    @SuppressWarnings("SameParameterValue")
+    private void mockChangesCall(String source, String dest, String responseBody) throws IOException {
         String masterBranchResponseStr = readFileString("github/get_master_branch.json");
         JsonObject masterBranchResponse = GSON.fromJson(masterBranchResponseStr, JsonObject.class);
         mockBranchResponse(dest, masterBranchResponse);
@@ -104,15 +150,9 @@ public class GithubServiceTest {
         JsonObject developBranchResponse = GSON.fromJson(developBranchResponseStr, JsonObject.class);
         mockBranchResponse(source, developBranchResponse);
 
-        Call<JsonObject> call = mock(Call.class);
-        Response<JsonObject> response = mock(Response.class);
-        when(call.execute()).thenReturn(response);
-        when(response.isSuccessful()).thenReturn(Boolean.TRUE);
-        when(githubApiClient.compareCommits(anyString(), anyString(), anyString(), eq(masterBranchResponse.getAsJsonObject("commit").getAsJsonPrimitive("sha").getAsString()),
-                eq(developBranchResponse.getAsJsonObject("commit").getAsJsonPrimitive("sha").getAsString()))).thenReturn(call);
-
-        when(response.body()).thenReturn(responseBody);
-        when(response.headers()).thenReturn(Headers.of());
+        mockComparePage(masterBranchResponse.getAsJsonObject("commit").getAsJsonPrimitive("sha").getAsString(),
+                developBranchResponse.getAsJsonObject("commit").getAsJsonPrimitive("sha").getAsString(), null,
+                responseBody, Headers.of());
     }
 
     public static Iterable<Object[]> diffResponses() {
@@ -128,7 +168,7 @@ public class GithubServiceTest {
     @MethodSource("diffResponses")
     public void verify_github_changes_responses(String file, CommitDifference expected) throws IOException {
         String changesStr = readFileString(file);
-        mockChangesCall("develop", "master", GSON.fromJson(changesStr, JsonObject.class));
+        mockChangesCall("develop", "master", changesStr);
 
         CommitDifference result = github.listChanges("auth", "HardNorth", "test", "develop", "master");
 
@@ -142,4 +182,138 @@ public class GithubServiceTest {
             assertThat(act.getName(), equalTo(exp.getName()));
         });
     }
+
+    @Test
+    public void verify_github_changes_are_listed_asynchronously() throws IOException {
+        mockChangesCall("develop", "master", readFileString("github/change_list_illegal_changes.json"));
+
+        CommitDifference result = ((GithubAsync) github)
+                .listChangesAsync("auth", "HardNorth", "test", "develop", "master").join();
+
+        assertThat(result.getAheadBy(), equalTo(5));
+        assertThat(result.getBehindBy(), equalTo(0));
+        assertThat(result.getCommits(), hasSize(3));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void mockRawContentCall(String path, Response<ResponseBody> response) throws IOException {
+        Call<ResponseBody> call = mock(Call.class);
+        when(call.execute()).thenReturn(response);
+        mockEnqueue(call, response);
+        when(githubApiClient.getRawContent(anyString(), anyString(), anyString(), eq(path), eq("dest"))).thenReturn(call);
+    }
+
+    @Test
+    public void verify_raw_file_is_got_with_a_single_request() throws IOException {
+        mockRawContentCall(MERGE_FILE_NAME, Response.success(ResponseBody.create(RAW_TYPE, RAW_CONTENT)));
+
+        FileInfo info = rawGithub.getFileInfo("auth", "HardNorth", "test", "dest", MERGE_FILE_NAME);
+        assertThat(info.getSha(), equalTo(RAW_CONTENT_SHA));
+        assertThat(info.getSize(), equalTo((long) RAW_CONTENT.length()));
+
+        byte[] content = rawGithub.getFileContent("auth", "HardNorth", "test", "dest", info);
+        assertThat(new String(content, StandardCharsets.UTF_8), equalTo(RAW_CONTENT));
+        verify(githubApiClient, times(1)).getRawContent(anyString(), anyString(), anyString(), anyString(), anyString());
+        verify(githubApiClient, never()).getContent(anyString(), anyString(), anyString(), anyString(), anyString());
+    }
+
+    @Test
+    public void verify_raw_file_size_limit_is_enforced_while_reading() throws IOException {
+        // chunked response without Content-Length
+        ResponseBody body = ResponseBody.create(RAW_TYPE, -1, new Buffer().writeUtf8(RAW_CONTENT + "a"));
+        mockRawContentCall(MERGE_FILE_NAME, Response.success(body));
+
+        HttpException result = Assertions.assertThrows(HttpException.class,
+                () -> rawGithub.getFileInfo("auth", "HardNorth", "test", "dest", MERGE_FILE_NAME));
+        assertThat(result.getCode(), equalTo(HttpStatus.SC_REQUEST_TOO_LONG));
+    }
+
+    @Test
+    public void verify_raw_file_not_found() throws IOException {
+        ResponseBody error = ResponseBody.create(MediaType.get("application/json; charset=utf-8"),
+                "{\"message\":\"Not Found\"}");
+        mockRawContentCall(MERGE_FILE_NAME, Response.error(error, new okhttp3.Response.Builder()
+                .request(new Request.Builder().url("https://api.github.com/").build())
+                .protocol(Protocol.HTTP_1_1)
+                .code(HttpStatus.SC_NOT_FOUND)
+                .message("Not Found")
+                .header("Content-Type", "application/json; charset=utf-8")
+                .build()));
+
+        HttpException result = Assertions.assertThrows(HttpException.class,
+                () -> rawGithub.getFileInfo("auth", "HardNorth", "test", "dest", MERGE_FILE_NAME));
+        assertThat(result.getCode(), equalTo(HttpStatus.SC_BAD_REQUEST));
+        assertThat(result.getMessage(), Matchers.endsWith("no configuration file found"));
+    }
+
+    @Test
+    public void verify_raw_file_is_got_asynchronously() throws IOException {
+        mockRawContentCall(MERGE_FILE_NAME, Response.success(ResponseBody.create(RAW_TYPE, RAW_CONTENT)));
+
+        FileInfo info = rawGithubAsync.getFileInfoAsync("auth", "HardNorth", "test", "dest", MERGE_FILE_NAME).join();
+        assertThat(info.getSha(), equalTo(RAW_CONTENT_SHA));
+        byte[] content = rawGithubAsync.getFileContentAsync("auth", "HardNorth", "test", "dest", info).join();
+        assertThat(new String(content, StandardCharsets.UTF_8), equalTo(RAW_CONTENT));
+        verify(githubApiClient, times(1)).getRawContent(anyString(), anyString(), anyString(), anyString(), anyString());
+    }
+
+    @Test
+    public void verify_raw_file_not_found_asynchronously() throws IOException {
+        ResponseBody error = ResponseBody.create(MediaType.get("application/json; charset=utf-8"),
+                "{\"message\":\"Not Found\"}");
+        mockRawContentCall(MERGE_FILE_NAME, Response.error(error, new okhttp3.Response.Builder()
+                .request(new Request.Builder().url("https://api.github.com/").build())
+                .protocol(Protocol.HTTP_1_1)
+                .code(HttpStatus.SC_NOT_FOUND)
+                .message("Not Found")
+                .header("Content-Type", "application/json; charset=utf-8")
+                .build()));
+
+        CompletionException result = Assertions.assertThrows(CompletionException.class,
+                () -> rawGithubAsync.getFileInfoAsync("auth", "HardNorth", "test", "dest", MERGE_FILE_NAME).join());
+        assertThat(result.getCause(), instanceOf(HttpException.class));
+        assertThat(((HttpException) result.getCause()).getCode(), equalTo(HttpStatus.SC_BAD_REQUEST));
+    }
+
+    private static String comparePage(String... files) {
+        JsonObject page = new JsonObject();
+        page.addProperty("ahead_by", 5);
+        page.addProperty("behind_by", 0);
+        page.add("commits", new JsonArray());
+        JsonArray fileArray = new JsonArray();
+        for (String file : files) {
+            JsonObject fileObject = new JsonObject();
+            fileObject.addProperty("filename", file);
+            fileObject.addProperty("status", "modified");
+            fileObject.addProperty("patch", "@@ -1 +1 @@");
+            fileArray.add(fileObject);
+        }
+        page.add("files", fileArray);
+        return page.toString();
+    }
+
+    @Test
+    public void verify_comparison_is_loaded_with_a_single_request() throws IOException {
+        Call<Comparison> first = mockComparePage("base", "head", null, comparePage("README.md", "src/A.java"),
+                Headers.of("Link", "<https://api.github.com/repositories/1/compare/base...head?per_page=100&page=2>; "
+                        + "rel=\"next\""));
+
+        CommitDifference result = github.compareCommits("auth", "HardNorth", "test", "base", "head");
+
+        assertThat(result.getAheadBy(), equalTo(5));
+        assertThat(result.getCommits(), hasSize(2));
+        verify(first, times(1)).execute();
+        verify(githubApiClient, never()).compareCommits(anyString(), anyString(), anyString(), anyString(), anyString(),
+                anyInt(), eq(2));
+    }
+
+    @Test
+    public void verify_compare_file_limit_fails() throws IOException {
+        String[] files = IntStream.range(0, 300).mapToObj(i -> "src/A" + i + ".java").toArray(String[]::new);
+        mockComparePage("base", "head", null, comparePage(files), Headers.of());
+
+        HttpException error = Assertions.assertThrows(HttpException.class,
+                () -> github.compareCommits("auth", "HardNorth", "test", "base", "head"));
+        assertThat(error.getCode(), equalTo(HttpStatus.SC_REQUEST_TOO_LONG));
+    }
 }
@@ -3,6 +3,7 @@ package net.hardnorth.github.merge.service;
 import com.google.cloud.datastore.*;
 import com.google.gson.JsonObject;
 import net.hardnorth.github.merge.exception.RestServiceException;
+import net.hardnorth.github.merge.model.github.hook.Branch;
 import net.hardnorth.github.merge.model.github.hook.EventPullRequest;
 import net.hardnorth.github.merge.model.github.hook.EventPush;
 import net.hardnorth.github.merge.model.github.repo.BranchProtection;
@@ -12,12 +13,16 @@ import net.hardnorth.github.merge.utils.IoUtils;
 import net.hardnorth.github.merge.utils.WebClientCommon;
 import net.hardnorth.github.merge.utils.WebServiceCommon;
 import org.apache.commons.lang3.tuple.Pair;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentMatchers;
+import org.mockito.InOrder;
 
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
@@ -34,6 +39,8 @@ public class GithubWebhookServiceTest {
     private static final String TOKENS_KIND = "tokens";
     private static final String TOKEN = "token";
     private static final String INSTALLATION_ID = "installation_id";
+    private static final String HEAD_SHA = "1779cf4409bf130de8b8e8fa83259950f2d38241";
+    private static final String BASE_SHA = "7fde2caabd2ce0374837d4359e7f67d311ee5f48";
 
     public final Github github = mock(Github.class);
     public final MergeValidate mergeValidate = mock(MergeValidate.class);
@@ -61,9 +68,9 @@ public class GithubWebhookServiceTest {
         webhook.processPull(WebServiceCommon.deserializeJson(request, EventPullRequest.class));
 
         verify(mergeValidate).validate(anyString(), eq("HardNorth"), eq("agent-java-testNG"),
-                eq("merge-validate-develop"), eq("develop"));
+                eq("merge-validate-develop"), eq("develop"), eq(HEAD_SHA), isNull());
         verify(github).createReview(anyString(), eq("HardNorth"),
-                eq("agent-java-testNG"), anyInt(), eq("APPROVE"), nullable(String.class));
+                eq("agent-java-testNG"), anyInt(), eq(HEAD_SHA), eq("APPROVE"), nullable(String.class));
     }
 
     @Test
@@ -108,8 +115,97 @@ public class GithubWebhookServiceTest {
 
         // Verify two merges performed
         verify(mergeValidate, times(2)).validate(endsWith(token), eq("HardNorth"),
-                eq("agent-java-testNG"), eq("merge-validate-develop"), eq("develop"));
+                eq("agent-java-testNG"), eq("merge-validate-develop"), eq("develop"), eq(HEAD_SHA), isNull());
         verify(github, times(2)).createReview(endsWith(token), eq("HardNorth"),
-                eq("agent-java-testNG"), anyInt(), eq("APPROVE"), nullable(String.class));
+                eq("agent-java-testNG"), anyInt(), eq(HEAD_SHA), eq("APPROVE"), nullable(String.class));
+    }
+
+    private static Branch branch(String sha) {
+        Branch branch = new Branch();
+        branch.setSha(sha);
+        return branch;
+    }
+
+    @Test
+    public void test_moved_head_is_validated_before_approval_and_merge_is_pinned() {
+        String request = IoUtils.readInputStreamToString(getClass().getClassLoader()
+                .getResourceAsStream("hook/pr_labeled.json"), StandardCharsets.UTF_8);
+        String movedHead = "0000000000000000000000000000000000000001";
+        PullRequest current = new PullRequest();
+        current.setHead(branch(movedHead));
+        current.setBase(branch(BASE_SHA));
+        current.setMergeable(Boolean.TRUE);
+        when(github.getPullRequest(anyString(), anyString(), anyString(), anyInt())).thenReturn(current);
+
+        webhook.processPull(WebServiceCommon.deserializeJson(request, EventPullRequest.class));
+
+        InOrder order = inOrder(github, mergeValidate);
+        order.verify(github).getPullRequest(anyString(), eq("HardNorth"), eq("agent-java-testNG"), anyInt());
+        order.verify(mergeValidate).validate(anyString(), eq("HardNorth"), eq("agent-java-testNG"),
+                eq("merge-validate-develop"), eq("develop"), eq(movedHead), isNull());
+        order.verify(github).createReview(anyString(), eq("HardNorth"), eq("agent-java-testNG"), anyInt(),
+                eq(movedHead), eq("APPROVE"), nullable(String.class));
+        order.verify(github).mergePullRequest(anyString(), eq("HardNorth"), eq("agent-java-testNG"), anyInt(),
+                eq(movedHead), anyString(), nullable(String.class), nullable(String.class));
+        verify(mergeValidate, never()).validate(anyString(), anyString(), anyString(), anyString(), anyString(),
+                eq(HEAD_SHA), anyString());
+    }
+
+    @Test
+    public void test_stale_base_sha_is_not_compared_and_failed_validation_is_not_approved() {
+        String request = IoUtils.readInputStreamToString(getClass().getClassLoader()
+                .getResourceAsStream("hook/pr_labeled.json"), StandardCharsets.UTF_8);
+        // Github keeps pull request base SHA when the target branch moves, so it must not be a side of the comparison
+        PullRequest current = new PullRequest();
+        current.setHead(branch(HEAD_SHA));
+        current.setBase(branch(BASE_SHA));
+        current.setMergeable(Boolean.TRUE);
+        when(github.getPullRequest(anyString(), anyString(), anyString(), anyInt())).thenReturn(current);
+        doThrow(new IllegalArgumentException("Unable to merge branches: not fast forward")).when(mergeValidate)
+                .validate(anyString(), anyString(), anyString(), anyString(), eq("develop"), eq(HEAD_SHA), isNull());
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> webhook.processPull(WebServiceCommon.deserializeJson(request, EventPullRequest.class)));
+
+        verify(mergeValidate, never()).validate(anyString(), anyString(), anyString(), anyString(), anyString(),
+                anyString(), eq(BASE_SHA));
+        verify(github, never()).createReview(anyString(), anyString(), anyString(), anyInt(), nullable(String.class),
+                anyString(), nullable(String.class));
+        verify(github, never()).mergePullRequest(anyString(), anyString(), anyString(), anyInt(),
+                nullable(String.class), anyString(), nullable(String.class), nullable(String.class));
+    }
+
+    @Test
+    public void test_async_flow_validates_before_approval_and_merge_is_pinned() {
+        String request = IoUtils.readInputStreamToString(getClass().getClassLoader()
+                .getResourceAsStream("hook/pr_labeled.json"), StandardCharsets.UTF_8);
+        String movedHead = "0000000000000000000000000000000000000001";
+        PullRequest current = new PullRequest();
+        current.setHead(branch(movedHead));
+        current.setBase(branch(BASE_SHA));
+        current.setMergeable(Boolean.TRUE);
+        GithubAsync githubAsync = mock(GithubAsync.class);
+        when(githubAsync.getPullRequestAsync(anyString(), anyString(), anyString(), anyInt()))
+                .thenReturn(CompletableFuture.completedFuture(current));
+        when(githubAsync.createReviewAsync(anyString(), anyString(), anyString(), anyInt(), anyString(), anyString(),
+                nullable(String.class))).thenReturn(CompletableFuture.completedFuture(null));
+        when(githubAsync.mergePullRequestAsync(anyString(), anyString(), anyString(), anyInt(), anyString(),
+                anyString(), nullable(String.class), nullable(String.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+        when(mergeValidate.validateAsync(anyString(), anyString(), anyString(), anyString(), anyString(), anyString(),
+                isNull())).thenReturn(CompletableFuture.completedFuture(null));
+        GithubWebhook asyncWebhook = new GithubWebhookService(APPLICATION_NAME, github, githubAsync, mergeValidate, jwt,
+                datastore, 5, TimeUnit.MINUTES);
+
+        asyncWebhook.processPullAsync(WebServiceCommon.deserializeJson(request, EventPullRequest.class)).join();
+
+        InOrder order = inOrder(githubAsync, mergeValidate);
+        order.verify(githubAsync).getPullRequestAsync(anyString(), eq("HardNorth"), eq("agent-java-testNG"), anyInt());
+        order.verify(mergeValidate).validateAsync(anyString(), eq("HardNorth"), eq("agent-java-testNG"),
+                eq("merge-validate-develop"), eq("develop"), eq(movedHead), isNull());
+        order.verify(githubAsync).createReviewAsync(anyString(), eq("HardNorth"), eq("agent-java-testNG"), anyInt(),
+                eq(movedHead), eq("APPROVE"), nullable(String.class));
+        order.verify(githubAsync).mergePullRequestAsync(anyString(), eq("HardNorth"), eq("agent-java-testNG"),
+                anyInt(), eq(movedHead), anyString(), nullable(String.class), nullable(String.class));
     }
 }
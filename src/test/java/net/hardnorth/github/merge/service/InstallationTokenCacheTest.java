@@ -0,0 +1,119 @@
+package net.hardnorth.github.merge.service;
+
+import net.hardnorth.github.merge.service.impl.InstallationTokenCache;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class InstallationTokenCacheTest {
+
+    private static Pair<String, Date> newToken(long lifetimeMillis) {
+        return Pair.of(UUID.randomUUID().toString(), new Date(System.currentTimeMillis() + lifetimeMillis));
+    }
+
+    @Test
+    public void verify_token_is_cached() {
+        AtomicInteger calls = new AtomicInteger();
+        InstallationTokenCache cache = new InstallationTokenCache(id -> {
+            calls.incrementAndGet();
+            return newToken(TimeUnit.HOURS.toMillis(1));
+        }, 5, TimeUnit.MINUTES);
+
+        Pair<String, Date> first = cache.get(1L);
+        Pair<String, Date> second = cache.get(1L);
+        cache.get(2L);
+
+        assertThat(second, sameInstance(first));
+        assertThat(calls.get(), equalTo(2));
+    }
+
+    @Test
+    public void verify_concurrent_misses_are_collapsed() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        InstallationTokenCache cache = new InstallationTokenCache(id -> {
+            calls.incrementAndGet();
+            try {
+                loading.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return newToken(TimeUnit.HOURS.toMillis(1));
+        }, 5, TimeUnit.MINUTES);
+
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        try {
+            List<Future<Pair<String, Date>>> results = IntStream.range(0, 5)
+                    .mapToObj(i -> executor.submit(() -> cache.get(1L)))
+                    .collect(Collectors.toList());
+            Thread.sleep(100);
+            loading.countDown();
+            Pair<String, Date> token = results.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<Pair<String, Date>> r : results) {
+                assertThat(r.get(5, TimeUnit.SECONDS), sameInstance(token));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(calls.get(), equalTo(1));
+    }
+
+    @Test
+    public void verify_expired_token_is_reloaded() {
+        AtomicInteger calls = new AtomicInteger();
+        InstallationTokenCache cache = new InstallationTokenCache(id -> {
+            calls.incrementAndGet();
+            return newToken(-1);
+        }, 5, TimeUnit.MINUTES);
+
+        Pair<String, Date> first = cache.get(1L);
+        Pair<String, Date> second = cache.get(1L);
+
+        assertThat(second, not(sameInstance(first)));
+        assertThat(calls.get(), equalTo(2));
+    }
+
+    @Test
+    public void verify_used_token_is_refreshed_in_background() throws InterruptedException {
+        BlockingQueue<Pair<String, Date>> loaded = new LinkedBlockingQueue<>();
+        InstallationTokenCache cache = new InstallationTokenCache(id -> {
+            Pair<String, Date> token = newToken(TimeUnit.MINUTES.toMillis(1) + 300);
+            loaded.add(token);
+            return token;
+        }, 1, TimeUnit.MINUTES);
+
+        Pair<String, Date> first = cache.get(1L);
+        cache.get(1L);
+        assertThat(loaded.poll(), sameInstance(first));
+
+        Pair<String, Date> refreshed = loaded.poll(5, TimeUnit.SECONDS);
+        assertThat(refreshed, notNullValue());
+        assertThat(cache.get(1L), sameInstance(refreshed));
+    }
+
+    @Test
+    public void verify_loader_error_is_not_cached() {
+        AtomicInteger calls = new AtomicInteger();
+        InstallationTokenCache cache = new InstallationTokenCache(id -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new IllegalStateException("error");
+            }
+            return newToken(TimeUnit.HOURS.toMillis(1));
+        }, 5, TimeUnit.MINUTES);
+
+        Assertions.assertThrows(IllegalStateException.class, () -> cache.get(1L));
+        assertThat(cache.get(1L), notNullValue());
+        assertThat(calls.get(), equalTo(2));
+    }
+}
@@ -2,6 +2,8 @@ package net.hardnorth.github.merge.service;
 
 import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.interfaces.JWTVerifier;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.hardnorth.github.merge.service.impl.CachedJwtService;
 import net.hardnorth.github.merge.service.impl.JwtService;
 import net.hardnorth.github.merge.utils.IoUtils;
 import org.bouncycastle.openssl.PEMKeyPair;
@@ -17,8 +19,10 @@ import java.io.InputStreamReader;
 import java.security.KeyPair;
 import java.security.interfaces.RSAPrivateKey;
 import java.security.interfaces.RSAPublicKey;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.notNullValue;
 
 public class JwtServiceTest {
@@ -64,4 +68,17 @@ public class JwtServiceTest {
         JWTVerifier verifier = com.auth0.jwt.JWT.require(ALGORITHM).withIssuer(GITHUB_APP_ID).build();
         assertThat(verifier.verify(token), notNullValue());
     }
+
+    @Test
+    public void verify_cached_authentication_token() throws IOException {
+        CachedJwtService cachedJwt = new CachedJwtService(new JwtService(GITHUB_APP_ID, KEY), 2, TimeUnit.MINUTES,
+                new SimpleMeterRegistry());
+        String token = cachedJwt.get();
+        JWTVerifier verifier = com.auth0.jwt.JWT.require(ALGORITHM).withIssuer(GITHUB_APP_ID).build();
+        assertThat(verifier.verify(token), notNullValue());
+
+        assertThat(cachedJwt.get(), equalTo(token));
+        assertThat(cachedJwt.getMisses(), equalTo(1.0));
+        assertThat(cachedJwt.getHits(), equalTo(1.0));
+    }
 }
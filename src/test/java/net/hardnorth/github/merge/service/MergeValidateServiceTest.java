@@ -1,12 +1,19 @@
 package net.hardnorth.github.merge.service;
 
+import net.hardnorth.github.merge.exception.HttpException;
+import net.hardnorth.github.merge.exception.IllegalChangeException;
 import net.hardnorth.github.merge.model.Charset;
 import net.hardnorth.github.merge.model.CommitDifference;
 import net.hardnorth.github.merge.model.FileChange;
+import net.hardnorth.github.merge.model.FileInfo;
 import net.hardnorth.github.merge.service.impl.MergeValidateService;
 import net.hardnorth.github.merge.utils.IoUtils;
+import net.hardnorth.github.merge.utils.PagedIterable;
+import net.hardnorth.github.merge.utils.ValidationPatternCache;
+import org.apache.http.HttpStatus;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 
@@ -14,11 +21,16 @@ import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.*;
 
 public class MergeValidateServiceTest {
     private static final String MERGE_FILE_NAME = ".merge-validate";
@@ -36,6 +48,18 @@ public class MergeValidateServiceTest {
     private final MergeValidate service =
             new MergeValidateService(github, MERGE_FILE_NAME, new Charset(StandardCharsets.UTF_8));
 
+    private void mockMergeFile(byte[] content, String sha) {
+        FileInfo fileInfo = new FileInfo(MERGE_FILE_NAME, sha, content.length);
+        when(github.getFileInfo(eq(AUTHORIZATION), eq(USER), eq(REPO), eq(DEST_BRANCH), eq(MERGE_FILE_NAME)))
+                .thenReturn(fileInfo);
+        when(github.getFileContent(eq(AUTHORIZATION), eq(USER), eq(REPO), eq(DEST_BRANCH), same(fileInfo)))
+                .thenReturn(content);
+    }
+
+    private void mockMergeFile(byte[] content) {
+        mockMergeFile(content, UUID.randomUUID().toString());
+    }
+
     public static Iterable<Object[]> validResponses() {
         return Arrays.asList(
                 new Object[]{"validation/merge_file_allowed.txt", new CommitDifference(1, 0, Collections.singletonList(new FileChange(FileChange.Type.CHANGED, "README.md")))},
@@ -47,8 +71,7 @@ public class MergeValidateServiceTest {
     @ParameterizedTest
     @MethodSource("validResponses")
     public void verify_github_merge_success(String configFile, CommitDifference diff) {
-        when(github.getFileContent(eq(AUTHORIZATION), eq(USER), eq(REPO), eq(DEST_BRANCH), eq(MERGE_FILE_NAME)))
-                .thenReturn(IoUtils.readInputStreamToBytes(getClass().getClassLoader().getResourceAsStream(configFile)));
+        mockMergeFile(IoUtils.readInputStreamToBytes(getClass().getClassLoader().getResourceAsStream(configFile)));
         when(github.listChanges(eq(AUTHORIZATION), eq(USER), eq(REPO), eq(SOURCE_BRANCH), eq(DEST_BRANCH)))
                 .thenReturn(diff);
         service.validate(AUTHORIZATION, USER, REPO, SOURCE_BRANCH, DEST_BRANCH);
@@ -63,21 +86,20 @@ public class MergeValidateServiceTest {
         return Arrays.asList(
                 new Object[]{"not fast forward", new CommitDifference(0, 5, Collections.emptyList())},
                 new Object[]{"not fast forward", new CommitDifference(5, 1, CHANGES)},
-                new Object[]{"illegal changes", new CommitDifference(5, 0, CHANGES)},
-                new Object[]{"illegal changes", new CommitDifference(5, 0, Arrays.asList(CHANGES.get(0), CHANGES.get(2)))},
-                new Object[]{"illegal changes", new CommitDifference(5, 0, Arrays.asList(CHANGES.get(1), CHANGES.get(2)))},
-                new Object[]{"illegal changes", new CommitDifference(5, 0, Collections.singletonList(CHANGES.get(0)))},
-                new Object[]{"illegal changes", new CommitDifference(5, 0, Collections.singletonList(CHANGES.get(1)))},
-                new Object[]{"illegal changes", new CommitDifference(5, 0, Collections.singletonList(new FileChange(FileChange.Type.CHANGED, "src/main/resources/reportportal.properties")))},
-                new Object[]{"illegal changes", new CommitDifference(5, 0, Collections.singletonList(new FileChange(FileChange.Type.ADDED, "README.md")))}
+                new Object[]{"'.github/workflows/release.yml' is excluded by rule '!.github/workflows/**'", new CommitDifference(5, 0, CHANGES)},
+                new Object[]{"'.github/workflows/release.yml' is excluded by rule '!.github/workflows/**'", new CommitDifference(5, 0, Arrays.asList(CHANGES.get(0), CHANGES.get(2)))},
+                new Object[]{"'.merge-validate' is added", new CommitDifference(5, 0, Arrays.asList(CHANGES.get(1), CHANGES.get(2)))},
+                new Object[]{"'.github/workflows/release.yml' is excluded by rule '!.github/workflows/**'", new CommitDifference(5, 0, Collections.singletonList(CHANGES.get(0)))},
+                new Object[]{"'.merge-validate' is added", new CommitDifference(5, 0, Collections.singletonList(CHANGES.get(1)))},
+                new Object[]{"'src/main/resources/reportportal.properties' does not match any rule", new CommitDifference(5, 0, Collections.singletonList(new FileChange(FileChange.Type.CHANGED, "src/main/resources/reportportal.properties")))},
+                new Object[]{"'README.md' is added", new CommitDifference(5, 0, Collections.singletonList(new FileChange(FileChange.Type.ADDED, "README.md")))}
         );
     }
 
     @ParameterizedTest
     @MethodSource("invalidDiffResponses")
     public void verify_invalid_diff_responses(String expectedMessage, CommitDifference response) {
-        when(github.getFileContent(eq(AUTHORIZATION), eq(USER), eq(REPO), eq(DEST_BRANCH), eq(MERGE_FILE_NAME)))
-                .thenReturn(DEFAULT_MERGE_CONFIG_FILE);
+        mockMergeFile(DEFAULT_MERGE_CONFIG_FILE);
         when(github.listChanges(eq(AUTHORIZATION), eq(USER), eq(REPO), eq(SOURCE_BRANCH), eq(DEST_BRANCH)))
                 .thenReturn(response);
 
@@ -88,25 +110,184 @@ public class MergeValidateServiceTest {
 
     public static Iterable<Object[]> invalidAllowanceResponses() {
         return Arrays.asList(
-                new Object[]{"validation/merge_file_allowed.txt", new CommitDifference(1, 0, Collections.singletonList(new FileChange(FileChange.Type.CHANGED, MERGE_FILE_NAME)))},
-                new Object[]{"validation/workflow_dir_allowed.txt", new CommitDifference(1, 0, Collections.singletonList(new FileChange(FileChange.Type.CHANGED, WORKFLOW_FILE)))},
-                new Object[]{"validation/workflow_file_allowed.txt", new CommitDifference(1, 0, Collections.singletonList(new FileChange(FileChange.Type.CHANGED, WORKFLOW_FILE)))}
+                new Object[]{"validation/merge_file_allowed.txt", new CommitDifference(1, 0, Collections.singletonList(new FileChange(FileChange.Type.CHANGED, MERGE_FILE_NAME))), "!" + MERGE_FILE_NAME},
+                new Object[]{"validation/workflow_dir_allowed.txt", new CommitDifference(1, 0, Collections.singletonList(new FileChange(FileChange.Type.CHANGED, WORKFLOW_FILE))), "!.github/workflows/**"},
+                new Object[]{"validation/workflow_file_allowed.txt", new CommitDifference(1, 0, Collections.singletonList(new FileChange(FileChange.Type.CHANGED, WORKFLOW_FILE))), "!.github/workflows/**"}
         );
     }
 
     @ParameterizedTest
     @MethodSource("invalidAllowanceResponses")
-    public void verify_allowance_exceptions(String configFilePath, CommitDifference difference) {
+    public void verify_allowance_exceptions(String configFilePath, CommitDifference difference, String rule) {
         byte[] configFile =
                 IoUtils.readInputStreamToBytes(getClass().getClassLoader().getResourceAsStream(configFilePath));
 
-        when(github.getFileContent(eq(AUTHORIZATION), eq(USER), eq(REPO), eq(DEST_BRANCH), eq(MERGE_FILE_NAME)))
-                .thenReturn(configFile);
+        mockMergeFile(configFile);
         when(github.listChanges(eq(AUTHORIZATION), eq(USER), eq(REPO), eq(SOURCE_BRANCH), eq(DEST_BRANCH)))
                 .thenReturn(difference);
 
+        IllegalChangeException result = Assertions.assertThrows(IllegalChangeException.class,
+                () -> service.validate(AUTHORIZATION, USER, REPO, SOURCE_BRANCH, DEST_BRANCH));
+        assertThat(result.getMessage(), Matchers.containsString("illegal changes"));
+        assertThat(result.getChange(), Matchers.sameInstance(difference.getCommits().get(0)));
+        assertThat(result.getRule(), Matchers.equalTo(rule));
+    }
+
+    @Test
+    public void verify_merge_configuration_is_cached_by_sha() {
+        mockMergeFile(DEFAULT_MERGE_CONFIG_FILE, "fa5d6e2b1c0f3b0ce5ca95b3cf6f43f2c4e8b1a5");
+        when(github.listChanges(eq(AUTHORIZATION), eq(USER), eq(REPO), eq(SOURCE_BRANCH), eq(DEST_BRANCH)))
+                .thenReturn(new CommitDifference(1, 0, Collections.singletonList(new FileChange(FileChange.Type.CHANGED, "README.md"))));
+
+        service.validate(AUTHORIZATION, USER, REPO, SOURCE_BRANCH, DEST_BRANCH);
+        service.validate(AUTHORIZATION, USER, REPO, SOURCE_BRANCH, DEST_BRANCH);
+
+        verify(github, times(2)).getFileInfo(eq(AUTHORIZATION), eq(USER), eq(REPO), eq(DEST_BRANCH), eq(MERGE_FILE_NAME));
+        verify(github).getFileContent(eq(AUTHORIZATION), eq(USER), eq(REPO), eq(DEST_BRANCH), any(FileInfo.class));
+    }
+
+    @Test
+    public void verify_commits_are_compared_directly_if_shas_are_known() {
+        mockMergeFile(DEFAULT_MERGE_CONFIG_FILE);
+        when(github.compareCommits(eq(AUTHORIZATION), eq(USER), eq(REPO), eq("base-sha"), eq("head-sha")))
+                .thenReturn(new CommitDifference(1, 0, Collections.singletonList(new FileChange(FileChange.Type.CHANGED, "README.md"))));
+
+        service.validate(AUTHORIZATION, USER, REPO, SOURCE_BRANCH, DEST_BRANCH, "head-sha", "base-sha");
+
+        verify(github, never()).listChanges(any(), any(), any(), any(), any());
+        verify(github, never()).getLatestCommit(any(), any(), any(), any());
+    }
+
+    @Test
+    public void verify_known_head_is_compared_with_current_target_branch() {
+        mockMergeFile(DEFAULT_MERGE_CONFIG_FILE);
+        // the target branch moved after the pull request base SHA was recorded
+        when(github.compareCommits(eq(AUTHORIZATION), eq(USER), eq(REPO), eq(DEST_BRANCH), eq("head-sha")))
+                .thenReturn(new CommitDifference(1, 1, Collections.singletonList(new FileChange(FileChange.Type.CHANGED, "README.md"))));
+
+        IllegalArgumentException result = Assertions.assertThrows(IllegalArgumentException.class,
+                () -> service.validate(AUTHORIZATION, USER, REPO, SOURCE_BRANCH, DEST_BRANCH, "head-sha", null));
+
+        assertThat(result.getMessage(), Matchers.endsWith("not fast forward"));
+        verify(github, never()).listChanges(any(), any(), any(), any(), any());
+        verify(github, never()).getLatestCommit(any(), any(), any(), any());
+    }
+
+    private MergeValidate parallelService(long timeoutMillis) {
+        return new MergeValidateService(github, MERGE_FILE_NAME, new Charset(StandardCharsets.UTF_8),
+                new ValidationPatternCache(10, 1000), 2, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void verify_configuration_and_difference_are_fetched_in_parallel() {
+        CountDownLatch differenceRequested = new CountDownLatch(1);
+        FileInfo fileInfo = new FileInfo(MERGE_FILE_NAME, UUID.randomUUID().toString(), DEFAULT_MERGE_CONFIG_FILE.length);
+        when(github.getFileInfo(eq(AUTHORIZATION), eq(USER), eq(REPO), eq(DEST_BRANCH), eq(MERGE_FILE_NAME)))
+                .thenAnswer(a -> {
+                    // would time out if the difference is not requested at the same time
+                    Assertions.assertTrue(differenceRequested.await(5, TimeUnit.SECONDS));
+                    return fileInfo;
+                });
+        when(github.getFileContent(eq(AUTHORIZATION), eq(USER), eq(REPO), eq(DEST_BRANCH), same(fileInfo)))
+                .thenReturn(DEFAULT_MERGE_CONFIG_FILE);
+        when(github.listChanges(eq(AUTHORIZATION), eq(USER), eq(REPO), eq(SOURCE_BRANCH), eq(DEST_BRANCH)))
+                .thenAnswer(a -> {
+                    differenceRequested.countDown();
+                    return new CommitDifference(1, 0, Collections.singletonList(new FileChange(FileChange.Type.CHANGED, "README.md")));
+                });
+
+        parallelService(10000).validate(AUTHORIZATION, USER, REPO, SOURCE_BRANCH, DEST_BRANCH);
+    }
+
+    @Test
+    public void verify_parallel_fetch_failure_is_propagated() {
+        mockMergeFile(DEFAULT_MERGE_CONFIG_FILE);
+        when(github.listChanges(eq(AUTHORIZATION), eq(USER), eq(REPO), eq(SOURCE_BRANCH), eq(DEST_BRANCH)))
+                .thenReturn(new CommitDifference(0, 5, Collections.emptyList()));
+
+        IllegalArgumentException result = Assertions.assertThrows(IllegalArgumentException.class,
+                () -> parallelService(10000).validate(AUTHORIZATION, USER, REPO, SOURCE_BRANCH, DEST_BRANCH));
+        assertThat(result.getMessage(), Matchers.endsWith("not fast forward"));
+
+        when(github.listChanges(eq(AUTHORIZATION), eq(USER), eq(REPO), eq(SOURCE_BRANCH), eq(DEST_BRANCH)))
+                .thenThrow(new IllegalStateException("Test"));
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> parallelService(10000).validate(AUTHORIZATION, USER, REPO, SOURCE_BRANCH, DEST_BRANCH));
+    }
+
+    @Test
+    public void verify_parallel_fetch_deadline() {
+        mockMergeFile(DEFAULT_MERGE_CONFIG_FILE);
+        when(github.listChanges(eq(AUTHORIZATION), eq(USER), eq(REPO), eq(SOURCE_BRANCH), eq(DEST_BRANCH)))
+                .thenAnswer(a -> {
+                    Thread.sleep(10000);
+                    return new CommitDifference(1, 0, Collections.emptyList());
+                });
+
+        HttpException result = Assertions.assertThrows(HttpException.class,
+                () -> parallelService(100).validate(AUTHORIZATION, USER, REPO, SOURCE_BRANCH, DEST_BRANCH));
+        assertThat(result.getCode(), Matchers.equalTo(HttpStatus.SC_GATEWAY_TIMEOUT));
+    }
+
+    @Test
+    public void verify_validation_stops_on_first_illegal_change() {
+        mockMergeFile(DEFAULT_MERGE_CONFIG_FILE);
+        PagedIterable<FileChange> changes =
+                new PagedIterable<>(Collections.singletonList(new FileChange(FileChange.Type.ADDED, "README.md")),
+                        () -> {
+                            throw new IllegalStateException("Next page should not be loaded");
+                        });
+        when(github.listChanges(eq(AUTHORIZATION), eq(USER), eq(REPO), eq(SOURCE_BRANCH), eq(DEST_BRANCH)))
+                .thenReturn(new CommitDifference(1, 0, changes));
+
         IllegalArgumentException result = Assertions.assertThrows(IllegalArgumentException.class,
                 () -> service.validate(AUTHORIZATION, USER, REPO, SOURCE_BRANCH, DEST_BRANCH));
-        assertThat(result.getMessage(), Matchers.endsWith("illegal changes"));
+        assertThat(result.getMessage(), Matchers.endsWith("'README.md' is added"));
+    }
+
+    private final GithubAsync githubAsync = mock(GithubAsync.class);
+
+    private MergeValidate asyncService(long timeoutMillis) {
+        return new MergeValidateService(github, githubAsync, MERGE_FILE_NAME, new Charset(StandardCharsets.UTF_8),
+                new ValidationPatternCache(10, 1000), 0, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void mockMergeFileAsync(byte[] content, String sha) {
+        FileInfo fileInfo = new FileInfo(MERGE_FILE_NAME, sha, content.length);
+        when(githubAsync.getFileInfoAsync(eq(AUTHORIZATION), eq(USER), eq(REPO), eq(DEST_BRANCH), eq(MERGE_FILE_NAME)))
+                .thenReturn(CompletableFuture.completedFuture(fileInfo));
+        when(githubAsync.getFileContentAsync(eq(AUTHORIZATION), eq(USER), eq(REPO), eq(DEST_BRANCH), same(fileInfo)))
+                .thenReturn(CompletableFuture.completedFuture(content));
+    }
+
+    @Test
+    public void verify_asynchronous_validation() {
+        mockMergeFileAsync(DEFAULT_MERGE_CONFIG_FILE, "fa5d6e2b1c0f3b0ce5ca95b3cf6f43f2c4e8b1a5");
+        when(githubAsync.compareCommitsAsync(eq(AUTHORIZATION), eq(USER), eq(REPO), eq("base-sha"), eq("head-sha")))
+                .thenReturn(CompletableFuture.completedFuture(new CommitDifference(1, 0,
+                        Collections.singletonList(new FileChange(FileChange.Type.CHANGED, "README.md")))));
+        when(githubAsync.listChangesAsync(eq(AUTHORIZATION), eq(USER), eq(REPO), eq(SOURCE_BRANCH), eq(DEST_BRANCH)))
+                .thenReturn(CompletableFuture.completedFuture(new CommitDifference(1, 0, CHANGES)));
+        MergeValidate validate = asyncService(10000);
+
+        validate.validateAsync(AUTHORIZATION, USER, REPO, SOURCE_BRANCH, DEST_BRANCH, "head-sha", "base-sha").join();
+        CompletionException result = Assertions.assertThrows(CompletionException.class,
+                () -> validate.validateAsync(AUTHORIZATION, USER, REPO, SOURCE_BRANCH, DEST_BRANCH).join());
+        assertThat(result.getCause(), Matchers.instanceOf(IllegalChangeException.class));
+
+        verify(githubAsync).getFileContentAsync(eq(AUTHORIZATION), eq(USER), eq(REPO), eq(DEST_BRANCH), any(FileInfo.class));
+        verifyNoInteractions(github);
+    }
+
+    @Test
+    public void verify_asynchronous_validation_deadline() {
+        mockMergeFileAsync(DEFAULT_MERGE_CONFIG_FILE, UUID.randomUUID().toString());
+        when(githubAsync.listChangesAsync(eq(AUTHORIZATION), eq(USER), eq(REPO), eq(SOURCE_BRANCH), eq(DEST_BRANCH)))
+                .thenReturn(new CompletableFuture<>());
+
+        CompletionException result = Assertions.assertThrows(CompletionException.class,
+                () -> asyncService(100).validateAsync(AUTHORIZATION, USER, REPO, SOURCE_BRANCH, DEST_BRANCH).join());
+        assertThat(result.getCause(), Matchers.instanceOf(HttpException.class));
+        assertThat(((HttpException) result.getCause()).getCode(), Matchers.equalTo(HttpStatus.SC_GATEWAY_TIMEOUT));
     }
 }
@@ -0,0 +1,126 @@
+package net.hardnorth.github.merge.utils;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.hardnorth.github.merge.exception.CallRejectedException;
+import net.hardnorth.github.merge.exception.RateLimitException;
+import net.hardnorth.github.merge.exception.ServiceUnavailableException;
+import okhttp3.*;
+import org.apache.http.HttpStatus;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static net.hardnorth.github.merge.utils.OkHttpTestUtils.request;
+import static net.hardnorth.github.merge.utils.OkHttpTestUtils.response;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class CircuitBreakerTest {
+    private static final CircuitBreaker.Settings SETTINGS = new CircuitBreaker.Settings(4, 4, 0.5, 0.75, 1000,
+            10000, 2);
+
+    private final AtomicLong time = new AtomicLong();
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    private CircuitBreaker breaker() {
+        return new CircuitBreaker("test", SETTINGS, registry, time::get);
+    }
+
+    private void call(CircuitBreaker breaker, long duration, boolean failed) {
+        long start = breaker.acquire();
+        time.addAndGet(duration);
+        breaker.onResult(start, failed);
+    }
+
+    private double state() {
+        return registry.get(CircuitBreaker.STATE_METRIC).tag("name", "test").gauge().value();
+    }
+
+    @Test
+    public void verify_circuit_opens_on_failure_rate_and_closes_after_trial_calls() {
+        CircuitBreaker breaker = breaker();
+        call(breaker, 10, true);
+        call(breaker, 10, false);
+        call(breaker, 10, false);
+        assertThat(breaker.getState(), equalTo(CircuitBreaker.State.CLOSED));
+        call(breaker, 10, true);
+        assertThat(breaker.getState(), equalTo(CircuitBreaker.State.OPEN));
+        assertThat(state(), equalTo((double) CircuitBreaker.State.OPEN.ordinal()));
+
+        ServiceUnavailableException error = assertThrows(ServiceUnavailableException.class, breaker::acquire);
+        assertThat(error.getRetryAfter(), equalTo(10L));
+        assertThat(registry.get(CircuitBreaker.REJECTED_METRIC).counter().count(), equalTo(1d));
+
+        time.addAndGet(10000);
+        long first = breaker.acquire();
+        long second = breaker.acquire();
+        assertThat(breaker.getState(), equalTo(CircuitBreaker.State.HALF_OPEN));
+        assertThrows(ServiceUnavailableException.class, breaker::acquire);
+        breaker.onResult(first, false);
+        breaker.onResult(second, false);
+        assertThat(breaker.getState(), equalTo(CircuitBreaker.State.CLOSED));
+    }
+
+    @Test
+    public void verify_slow_calls_open_circuit_and_failed_trial_reopens_it() {
+        CircuitBreaker breaker = breaker();
+        call(breaker, 1000, false);
+        call(breaker, 1000, false);
+        call(breaker, 10, false);
+        call(breaker, 1500, false);
+        assertThat(breaker.getState(), equalTo(CircuitBreaker.State.OPEN));
+
+        time.addAndGet(10000);
+        call(breaker, 10, true);
+        assertThat(breaker.getState(), equalTo(CircuitBreaker.State.OPEN));
+    }
+
+    @Test
+    public void verify_old_results_leave_the_window() {
+        CircuitBreaker breaker = breaker();
+        call(breaker, 10, true);
+        for (int i = 0; i < 10; i++) {
+            call(breaker, 10, false);
+        }
+        call(breaker, 10, true);
+        assertThat(breaker.getState(), equalTo(CircuitBreaker.State.CLOSED));
+    }
+
+    private static Interceptor.Chain chain(int code) throws IOException {
+        Request request = request("https://api.github.com/", "GET", null);
+        return OkHttpTestUtils.chain(request, response(request, code));
+    }
+
+    @Test
+    public void verify_interceptor_counts_server_errors_and_fails_fast_when_open() throws IOException {
+        CircuitBreaker breaker = breaker();
+        Bulkhead bulkhead = new Bulkhead("test", 2, 0, TimeUnit.MILLISECONDS, registry);
+        CircuitBreakerInterceptor interceptor = new CircuitBreakerInterceptor(breaker, bulkhead);
+        interceptor.intercept(chain(HttpStatus.SC_NOT_FOUND));
+        interceptor.intercept(chain(HttpStatus.SC_NOT_FOUND));
+        interceptor.intercept(chain(HttpStatus.SC_BAD_GATEWAY));
+        interceptor.intercept(chain(HttpStatus.SC_SERVICE_UNAVAILABLE));
+        assertThat(breaker.getState(), equalTo(CircuitBreaker.State.OPEN));
+
+        Interceptor.Chain chain = chain(HttpStatus.SC_OK);
+        CallRejectedException error = assertThrows(CallRejectedException.class, () -> interceptor.intercept(chain));
+        assertThat(error.getRetryAfter(), equalTo(10L));
+        verify(chain, never()).proceed(any(Request.class));
+        assertThat(bulkhead.available(), equalTo(2));
+
+        // a call rejected by an inner interceptor does not spend a trial permit
+        time.addAndGet(10000);
+        Interceptor.Chain limited = chain(HttpStatus.SC_OK);
+        when(limited.proceed(any(Request.class))).thenThrow(new RateLimitException("limit", 1));
+        assertThrows(RateLimitException.class, () -> interceptor.intercept(limited));
+        interceptor.intercept(chain(HttpStatus.SC_OK));
+        interceptor.intercept(chain(HttpStatus.SC_OK));
+        assertThat(breaker.getState(), equalTo(CircuitBreaker.State.CLOSED));
+    }
+}
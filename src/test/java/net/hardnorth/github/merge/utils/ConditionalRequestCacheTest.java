@@ -0,0 +1,112 @@
+package net.hardnorth.github.merge.utils;
+
+import okhttp3.*;
+import okio.Buffer;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.util.List;
+
+import static net.hardnorth.github.merge.utils.OkHttpTestUtils.chain;
+import static net.hardnorth.github.merge.utils.OkHttpTestUtils.responseBuilder;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.*;
+
+public class ConditionalRequestCacheTest {
+    private static final String URL = "https://api.github.com/repos/HardNorth/test/branches/master";
+    private static final String ETAG = "W/\"3e4b3e7ffa4c5f9e3c2b0d1d7fd3c5ed\"";
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+    private static final String BODY = "{\"name\":\"master\"}";
+
+    private static Request request(String auth) {
+        return OkHttpTestUtils.request(URL, "GET", auth);
+    }
+
+    private static Response response(Request request, int code, String body) {
+        Response.Builder builder = responseBuilder(request, code).header(HttpHeaders.ETAG, ETAG);
+        if (body != null) {
+            builder.body(ResponseBody.create(JSON, body));
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void verify_not_modified_response_is_served_from_cache() throws IOException {
+        ConditionalRequestCache cache = new ConditionalRequestCache(1024, 1024);
+        Request request = request("Bearer token");
+
+        Response first = cache.intercept(chain(request, response(request, HttpStatus.SC_OK, BODY)));
+        assertThat(first.body().string(), equalTo(BODY));
+        assertThat(cache.count(), equalTo(1));
+
+        Interceptor.Chain secondChain = chain(request, response(request, HttpStatus.SC_NOT_MODIFIED, ""));
+        Response second = cache.intercept(secondChain);
+        assertThat(second.code(), equalTo(HttpStatus.SC_OK));
+        assertThat(second.body().string(), equalTo(BODY));
+        assertThat(second.body().contentType(), equalTo(JSON));
+
+        ArgumentCaptor<Request> sent = ArgumentCaptor.forClass(Request.class);
+        verify(secondChain).proceed(sent.capture());
+        assertThat(sent.getValue().header(HttpHeaders.IF_NONE_MATCH), equalTo(ETAG));
+    }
+
+    @Test
+    public void verify_installations_do_not_share_responses() throws IOException {
+        ConditionalRequestCache cache = new ConditionalRequestCache(1024, 1024);
+        Request request = request("Bearer token1");
+        cache.intercept(chain(request, response(request, HttpStatus.SC_OK, BODY)));
+
+        Request otherRequest = request("Bearer token2");
+        Interceptor.Chain otherChain = chain(otherRequest, response(otherRequest, HttpStatus.SC_OK, BODY));
+        cache.intercept(otherChain);
+
+        ArgumentCaptor<Request> sent = ArgumentCaptor.forClass(Request.class);
+        verify(otherChain).proceed(sent.capture());
+        assertThat(sent.getValue().header(HttpHeaders.IF_NONE_MATCH), nullValue());
+        assertThat(cache.count(), equalTo(2));
+    }
+
+    @Test
+    public void verify_least_recently_used_entries_are_evicted() throws IOException {
+        ConditionalRequestCache cache = new ConditionalRequestCache(BODY.length() * 2, 1024);
+        for (String auth : List.of("Bearer 1", "Bearer 2", "Bearer 3")) {
+            Request request = request(auth);
+            cache.intercept(chain(request, response(request, HttpStatus.SC_OK, BODY)));
+        }
+        assertThat(cache.count(), equalTo(2));
+        assertThat(cache.size(), equalTo((long) BODY.length() * 2));
+
+        Request evicted = request("Bearer 1");
+        Interceptor.Chain evictedChain = chain(evicted, response(evicted, HttpStatus.SC_OK, BODY));
+        cache.intercept(evictedChain);
+        ArgumentCaptor<Request> sent = ArgumentCaptor.forClass(Request.class);
+        verify(evictedChain).proceed(sent.capture());
+        assertThat(sent.getValue().header(HttpHeaders.IF_NONE_MATCH), nullValue());
+    }
+
+    @Test
+    public void verify_large_responses_are_not_cached() throws IOException {
+        ConditionalRequestCache cache = new ConditionalRequestCache(1024, BODY.length() - 1);
+        Request request = request("Bearer token");
+        Response response = cache.intercept(chain(request, response(request, HttpStatus.SC_OK, BODY)));
+        assertThat(response.body().string(), equalTo(BODY));
+        assertThat(cache.count(), equalTo(0));
+    }
+
+    @Test
+    public void verify_large_responses_of_unknown_length_are_streamed() throws IOException {
+        ConditionalRequestCache cache = new ConditionalRequestCache(1024, BODY.length() - 1);
+        Request request = request("Bearer token");
+        Response response = response(request, HttpStatus.SC_OK, null).newBuilder()
+                .body(ResponseBody.create(JSON, -1, new Buffer().writeUtf8(BODY)))
+                .build();
+        Response result = cache.intercept(chain(request, response));
+        assertThat(result.body(), sameInstance(response.body()));
+        assertThat(result.body().string(), equalTo(BODY));
+        assertThat(cache.count(), equalTo(0));
+    }
+}
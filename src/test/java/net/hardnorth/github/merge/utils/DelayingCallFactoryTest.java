@@ -0,0 +1,69 @@
+package net.hardnorth.github.merge.utils;
+
+import net.hardnorth.github.merge.exception.CallDelayedException;
+import okhttp3.*;
+import org.apache.http.HttpStatus;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static net.hardnorth.github.merge.utils.OkHttpTestUtils.response;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class DelayingCallFactoryTest {
+    private static final String URL = "https://api.github.com/repos/HardNorth/test/pulls/1";
+
+    private final List<Boolean> attempts = new ArrayList<>();
+
+    // delays the first enqueued attempt and answers without reaching the network
+    private DelayingCallFactory factory() {
+        OkHttpClient client = new OkHttpClient.Builder().addInterceptor(chain -> {
+            Request request = chain.request();
+            boolean enqueued = DelayingCallFactory.attempts(request) != null;
+            attempts.add(enqueued);
+            if (enqueued && attempts.size() < 2) {
+                throw new CallDelayedException("delayed", 10);
+            }
+            return response(request, HttpStatus.SC_OK);
+        }).build();
+        return new DelayingCallFactory(client);
+    }
+
+    private static CompletableFuture<Response> enqueue(Call call) {
+        CompletableFuture<Response> result = new CompletableFuture<>();
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(@Nonnull Call c, @Nonnull IOException e) {
+                result.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(@Nonnull Call c, @Nonnull Response response) {
+                result.complete(response);
+            }
+        });
+        return result;
+    }
+
+    @Test
+    public void verify_delayed_enqueued_call_is_enqueued_again() throws Exception {
+        Call call = factory().newCall(OkHttpTestUtils.request(URL, "GET", null));
+        Response response = enqueue(call).get(10, TimeUnit.SECONDS);
+        assertThat(response.code(), equalTo(HttpStatus.SC_OK));
+        assertThat(attempts, contains(true, true));
+        assertThat(call.isExecuted(), equalTo(true));
+    }
+
+    @Test
+    public void verify_executed_call_is_not_marked_as_enqueued() throws IOException {
+        Call call = factory().newCall(OkHttpTestUtils.request(URL, "GET", null));
+        assertThat(call.execute().code(), equalTo(HttpStatus.SC_OK));
+        assertThat(attempts, contains(false));
+    }
+}
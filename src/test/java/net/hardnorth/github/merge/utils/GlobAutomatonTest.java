@@ -0,0 +1,160 @@
+package net.hardnorth.github.merge.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.PatternSyntaxException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class GlobAutomatonTest {
+    private static final String GLOB_ALPHABET = "ab/.*?[]!^-{},\\";
+    private static final String PATH_ALPHABET = "ab//.-!^,{}[]*?\\\n";
+
+    // the last matched rule wins, the same as ValidationPattern did with a PathMatcher per rule
+    private static boolean reference(List<String> patterns, boolean[] includes, Path path) {
+        boolean result = false;
+        for (int i = 0; i < patterns.size(); i++) {
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + patterns.get(i));
+            if (matcher.matches(path)) {
+                result = includes[i];
+            }
+        }
+        return result;
+    }
+
+    private static void assertSameResult(List<String> patterns, boolean[] includes, String path) {
+        Path filePath = Paths.get(path);
+        boolean expected = reference(patterns, includes, filePath);
+        assertThat("Patterns: " + patterns + "; path: " + path,
+                new GlobAutomaton(patterns, includes).test(path), equalTo(expected));
+    }
+
+    public static List<Object[]> globValues() {
+        return Arrays.asList(new Object[]{"*", "README.md"},
+                new Object[]{"*", "src/README.md"},
+                new Object[]{"**", "src/main/java/A.java"},
+                new Object[]{"**.java", "src/main/java/A.java"},
+                new Object[]{"src/**/*.java", "src/main/java/A.java"},
+                new Object[]{"src/**/*.java", "src/A.java"},
+                new Object[]{"src/*", "src/main/A.java"},
+                new Object[]{"?", "a"},
+                new Object[]{"?", "/"},
+                new Object[]{"*.{java,kt}", "A.kt"},
+                new Object[]{"*.{java,kt}", "A.scala"},
+                new Object[]{"{,a}b", "b"},
+                new Object[]{"a}b,c", "a}b,c"},
+                new Object[]{"[abc]", "b"},
+                new Object[]{"[!abc]", "d"},
+                new Object[]{"[!abc]", "/"},
+                new Object[]{"[^a]", "^"},
+                new Object[]{"[-a]", "-"},
+                new Object[]{"[a-]", "-"},
+                new Object[]{"[a-c]", "b"},
+                new Object[]{"[a&&b]", "&"},
+                new Object[]{"[[]", "["},
+                new Object[]{"[\\]", "\\"},
+                new Object[]{"\\*", "*"},
+                new Object[]{"\\*", "a"},
+                new Object[]{"**", "a\nb"},
+                new Object[]{"*", "a\nb"},
+                new Object[]{"a/**", "a/b\nc"},
+                new Object[]{"a/b", "a//b"},
+                new Object[]{"a/b", "a/b/"},
+                new Object[]{"a/b", "a//b//"},
+                new Object[]{"/", "///"},
+                new Object[]{"*", "/a"},
+                new Object[]{"/*", "//a"},
+                new Object[]{"", ""});
+    }
+
+    @ParameterizedTest
+    @MethodSource("globValues")
+    public void verify_glob_matches_the_same_as_path_matcher(String glob, String path) {
+        assertSameResult(List.of(glob), new boolean[]{true}, path);
+    }
+
+    public static List<Object[]> invalidGlobValues() {
+        return Arrays.asList(new Object[]{"a\\"}, new Object[]{"[a"}, new Object[]{"[a/b]"}, new Object[]{"[c-a]"},
+                new Object[]{"[a--]"}, new Object[]{"{a,{b}}"}, new Object[]{"{a"});
+    }
+
+    @ParameterizedTest
+    @MethodSource("invalidGlobValues")
+    public void verify_invalid_glob_throws_the_same_exception(String glob) {
+        PatternSyntaxException expected = assertThrows(PatternSyntaxException.class,
+                () -> FileSystems.getDefault().getPathMatcher("glob:" + glob));
+        PatternSyntaxException actual = assertThrows(PatternSyntaxException.class,
+                () -> new GlobAutomaton(List.of(glob), new boolean[]{true}));
+        assertThat(actual.getDescription(), equalTo(expected.getDescription()));
+    }
+
+    @Test
+    public void verify_last_matched_rule_wins() {
+        List<String> patterns = List.of("**", "src/**", "src/**/*.java", "src/main/**");
+        boolean[] includes = new boolean[]{true, false, true, false};
+        GlobAutomaton automaton = new GlobAutomaton(patterns, includes);
+        assertThat(automaton.test("README.md"), equalTo(true));
+        assertThat(automaton.test("src/test/A.java"), equalTo(true));
+        assertThat(automaton.test("src/test/A.kt"), equalTo(false));
+        assertThat(automaton.test("src/main/A.java"), equalTo(false));
+        assertThat(automaton.match("README.md"), equalTo(0));
+        assertThat(automaton.match("src/test/A.kt"), equalTo(1));
+        assertThat(automaton.match("src/main/A.java"), equalTo(3));
+        assertThat(new GlobAutomaton(List.of("*.md"), new boolean[]{true}).match("src/A.java"),
+                equalTo(GlobAutomaton.NO_MATCH));
+    }
+
+    // a supplementary character is a single character for a glob, no matter whether it is escaped or not
+    @Test
+    public void verify_surrogate_pairs_are_matched_as_single_characters() {
+        String emoji = "\uD83D\uDE00";
+        assertThat(new GlobAutomaton(List.of(emoji + "?"), new boolean[]{true}).test(emoji + emoji), equalTo(true));
+        assertThat(new GlobAutomaton(List.of("\\" + emoji), new boolean[]{true}).test(emoji), equalTo(true));
+        assertThat(new GlobAutomaton(List.of("[" + emoji + "]"), new boolean[]{true}).test(emoji), equalTo(true));
+        assertThat(new GlobAutomaton(List.of("??"), new boolean[]{true}).test(emoji), equalTo(false));
+    }
+
+    private static String random(Random random, String alphabet, int maxLength) {
+        StringBuilder result = new StringBuilder();
+        int length = random.nextInt(maxLength + 1);
+        for (int i = 0; i < length; i++) {
+            result.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return result.toString();
+    }
+
+    @Test
+    public void verify_random_rules_match_the_same_as_path_matcher() {
+        Random random = new Random(42);
+        for (int iteration = 0; iteration < 2000; iteration++) {
+            List<String> patterns = new ArrayList<>();
+            boolean[] includes = new boolean[random.nextInt(4) + 1];
+            for (int i = 0; i < includes.length; i++) {
+                String glob = random(random, GLOB_ALPHABET, 8);
+                try {
+                    FileSystems.getDefault().getPathMatcher("glob:" + glob);
+                } catch (PatternSyntaxException e) {
+                    continue;
+                }
+                patterns.add(glob);
+                includes[patterns.size() - 1] = random.nextBoolean();
+            }
+            boolean[] ruleIncludes = Arrays.copyOf(includes, patterns.size());
+            for (int i = 0; i < 10; i++) {
+                assertSameResult(patterns, ruleIncludes, random(random, PATH_ALPHABET, 10));
+            }
+        }
+    }
+}
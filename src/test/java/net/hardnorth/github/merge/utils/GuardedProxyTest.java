@@ -0,0 +1,117 @@
+package net.hardnorth.github.merge.utils;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.hardnorth.github.merge.exception.ServiceUnavailableException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class GuardedProxyTest {
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    public interface Session {
+        Cursor open();
+    }
+
+    public interface Cursor {
+        String next();
+
+        boolean isOpen();
+    }
+
+    @Test
+    public void verify_client_exceptions_are_failures_and_open_circuit_fails_fast() {
+        CircuitBreaker breaker = new CircuitBreaker("test",
+                new CircuitBreaker.Settings(2, 2, 0.5, 1, 10000, 10000, 1), registry);
+        Bulkhead bulkhead = new Bulkhead("test", 1, 0, TimeUnit.MILLISECONDS, registry);
+        Function<String, String> client = GuardedProxy.create(Function.class, s -> {
+            if (s == null) {
+                throw new IllegalStateException("Remote error");
+            }
+            return s;
+        }, breaker, bulkhead, Set.of());
+
+        assertThat(client.apply("ok"), equalTo("ok"));
+        assertThrows(IllegalStateException.class, () -> client.apply(null));
+        assertThat(breaker.getState(), equalTo(CircuitBreaker.State.OPEN));
+        assertThrows(ServiceUnavailableException.class, () -> client.apply("ok"));
+        assertThat(bulkhead.available(), equalTo(1));
+    }
+
+    @Test
+    public void verify_bulkhead_limits_concurrent_calls() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker("test",
+                new CircuitBreaker.Settings(10, 10, 1, 1, 10000, 10000, 1), registry);
+        Bulkhead bulkhead = new Bulkhead("test", 1, 10, TimeUnit.MILLISECONDS, registry);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        Function<String, String> client = GuardedProxy.create(Function.class, s -> {
+            started.countDown();
+            try {
+                finish.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return s;
+        }, breaker, bulkhead, Set.of());
+
+        Thread thread = new Thread(() -> client.apply("slow"));
+        thread.start();
+        started.await();
+        assertThrows(ServiceUnavailableException.class, () -> client.apply("fast"));
+        assertThat(registry.get(Bulkhead.REJECTED_METRIC).counter().count(), equalTo(1d));
+        finish.countDown();
+        thread.join();
+        assertThat(bulkhead.available(), equalTo(1));
+        // local methods and Object methods are not guarded
+        assertThat(client.equals(client), equalTo(true));
+    }
+
+    @Test
+    public void verify_returned_objects_are_guarded_and_only_dependency_errors_are_failures() {
+        CircuitBreaker breaker = new CircuitBreaker("test",
+                new CircuitBreaker.Settings(2, 2, 0.5, 1, 10000, 10000, 1), registry);
+        Bulkhead bulkhead = new Bulkhead("test", 1, 0, TimeUnit.MILLISECONDS, registry);
+        Cursor cursor = new Cursor() {
+            @Override
+            public String next() {
+                throw new IllegalStateException("Remote error");
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+        };
+        Session session = GuardedProxy.create(Session.class, () -> cursor, breaker, bulkhead,
+                Map.of(Session.class, Set.of(), Cursor.class, Set.of("isOpen")),
+                e -> !(e instanceof IllegalArgumentException));
+
+        Cursor guarded = session.open();
+        assertThat(guarded.isOpen(), equalTo(true));
+        assertThrows(IllegalStateException.class, guarded::next);
+        assertThat(breaker.getState(), equalTo(CircuitBreaker.State.OPEN));
+        assertThrows(ServiceUnavailableException.class, guarded::next);
+        // local methods of returned objects are not guarded
+        assertThat(guarded.isOpen(), equalTo(true));
+        assertThat(bulkhead.available(), equalTo(1));
+
+        CircuitBreaker healthy = new CircuitBreaker("healthy",
+                new CircuitBreaker.Settings(2, 2, 0.5, 1, 10000, 10000, 1), registry);
+        Function<String, String> client = GuardedProxy.create(Function.class, s -> {
+            throw new IllegalArgumentException("Contention");
+        }, healthy, bulkhead, Map.of(Function.class, Set.of()), e -> !(e instanceof IllegalArgumentException));
+        assertThrows(IllegalArgumentException.class, () -> client.apply("a"));
+        assertThrows(IllegalArgumentException.class, () -> client.apply("b"));
+        assertThat(healthy.getState(), equalTo(CircuitBreaker.State.CLOSED));
+    }
+}
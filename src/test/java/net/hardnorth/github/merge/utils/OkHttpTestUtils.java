@@ -0,0 +1,79 @@
+package net.hardnorth.github.merge.utils;
+
+import okhttp3.*;
+import org.apache.http.HttpHeaders;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Requests, responses and mocked interceptor chains for OkHttp interceptor tests.
+ */
+public class OkHttpTestUtils {
+
+    private OkHttpTestUtils() {
+
+    }
+
+    @Nonnull
+    public static Request request(@Nonnull String url, @Nonnull String method, @Nullable String auth) {
+        Request.Builder builder = new Request.Builder().url(url)
+                .method(method, "GET".equals(method) ? null : RequestBody.create(null, new byte[0]));
+        if (auth != null) {
+            builder.header(HttpHeaders.AUTHORIZATION, auth);
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return the request as it is seen by interceptors of a call enqueued through {@link DelayingCallFactory}
+     */
+    @Nonnull
+    public static Request enqueued(@Nonnull Request request) {
+        return request.newBuilder().tag(DelayingCallFactory.Attempts.class, new DelayingCallFactory.Attempts()).build();
+    }
+
+    /**
+     * @return a response builder without a body
+     */
+    @Nonnull
+    public static Response.Builder responseBuilder(@Nonnull Request request, int code) {
+        return new Response.Builder().request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .message("Test");
+    }
+
+    /**
+     * @return a response with an empty body
+     */
+    @Nonnull
+    public static Response response(@Nonnull Request request, int code) {
+        return responseBuilder(request, code).body(ResponseBody.create(null, "")).build();
+    }
+
+    /**
+     * @return a chain which is not stubbed to proceed
+     */
+    @Nonnull
+    public static Interceptor.Chain chain(@Nonnull Request request) {
+        Interceptor.Chain chain = mock(Interceptor.Chain.class);
+        when(chain.request()).thenReturn(request);
+        return chain;
+    }
+
+    /**
+     * @return a chain which proceeds with the response to any request
+     */
+    @Nonnull
+    public static Interceptor.Chain chain(@Nonnull Request request, @Nonnull Response response) throws IOException {
+        Interceptor.Chain chain = chain(request);
+        when(chain.proceed(any(Request.class))).thenReturn(response);
+        return chain;
+    }
+}
@@ -0,0 +1,140 @@
+package net.hardnorth.github.merge.utils;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.hardnorth.github.merge.exception.CallDelayedException;
+import net.hardnorth.github.merge.exception.RateLimitException;
+import okhttp3.*;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static net.hardnorth.github.merge.utils.OkHttpTestUtils.chain;
+import static net.hardnorth.github.merge.utils.OkHttpTestUtils.enqueued;
+import static net.hardnorth.github.merge.utils.OkHttpTestUtils.responseBuilder;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class RateLimitThrottleTest {
+    private static final String URL = "https://api.github.com/repos/HardNorth/test/branches/master";
+    private static final long START = TimeUnit.SECONDS.toMillis(1_600_000_000L);
+    private static final long RESET = TimeUnit.MILLISECONDS.toSeconds(START) + 100;
+
+    private final AtomicLong time = new AtomicLong(START);
+    private final List<Long> sleeps = new ArrayList<>();
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    private RateLimitThrottle throttle() {
+        return new RateLimitThrottle(0.1, 30, TimeUnit.SECONDS, registry, time::get) {
+            @Override
+            void sleep(long millis) {
+                sleeps.add(millis);
+                time.addAndGet(millis);
+            }
+        };
+    }
+
+    private static Request request(String method, String auth) {
+        return OkHttpTestUtils.request(URL, method, auth);
+    }
+
+    private static Response response(Request request, int code, long remaining) {
+        return responseBuilder(request, code)
+                .header("X-RateLimit-Limit", "100")
+                .header("X-RateLimit-Remaining", String.valueOf(remaining))
+                .header("X-RateLimit-Reset", String.valueOf(RESET))
+                .body(ResponseBody.create(null, ""))
+                .build();
+    }
+
+    @Test
+    public void verify_calls_are_not_delayed_while_budget_is_high() throws IOException {
+        RateLimitThrottle throttle = throttle();
+        Request request = request("GET", "token a");
+        for (int i = 0; i < 3; i++) {
+            throttle.intercept(chain(request, response(request, HttpStatus.SC_OK, 50)));
+        }
+        assertThat(sleeps, empty());
+        assertThat(throttle.remaining(), equalTo(50d));
+        assertThat(registry.get(RateLimitThrottle.REMAINING_METRIC).gauge().value(), equalTo(50d));
+    }
+
+    @Test
+    public void verify_reads_are_spaced_when_budget_is_low_and_writes_are_not() throws IOException {
+        RateLimitThrottle throttle = throttle();
+        Request get = request("GET", "token a");
+        throttle.intercept(chain(get, response(get, HttpStatus.SC_OK, 10)));
+        throttle.intercept(chain(get, response(get, HttpStatus.SC_OK, 9)));
+        throttle.intercept(chain(get, response(get, HttpStatus.SC_OK, 8)));
+        assertThat(sleeps, contains(TimeUnit.SECONDS.toMillis(10)));
+
+        Request put = request("PUT", "token a");
+        throttle.intercept(chain(put, response(put, HttpStatus.SC_OK, 7)));
+        assertThat(sleeps, hasSize(1));
+
+        // another installation has its own budget
+        Request other = request("GET", "token b");
+        throttle.intercept(chain(other, response(other, HttpStatus.SC_OK, 99)));
+        assertThat(sleeps, hasSize(1));
+        assertThat(throttle.remaining(), equalTo(7d));
+    }
+
+    @Test
+    public void verify_exhausted_budget_blocks_until_reset() throws IOException {
+        RateLimitThrottle throttle = throttle();
+        Request request = request("PUT", "token a");
+        throttle.intercept(chain(request, response(request, HttpStatus.SC_FORBIDDEN, 0)));
+
+        RateLimitException error = assertThrows(RateLimitException.class,
+                () -> throttle.intercept(chain(request, response(request, HttpStatus.SC_OK, 99))));
+        assertThat(error.getRetryAfter(), equalTo(100L));
+
+        time.addAndGet(TimeUnit.SECONDS.toMillis(80));
+        Interceptor.Chain chain = chain(request, response(request, HttpStatus.SC_OK, 99));
+        throttle.intercept(chain);
+        assertThat(sleeps, contains(TimeUnit.SECONDS.toMillis(20)));
+        verify(chain).proceed(any(Request.class));
+    }
+
+    @Test
+    public void verify_secondary_rate_limit_retry_after_is_honoured() throws IOException {
+        RateLimitThrottle throttle = throttle();
+        Request request = request("GET", "token a");
+        Response limited = response(request, HttpStatus.SC_FORBIDDEN, 50).newBuilder()
+                .header(HttpHeaders.RETRY_AFTER, "5").build();
+        throttle.intercept(chain(request, limited));
+        throttle.intercept(chain(request, response(request, HttpStatus.SC_OK, 49)));
+        assertThat(sleeps, contains(TimeUnit.SECONDS.toMillis(5)));
+        assertThat(registry.get(RateLimitThrottle.DELAY_METRIC).timer().count(), equalTo(1L));
+    }
+
+    @Test
+    public void verify_enqueued_calls_are_delayed_instead_of_sleeping() throws IOException {
+        RateLimitThrottle throttle = throttle();
+        Request get = request("GET", "token a");
+        throttle.intercept(chain(get, response(get, HttpStatus.SC_OK, 10)));
+        throttle.intercept(chain(get, response(get, HttpStatus.SC_OK, 9)));
+
+        Request request = enqueued(get);
+        Interceptor.Chain chain = chain(request, response(request, HttpStatus.SC_OK, 8));
+        CallDelayedException error = assertThrows(CallDelayedException.class, () -> throttle.intercept(chain));
+        assertThat(error.getDelay(), equalTo(TimeUnit.SECONDS.toMillis(10)));
+        verify(chain, never()).proceed(any(Request.class));
+        assertThat(sleeps, empty());
+
+        // the delayed call did not take the slot, so it goes through when it is enqueued again
+        time.addAndGet(error.getDelay());
+        throttle.intercept(chain);
+        verify(chain).proceed(any(Request.class));
+        assertThat(sleeps, empty());
+    }
+}
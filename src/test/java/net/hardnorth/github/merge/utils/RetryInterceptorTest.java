@@ -0,0 +1,136 @@
+package net.hardnorth.github.merge.utils;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.hardnorth.github.merge.exception.CallDelayedException;
+import net.hardnorth.github.merge.exception.RateLimitException;
+import okhttp3.*;
+import org.apache.http.HttpStatus;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static net.hardnorth.github.merge.utils.OkHttpTestUtils.chain;
+import static net.hardnorth.github.merge.utils.OkHttpTestUtils.enqueued;
+import static net.hardnorth.github.merge.utils.OkHttpTestUtils.response;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class RetryInterceptorTest {
+    private static final String URL = "https://api.github.com/repos/HardNorth/test/merges";
+
+    private final AtomicLong time = new AtomicLong();
+    private final List<Long> sleeps = new ArrayList<>();
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    private RetryInterceptor retry(long deadlineSeconds) {
+        return new RetryInterceptor(3, 100, 150, deadlineSeconds, TimeUnit.SECONDS, registry, time::get) {
+            @Override
+            void sleep(long millis) {
+                sleeps.add(millis);
+                time.addAndGet(millis);
+            }
+        };
+    }
+
+    private static Request request(String method) {
+        return OkHttpTestUtils.request(URL, method, null);
+    }
+
+    private double retries() {
+        return registry.get(RetryInterceptor.ATTEMPT_METRIC).tag("attempt", "retry").counter().count();
+    }
+
+    @Test
+    public void verify_reads_are_retried_on_server_errors_and_timeouts() throws IOException {
+        Request request = request("GET");
+        Interceptor.Chain chain = chain(request);
+        when(chain.proceed(any(Request.class))).thenReturn(response(request, HttpStatus.SC_BAD_GATEWAY))
+                .thenThrow(new SocketTimeoutException("timeout"))
+                .thenReturn(response(request, HttpStatus.SC_OK));
+
+        Response result = retry(30).intercept(chain);
+        assertThat(result.code(), equalTo(HttpStatus.SC_OK));
+        verify(chain, times(3)).proceed(any(Request.class));
+        assertThat(sleeps, hasSize(2));
+        assertThat(sleeps.get(0), allOf(greaterThanOrEqualTo(0L), lessThanOrEqualTo(100L)));
+        assertThat(sleeps.get(1), allOf(greaterThanOrEqualTo(0L), lessThanOrEqualTo(150L)));
+        assertThat(retries(), equalTo(2d));
+    }
+
+    @Test
+    public void verify_last_failure_is_returned_when_attempts_are_exhausted() throws IOException {
+        Request request = request("GET");
+        Interceptor.Chain chain = chain(request);
+        when(chain.proceed(any(Request.class))).thenReturn(response(request, HttpStatus.SC_SERVICE_UNAVAILABLE));
+
+        Response result = retry(30).intercept(chain);
+        assertThat(result.code(), equalTo(HttpStatus.SC_SERVICE_UNAVAILABLE));
+        verify(chain, times(3)).proceed(any(Request.class));
+    }
+
+    @Test
+    public void verify_merges_are_retried_only_if_connection_was_not_established() throws IOException {
+        Request request = request("POST");
+        Interceptor.Chain chain = chain(request);
+        when(chain.proceed(any(Request.class))).thenThrow(new ConnectException("refused"))
+                .thenReturn(response(request, HttpStatus.SC_BAD_GATEWAY));
+        assertThat(retry(30).intercept(chain).code(), equalTo(HttpStatus.SC_BAD_GATEWAY));
+        verify(chain, times(2)).proceed(any(Request.class));
+
+        Interceptor.Chain timeoutChain = chain(request);
+        when(timeoutChain.proceed(any(Request.class))).thenThrow(new SocketTimeoutException("timeout"));
+        assertThrows(SocketTimeoutException.class, () -> retry(30).intercept(timeoutChain));
+        verify(timeoutChain).proceed(any(Request.class));
+    }
+
+    @Test
+    public void verify_no_retries_past_deadline_and_on_rate_limit() throws IOException {
+        Request request = request("GET");
+        Interceptor.Chain chain = chain(request);
+        when(chain.proceed(any(Request.class))).thenAnswer(i -> {
+            time.addAndGet(TimeUnit.SECONDS.toMillis(2));
+            return response(request, HttpStatus.SC_BAD_GATEWAY);
+        });
+        retry(1).intercept(chain);
+        verify(chain).proceed(any(Request.class));
+
+        Interceptor.Chain limitedChain = chain(request);
+        when(limitedChain.proceed(any(Request.class))).thenThrow(new RateLimitException("limit", 10));
+        assertThrows(RateLimitException.class, () -> retry(30).intercept(limitedChain));
+        verify(limitedChain).proceed(any(Request.class));
+        assertThat(retries(), equalTo(0d));
+    }
+
+    @Test
+    public void verify_enqueued_calls_are_delayed_instead_of_sleeping() throws IOException {
+        RetryInterceptor retry = retry(30);
+        Request request = enqueued(request("GET"));
+        Interceptor.Chain chain = chain(request);
+        when(chain.proceed(any(Request.class))).thenReturn(response(request, HttpStatus.SC_BAD_GATEWAY))
+                .thenReturn(response(request, HttpStatus.SC_BAD_GATEWAY))
+                .thenReturn(response(request, HttpStatus.SC_SERVICE_UNAVAILABLE));
+
+        CallDelayedException first = assertThrows(CallDelayedException.class, () -> retry.intercept(chain));
+        assertThat(first.getDelay(), allOf(greaterThanOrEqualTo(0L), lessThanOrEqualTo(100L)));
+        CallDelayedException second = assertThrows(CallDelayedException.class, () -> retry.intercept(chain));
+        assertThat(second.getDelay(), allOf(greaterThanOrEqualTo(0L), lessThanOrEqualTo(150L)));
+
+        // the attempts are counted across enqueued calls, so the last one returns the failure
+        assertThat(retry.intercept(chain).code(), equalTo(HttpStatus.SC_SERVICE_UNAVAILABLE));
+        verify(chain, times(3)).proceed(any(Request.class));
+        assertThat(sleeps, empty());
+        assertThat(retries(), equalTo(2d));
+        assertThat(registry.get(RetryInterceptor.ATTEMPT_METRIC).tag("attempt", "first").counter().count(),
+                equalTo(1d));
+    }
+}
@@ -0,0 +1,97 @@
+package net.hardnorth.github.merge.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.instanceOf;
+
+public class SingleFlightTest {
+
+    @Test
+    public void verify_concurrent_calls_with_the_same_key_are_joined() throws Exception {
+        SingleFlight<String, Integer> flight = new SingleFlight<>();
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<Integer> first = executor.submit(() -> flight.execute("pr", () -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return calls.incrementAndGet();
+            }));
+            Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+            List<Future<Integer>> joined = IntStream.range(0, 3)
+                    .mapToObj(i -> executor.submit(() -> flight.execute("pr", calls::incrementAndGet)))
+                    .collect(Collectors.toList());
+            Thread.sleep(100);
+            release.countDown();
+
+            assertThat(first.get(5, TimeUnit.SECONDS), equalTo(1));
+            List<Integer> results = joined.stream().map(f -> {
+                try {
+                    return f.get(5, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }).collect(Collectors.toList());
+            assertThat(results, everyItem(equalTo(1)));
+            assertThat(calls.get(), equalTo(1));
+            assertThat(flight.size(), equalTo(0));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void verify_failed_call_is_not_remembered() {
+        SingleFlight<String, Integer> flight = new SingleFlight<>();
+        Assertions.assertThrows(IllegalStateException.class, () -> flight.execute("pr", () -> {
+            throw new IllegalStateException("Test");
+        }));
+        assertThat(flight.execute("pr", () -> 2), equalTo(2));
+    }
+
+    @Test
+    public void verify_asynchronous_calls_with_the_same_key_are_joined() {
+        SingleFlight<String, Integer> flight = new SingleFlight<>();
+        CompletableFuture<Integer> call = new CompletableFuture<>();
+        AtomicInteger calls = new AtomicInteger();
+
+        CompletableFuture<Integer> first = flight.executeAsync("pr", () -> {
+            calls.incrementAndGet();
+            return call;
+        });
+        CompletableFuture<Integer> second = flight.executeAsync("pr", () -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture(2);
+        });
+        assertThat(flight.size(), equalTo(1));
+        call.complete(1);
+
+        assertThat(first.join(), equalTo(1));
+        assertThat(second.join(), equalTo(1));
+        assertThat(calls.get(), equalTo(1));
+        assertThat(flight.size(), equalTo(0));
+
+        CompletionException error = Assertions.assertThrows(CompletionException.class,
+                () -> flight.executeAsync("pr", () -> {
+                    throw new IllegalStateException("Test");
+                }).join());
+        assertThat(error.getCause(), instanceOf(IllegalStateException.class));
+        assertThat(flight.size(), equalTo(0));
+    }
+}
@@ -33,6 +33,24 @@ public class ValidationPatternTest {
         ValidationPattern pattern = ValidationPattern.parse(ofNullable(file).orElseThrow(FileNotFoundException::new));
 
         assertThat(pattern.test(new File(testFile).toPath()), equalTo(result));
+        assertThat(pattern.matches(testFile), equalTo(result));
+    }
+
+    public static List<Object[]> pathValues() {
+        return Arrays.asList(new Object[]{"validation/all_txt.txt", Boolean.TRUE},
+                new Object[]{"validation//all_txt.txt", Boolean.TRUE},
+                new Object[]{"validation/all_txt.txt/", Boolean.TRUE},
+                new Object[]{"./validation/other.txt", Boolean.TRUE},
+                new Object[]{"validation/exclude_all_but_one.txt", Boolean.FALSE});
+    }
+
+    @ParameterizedTest
+    @MethodSource("pathValues")
+    public void path_string_tests(String testFile, Boolean result) {
+        ValidationPattern pattern = ValidationPattern.parse("**\n!validation/**\nvalidation/all_txt.txt");
+
+        assertThat(pattern.matches(testFile), equalTo(pattern.test(new File(testFile).toPath())));
+        assertThat(pattern.matches(testFile), equalTo(result));
     }
 
 }
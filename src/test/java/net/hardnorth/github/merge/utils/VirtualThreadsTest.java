@@ -0,0 +1,38 @@
+package net.hardnorth.github.merge.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class VirtualThreadsTest {
+
+    @Test
+    public void verify_platform_threads_are_numbered_daemons() {
+        ThreadFactory factory = VirtualThreads.factory("test-", false);
+        Thread first = factory.newThread(() -> {
+        });
+        Thread second = factory.newThread(() -> {
+        });
+        assertThat(first.getName(), equalTo("test-1"));
+        assertThat(second.getName(), equalTo("test-2"));
+        assertThat(first.isDaemon(), equalTo(Boolean.TRUE));
+    }
+
+    @Test
+    public void verify_virtual_mode_threads_are_named_and_run() throws InterruptedException {
+        ThreadFactory factory = VirtualThreads.factory("test-", true);
+        CountDownLatch ran = new CountDownLatch(1);
+        Thread thread = factory.newThread(ran::countDown);
+        assertThat(thread.getName(), equalTo("test-1"));
+        // virtual threads are always daemons
+        assertThat(thread.isDaemon(), equalTo(Boolean.TRUE));
+        thread.start();
+        Assertions.assertTrue(ran.await(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,56 @@
+package net.hardnorth.github.merge.utils;
+
+import com.google.gson.JsonSyntaxException;
+import org.apache.commons.codec.digest.HmacAlgorithms;
+import org.apache.commons.codec.digest.HmacUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class WebServiceCommonTest {
+
+    @Test
+    public void verify_webhook_action_and_label_are_read_without_binding() {
+        String body = IoUtils.readInputStreamToString(getClass().getClassLoader().getResourceAsStream("hook/pr_labeled.json"),
+                StandardCharsets.UTF_8);
+        assertThat(WebServiceCommon.readString(body, "action"), equalTo("labeled"));
+        assertThat(WebServiceCommon.readString(body, "label", "name"), equalTo("merge-validate"));
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        assertThat(WebServiceCommon.readString(bytes, "action"), equalTo("labeled"));
+        assertThat(WebServiceCommon.readString(bytes, "label", "name"), equalTo("merge-validate"));
+    }
+
+    @Test
+    public void verify_missing_and_non_string_values() {
+        String body = "{\"number\":1,\"label\":{\"id\":2,\"name\":null},\"action\":\"opened\"}";
+        assertThat(WebServiceCommon.readString(body, "action"), equalTo("opened"));
+        assertThat(WebServiceCommon.readString(body, "number"), nullValue());
+        assertThat(WebServiceCommon.readString(body, "label", "name"), nullValue());
+        assertThat(WebServiceCommon.readString(body, "label", "id", "name"), nullValue());
+        assertThat(WebServiceCommon.readString(body, "sender", "login"), nullValue());
+    }
+
+    @Test
+    public void verify_malformed_json_is_rejected() {
+        Assertions.assertThrows(JsonSyntaxException.class, () -> WebServiceCommon.readString("{\"a\":[1,}", "action"));
+    }
+
+    @Test
+    public void verify_pooled_signature_matches_single_validation() {
+        byte[] secret = "secret".getBytes(StandardCharsets.UTF_8);
+        byte[] body = "{\"action\":\"r\u00e9sum\u00e9\"}".getBytes(StandardCharsets.UTF_8);
+        byte[] signature = new HmacUtils(HmacAlgorithms.HMAC_SHA_256, secret).hmac(body);
+        HmacSignature hmac = new HmacSignature(WebServiceCommon.HMAC_ALGORITHM, secret);
+        for (int i = 0; i < 3; i++) {
+            assertThat(hmac.validate(signature, body), equalTo(true));
+            assertThat(WebServiceCommon.validateSha256Signature(signature, secret, body), equalTo(true));
+        }
+        body[body.length - 2] = 'x';
+        assertThat(hmac.validate(signature, body), equalTo(false));
+    }
+}